@@ -23,6 +23,41 @@ class DirectoryStructureManager {
         }
     }
 
+    moveNode(oldFileData: FileData, fileData: FileData, fileClusters: FileData[], indexedFileClusters: { [key: string]: string[] }, nodes: DirectoryData[], links: LinkData[], displayChangesFor: number, contributor: string, drawLine: boolean) {
+        const existing = fileClusters.filter(f => f.name === oldFileData.name && f.directory === oldFileData.directory)[0];
+        if (!existing || fileClusters.some(f => f.name === fileData.name && f.directory === fileData.directory)) {
+            // the old file is not displayed or the new file is already displayed, so the node cannot be moved
+            if (existing) {
+                this.removeNode(oldFileData, fileClusters, indexedFileClusters, nodes, links);
+            }
+            this.addNode(fileData, fileClusters, indexedFileClusters, nodes, links, displayChangesFor, contributor, drawLine);
+            return;
+        }
+
+        addDirectory(nodes, links, fileData.directory);
+
+        // moving the existing node rather than removing it and adding a new node
+        const arr = indexedFileClusters[oldFileData.directory] ?? [];
+        const indexedFileIndex = arr.indexOf(oldFileData.name);
+        if (indexedFileIndex !== -1) {
+            arr.splice(indexedFileIndex, 1);
+        }
+        existing.name = fileData.name;
+        existing.directory = fileData.directory;
+        existing.color = fileData.color;
+        existing.fileExtension = fileData.fileExtension;
+        indexedFileClusters[fileData.directory] = [...indexedFileClusters[fileData.directory] ?? [], fileData.name];
+
+        const dir = nodes.filter(n => n.name === oldFileData.directory)[0];
+        if (dir) {
+            removeDirectory(nodes, links, indexedFileClusters, dir)
+        }
+
+        if (drawLine) {
+            DrawnLineManager.addModifiedLine(fileData, displayChangesFor, contributor);
+        }
+    }
+
     removeNode(fileData: FileData, fileClusters: FileData[], indexedFileClusters: { [key: string]: string[] }, nodes: DirectoryData[], links: LinkData[]) {
         // removing the existing node
         let filter = fileClusters.filter(fd => fd.name === fileData.name && fd.directory === fileData.directory);
@@ -4,12 +4,12 @@ import { VariableDataProps } from "./VisualisationVariableManager";
 import ScheduledChangeManager from "./ScheduledChangeManager";
 import ContributorManager from "./ContributorManager";
 import DirectoryStructureManager from "./DirectoryChangeManager";
-import { CommitRequestParams, loadCommitDataRequest, performPrevis } from "../utils/BackEndCommunicator";
+import { CommitRequestParams, loadCommitDataStreamRequest, performPrevis } from "../utils/BackEndCommunicator";
 import { VisualisationSpeedOptions } from "../visualisation/VisualisationSpeedOptions";
 import { ContributorProps } from "../components/RepositoryVisualiser";
 import { Vector } from "../utils/MathUtils";
 import FileLabelManager from "./FileLabelManager";
-import { getModifiedFileData } from "../utils/RepositoryRepresentationUtils";
+import { getModifiedFileData, ModifiedFileData } from "../utils/RepositoryRepresentationUtils";
 import DirectoryChangeManager from "./DirectoryChangeManager";
 
 /**
@@ -132,19 +132,29 @@ export default class RepositoryDataManager {
         }
         const params: CommitRequestParams = { ...this.params };
         params.startCommit = startCommit;
-        await loadCommitDataRequest(params, (data: any) => {
-            if (setDataState) {
+        params.compact = true;
+        // pinning the branch tip and page version allows the page to be cached by the browser
+        if (this.metadata?.tip && this.metadata.version) {
+            params.tip = this.metadata.tip;
+            params.version = this.metadata.version;
+        }
+        const expectedCommits = this.metadata ? Math.max(0, Math.min(params.commitCount ?? 50, this.metadata.totalCommits - startCommit)) : undefined;
+        let ready = false;
+        const complete = await loadCommitDataStreamRequest(params, (commit: Commit) => {
+            // playback can begin as soon as the first commit of the page has arrived
+            if (!ready && setDataState) {
                 setDataState(DataState.READY);
             }
-            // eslint-disable-next-line
-            for (const [key, value] of Object.entries({ ...data })) {
-                if (parseInt(key) < this.currentCommit) {
-                    delete data[key];
-                }
+            ready = true;
+            if (commit.commitId >= this.currentCommit) {
+                this.commits[commit.commitId] = commit;
             }
-            this.commits = { ...this.commits, ...data }
-            this.loadingCommits = false;
-        }, setError)
+        }, setError, expectedCommits);
+
+        if (complete && !ready && setDataState) {
+            setDataState(DataState.READY);
+        }
+        this.loadingCommits = false;
     }
 
     getProcessVisDataFunction(
@@ -208,6 +218,11 @@ export default class RepositoryDataManager {
                 FileLabelManager.addFile(fileData.fileData);
                 ScheduledChangeManager.addDelayedChange({ ticksUntilChange: options.contributorMovementTicks + options.displayChangesFor, applyChange: () => { FileLabelManager.removeFile(fileData.fileData) } });
 
+                if (fileData.summary) {
+                    RepositoryDataManager.applySummary(fileData, options, props, commit.author);
+                    return;
+                }
+
                 if (fileData.changeType === Filechangetype.ADDED) {
                     // adding the containing directory
                     DirectoryStructureManager.addNode(fileData.fileData, props.fileClusters.value, props.indexedFileClusters.value, props.nodes.value, props.links.value, options.displayChangesFor, commit.author, true);
@@ -223,6 +238,9 @@ export default class RepositoryDataManager {
                             }
                         })
                     }
+                } else if (fileData.changeType === Filechangetype.RENAMED && fileData.oldFileData) {
+                    DirectoryStructureManager.moveNode(fileData.oldFileData, fileData.fileData, props.fileClusters.value, props.indexedFileClusters.value, props.nodes.value, props.links.value, options.displayChangesFor, commit.author, true);
+
                 } else if (fileData.changeType === Filechangetype.EXPANDED) {
                     DirectoryStructureManager.addNode(fileData.fileData, props.fileClusters.value, props.indexedFileClusters.value, props.nodes.value, props.links.value, options.displayChangesFor, commit.author, false);
                 } else {
@@ -258,6 +276,42 @@ export default class RepositoryDataManager {
         this.handleUnusedContributors(options, props.contributors.value, props.screenHeight);
     }
 
+    /**
+     * Applies the summary of the changes within a folder of a summarised commit.
+     * As with a collapsed structure, the files displayed within the folder are
+     * replaced by a single collapsed node, so the summarised changes are never
+     * displayed as files
+     * @param summary The summary change
+     * @param options The visualisation options
+     * @param props The visualisation data
+     * @param author The author of the commit
+     */
+    static applySummary(summary: ModifiedFileData, options: VisualisationSpeedOptions, props: VariableDataProps, author: string) {
+        const folder = summary.fileData.directory;
+        props.fileClusters.value
+            .filter(file => folder.length === 0 || file.directory === folder || file.directory.startsWith(folder + "/"))
+            // collapsed structures are left in place, but summaries within the folder are replaced
+            .filter(file => !file.collapsed || file.name === summary.fileData.name)
+            .filter(file => file.directory !== folder || file.name !== summary.fileData.name)
+            .forEach(file => DirectoryChangeManager.removeNode(file, props.fileClusters.value, props.indexedFileClusters.value, props.nodes.value, props.links.value));
+
+        DirectoryStructureManager.addNode(summary.fileData, props.fileClusters.value, props.indexedFileClusters.value, props.nodes.value, props.links.value, options.displayChangesFor, author, false);
+
+        if (summary.changeType === Filechangetype.ADDED) {
+            DrawnLineManager.addAddedLine(summary.fileData, options.displayChangesFor, author);
+        } else if (summary.changeType === Filechangetype.DELETED) {
+            DrawnLineManager.addRemovedLine(summary.fileData, options.displayChangesFor, author);
+            ScheduledChangeManager.addDelayedChange({
+                ticksUntilChange: options.displayChangesFor,
+                applyChange: (lineProps: VariableDataProps) => {
+                    DirectoryStructureManager.removeNode(summary.fileData, lineProps.fileClusters.value, lineProps.indexedFileClusters.value, lineProps.nodes.value, lineProps.links.value);
+                }
+            });
+        } else {
+            DrawnLineManager.addModifiedLine(summary.fileData, options.displayChangesFor, author);
+        }
+    }
+
     private handleUnusedContributors(options: VisualisationSpeedOptions, contributors: { [name: string]: ContributorProps }, screenHeight: number) {
         // TODO
         for (let key in contributors) {
@@ -9,6 +9,7 @@ export interface Commit {
     author: string, // author
     commitHash: string,
     commitId: number,
+    summarised?: boolean, // if the changes have been summarised into folders, see loadCommitChangesRequest
 }
 
 /**
@@ -17,7 +18,9 @@ export interface Commit {
 export interface FileChange {
     type: string, // type 
     file: string, // file + filepath
+    oldFile?: string, // file + filepath before the file was renamed
     collapsed?: boolean,
+    count?: number, // the number of changes summarised by this change
 }
 
 
@@ -30,12 +33,15 @@ export class Filechangetype {
     static readonly ADDED = "A";
     static readonly DELETED = "D";
     static readonly EXPANDED = "EXPANDED";
+    static readonly RENAMED = "R";
 }
 
 export interface RepositoryMetadata {
     url: string,
     branch: string,
     totalCommits: number,
+    tip?: string, // the commit hash of the branch tip
+    version?: string, // the version of the settings and change options the commits are computed with
     settings?: Settings,
 }
 
@@ -29,4 +29,21 @@ test("Test removing a node", () => {
     expect(fileClusters.length).toEqual(0);
     expect(nodes.length).toEqual(1);
     expect(links.length).toEqual(0);
-});
\ No newline at end of file
+});
+test("Test moving a node", () => {
+    const oldFd: FileData = {name: "a.txt", directory: "old", color: "", fileExtension: "txt"};
+    const fd: FileData = {name: "a.txt", directory: "new", color: "", fileExtension: "txt"};
+    const existing: FileData = {...oldFd};
+    const fileClusters: FileData[] = [existing];
+    const indexedFileClusters: { [key: string]: string[] }= {"old": ["a.txt"]}; 
+    const nodes: DirectoryData[] = [{name: "", x: 0, y: 0}, {name: "old", x: 0, y: 0}];
+    const links: LinkData[] = [new LinkData("", "old")];
+
+    DirectoryChangeManager.moveNode(oldFd, fd, fileClusters, indexedFileClusters, nodes, links, 1, "cont", false);
+
+    expect(fileClusters).toEqual([existing]);
+    expect(existing.directory).toEqual("new");
+    expect(indexedFileClusters["new"]).toEqual(["a.txt"]);
+    expect(nodes.map(n => n.name)).toEqual(["", "new"]);
+    expect(links.length).toEqual(1);
+});
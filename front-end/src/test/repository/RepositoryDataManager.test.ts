@@ -242,6 +242,69 @@ test("Test addCommiToQueue valid commit", () => {
 
 });
 
+function createSummarisedCommit(type: string) {
+    return {
+        author: "author",
+        commitHash: "A",
+        commitId: 0,
+        timestamp: 0,
+        summarised: true,
+        changes: [
+            { file: "vendor/summary", type: type, collapsed: true, count: 1200 },
+        ]
+    };
+}
+
+function createVendorFiles(props: TestWrapperVariableDataProps) {
+    props.props.nodes.value = [{ name: "", x: 0, y: 0 }, { name: "vendor", x: 0, y: 0 }, { name: "vendor/lib", x: 0, y: 0 }, { name: "src", x: 0, y: 0 }];
+    props.props.fileClusters.value = [
+        { color: "c", directory: "vendor", name: "a.txt", fileExtension: "txt" },
+        { color: "c", directory: "vendor/lib", name: "b.txt", fileExtension: "txt" },
+        { color: "c", directory: "vendor/lib", name: "label", fileExtension: "", collapsed: true },
+        { color: "c", directory: "src", name: "c.txt", fileExtension: "txt" },
+    ];
+    props.props.indexedFileClusters.value["vendor"] = ["a.txt"];
+    props.props.indexedFileClusters.value["vendor/lib"] = ["b.txt", "label"];
+    props.props.indexedFileClusters.value["src"] = ["c.txt"];
+}
+
+test("Test addCommitToQueue summarised commit", () => {
+    const manager = new RepositoryDataManager({ repo: "clone", branch: "branch" });
+    const visOptions: VisualisationSpeedOptions = { contributorMovementTicks: 0, displayChangesFor: 0, ticksToProgress: 0 }
+    const props = new TestWrapperVariableDataProps();
+
+    ScheduledChangeManager.delayedChanges = [];
+    createVendorFiles(props);
+    manager.metadata = { branch: "branch", totalCommits: 1, url: "clone" }
+    manager.commits[0] = createSummarisedCommit("A");
+
+    manager.addCommitToQueue(visOptions, props.props);
+    ScheduledChangeManager.applyAllChanges(props.props);
+
+    // the files of the folder are replaced by a single collapsed node, collapsed structures are kept
+    expect(props.props.fileClusters.value.map(file => file.directory + "/" + file.name)).toEqual(["vendor/lib/label", "src/c.txt", "vendor/summary"]);
+    expect(props.props.fileClusters.value[2].collapsed).toBe(true);
+});
+
+test("Test addCommitToQueue summarised deletion", () => {
+    const manager = new RepositoryDataManager({ repo: "clone", branch: "branch" });
+    const visOptions: VisualisationSpeedOptions = { contributorMovementTicks: 0, displayChangesFor: 1, ticksToProgress: 0 }
+    const props = new TestWrapperVariableDataProps();
+
+    ScheduledChangeManager.delayedChanges = [];
+    createVendorFiles(props);
+    manager.metadata = { branch: "branch", totalCommits: 1, url: "clone" }
+    manager.commits[0] = createSummarisedCommit("D");
+
+    manager.addCommitToQueue(visOptions, props.props);
+    ScheduledChangeManager.updateScheduledChanges(props.props);
+    expect(props.props.fileClusters.value.map(file => file.directory + "/" + file.name)).toEqual(["vendor/lib/label", "src/c.txt", "vendor/summary"]);
+
+    // the summary is removed once the deletion has been displayed
+    ScheduledChangeManager.updateScheduledChanges(props.props);
+    expect(props.props.fileClusters.value.map(file => file.directory + "/" + file.name)).toEqual(["vendor/lib/label", "src/c.txt"]);
+});
+
 test("Test getMilestone no settings", () => {
     const manager = new RepositoryDataManager({ repo: "clone", branch: "branch" });
     manager.metadata = {
@@ -2,14 +2,17 @@
  * @jest-environment jsdom
  */
 import { RequestParams } from "../../repository/RepositoryDataManager";
-import { loadCommitDataRequest, performPrevis } from "../../utils/BackEndCommunicator";
+import { CommitRequestParams, loadCommitDataRequest, loadCommitDataStreamRequest, performPrevis } from "../../utils/BackEndCommunicator";
+import { TextDecoder, TextEncoder } from "util";
+
+Object.assign(global, { TextDecoder, TextEncoder });
 
 
 test("Test calling previs", async () => {
     // global.fetch = jest.fn().mockImplementation(setupFetchStub({}))
     const response: any = jest.fn().mockResolvedValue({
         ok: true,
-        json: jest.fn().mockResolvedValue({ dtest: "dtest" })
+        json: jest.fn().mockResolvedValue({ id: "job", status: "COMPLETE", metadata: { dtest: "dtest" } })
     });
 
     global.fetch = jest.fn().mockImplementation(response);
@@ -29,6 +32,38 @@ test("Test calling previs", async () => {
 
 });
 
+test("Test polling previs job", async () => {
+    const running = { id: "job", status: "RUNNING", task: "Receiving objects", completed: 1, total: 2 };
+    global.fetch = jest.fn()
+        .mockResolvedValueOnce({ ok: true, json: jest.fn().mockResolvedValue(running) })
+        .mockResolvedValueOnce({ ok: true, json: jest.fn().mockResolvedValue({ id: "job", status: "COMPLETE", metadata: { dtest: "dtest" } }) });
+
+    const params: RequestParams = { repo: "clone", branch: "branch" };
+    let data: any;
+    const progress: any[] = [];
+
+    await performPrevis(params, (setdata: any) => data = setdata, () => { }, (job: any) => progress.push(job));
+
+    expect(data).toEqual({ dtest: "dtest" });
+    expect(progress).toEqual([running]);
+    expect((global.fetch as jest.Mock).mock.calls[1][0]).toEqual("/api/previs/status?job=job");
+
+    jest.resetAllMocks();
+});
+
+test("Test failed previs job", async () => {
+    global.fetch = jest.fn().mockResolvedValue({ ok: true, json: jest.fn().mockResolvedValue({ id: "job", status: "FAILED", error: "Invalid repository clone URL" }) });
+
+    const params: RequestParams = { repo: "clone", branch: "branch" };
+    let error: string | undefined;
+
+    await performPrevis(params, () => { }, (seterror: string) => error = seterror);
+
+    expect(error).toEqual("URL Error: Invalid repository clone URL");
+
+    jest.resetAllMocks();
+});
+
 test("Test calling commitdata", async () => {
     // global.fetch = jest.fn().mockImplementation(setupFetchStub({}))
     const response: any = jest.fn().mockResolvedValue({
@@ -53,6 +88,90 @@ test("Test calling commitdata", async () => {
 
 });
 
+test("Test streaming commitdata", async () => {
+    const encoded = new TextEncoder().encode('{"commitId":0}\n{"commit');
+    const remaining = new TextEncoder().encode('Id":1}\n');
+    const read = jest.fn()
+        .mockResolvedValueOnce({ done: false, value: encoded })
+        .mockResolvedValueOnce({ done: false, value: remaining })
+        .mockResolvedValueOnce({ done: true });
+
+    const response: any = jest.fn().mockResolvedValue({
+        ok: true,
+        body: { getReader: () => ({ read: read }) },
+    });
+
+    global.fetch = jest.fn().mockImplementation(response);
+
+    const params: RequestParams = { repo: "clone", branch: "branch" };
+    const commits: any[] = [];
+    const setError = jest.fn();
+
+    const complete = await loadCommitDataStreamRequest(params, (commit: any) => commits.push(commit), setError);
+
+    expect(complete).toBe(true);
+    expect(commits).toEqual([{ commitId: 0 }, { commitId: 1 }]);
+    expect(setError).not.toHaveBeenCalled();
+
+    jest.resetAllMocks();
+
+});
+
+test("Test streaming a short page of commitdata", async () => {
+    const encoded = new TextEncoder().encode('{"commitId":0}\n');
+    const read = jest.fn()
+        .mockResolvedValueOnce({ done: false, value: encoded })
+        .mockResolvedValueOnce({ done: true });
+
+    const response: any = jest.fn().mockResolvedValue({
+        ok: true,
+        body: { getReader: () => ({ read: read }) },
+    });
+
+    global.fetch = jest.fn().mockImplementation(response);
+
+    const params: RequestParams = { repo: "clone", branch: "branch" };
+    const commits: any[] = [];
+    const setError = jest.fn();
+
+    const complete = await loadCommitDataStreamRequest(params, (commit: any) => commits.push(commit), setError, 2);
+
+    expect(complete).toBe(false);
+    expect(commits).toEqual([{ commitId: 0 }]);
+    expect(setError).toHaveBeenCalled();
+
+    jest.resetAllMocks();
+
+});
+
+test("Test streaming compact commitdata", async () => {
+    const encoded = new TextEncoder().encode(
+        '{"timestamp":1,"changes":[["A",1]],"author":0,"commitHash":"hash0","commitId":0,"paths":[[-1,"src"],[0,"a.txt"]],"authors":["author"]}\n' +
+        '{"timestamp":2,"changes":[["M",1]],"author":0,"commitHash":"hash1","commitId":1}\n');
+    const read = jest.fn()
+        .mockResolvedValueOnce({ done: false, value: encoded })
+        .mockResolvedValueOnce({ done: true });
+
+    const response: any = jest.fn().mockResolvedValue({
+        ok: true,
+        body: { getReader: () => ({ read: read }) },
+    });
+
+    global.fetch = jest.fn().mockImplementation(response);
+
+    const params: CommitRequestParams = { repo: "clone", branch: "branch", compact: true };
+    const commits: any[] = [];
+
+    const complete = await loadCommitDataStreamRequest(params, (commit: any) => commits.push(commit), jest.fn());
+
+    expect(complete).toBe(true);
+    expect(commits.map(commit => commit.changes)).toEqual([[{ type: "A", file: "src/a.txt" }], [{ type: "M", file: "src/a.txt" }]]);
+    expect(commits[1].author).toEqual("author");
+
+    jest.resetAllMocks();
+
+});
+
 test("Test calling invalid fetch", async () => {
     // global.fetch = jest.fn().mockImplementation(setupFetchStub({}))
     const response: any = jest.fn().mockResolvedValue({
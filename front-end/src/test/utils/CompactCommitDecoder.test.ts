@@ -0,0 +1,32 @@
+import { CompactCommitDecoder } from "../../utils/CompactCommitDecoder";
+
+test("Test decoding compact commits", () => {
+    const decoder = new CompactCommitDecoder();
+
+    const first = decoder.decode({
+        timestamp: 1,
+        changes: [["A", 2], ["M", 3, true]],
+        author: 0,
+        commitHash: "hash0",
+        commitId: 0,
+        paths: [[-1, "src"], [0, "main"], [1, "A.java"], [0, "lib"]],
+        authors: ["alice"],
+    });
+    const second = decoder.decode({
+        timestamp: 2,
+        changes: [["D", 2]],
+        author: 0,
+        commitHash: "hash1",
+        commitId: 1,
+    });
+
+    expect(first).toEqual({
+        timestamp: 1,
+        changes: [{ type: "A", file: "src/main/A.java" }, { type: "M", file: "src/lib", collapsed: true }],
+        author: "alice",
+        commitHash: "hash0",
+        commitId: 0,
+    });
+    expect(second.changes).toEqual([{ type: "D", file: "src/main/A.java" }]);
+    expect(second.author).toEqual("alice");
+});
@@ -1,5 +1,7 @@
 
 import { RequestParams } from "../repository/RepositoryDataManager";
+import { Commit, FileChange } from "../repository/RepositoryRepresentation";
+import { CompactCommitDecoder } from "./CompactCommitDecoder";
 import { getURL } from "./QueryStringUtils";
 
 
@@ -7,6 +9,9 @@ export interface CommitRequestParams extends RequestParams {
     startCommit?: number, 
     commitCount?: number,
     settings?: string;
+    compact?: boolean;
+    tip?: string;
+    version?: string;
 }
 
 /**
@@ -29,6 +34,92 @@ export async function loadCommitDataRequest(
     performJSONGet(url, setData, setError);
 }
 
+export interface CommitChangesRequestParams extends RequestParams {
+    commitId: number;
+}
+
+/**
+ * Function to fetch the full changes of a single commit, used for commits
+ * whose changes have been summarised within their page
+ * @param params The request parameters
+ * @param setData The callback method in the event of a success
+ * @param setError The callback method in the event of a failure
+ */
+export async function loadCommitChangesRequest(
+    params: CommitChangesRequestParams,
+    setData: (data: FileChange[]) => void,
+    setError: (error: string) => void,
+) {
+
+    const url = getURL("/api/commitchanges", params);
+    console.log("Making request to", url)
+
+    performJSONGet(url, setData, setError);
+}
+
+/**
+ * Function to stream repository data from the back-end, each commit is passed
+ * to the callback as soon as it has been received. If the compact parameter is
+ * set, the commits are decoded before being passed to the callback
+ * @param params The request parameters
+ * @param addCommit The callback method for each received commit
+ * @param setError The callback method in the event of a failure
+ * @param expectedCommits The number of commits in the page, if fewer are received the page is treated as failed
+ * @returns If the full page of commits was received
+ */
+export async function loadCommitDataStreamRequest(
+    params: CommitRequestParams,
+    addCommit: (commit: Commit) => void,
+    setError: (error: string) => void,
+    expectedCommits?: number,
+): Promise<boolean> {
+
+    const url = getURL("/api/commitdata/stream", params);
+    console.log("Making request to", url)
+
+    return await fetch(url)
+        .then(async response => {
+            if (!response.ok) {
+                throw new Error(await response.text());
+            }
+            if (!response.body) {
+                throw new Error("Response cannot be streamed");
+            }
+
+            const reader = response.body.getReader();
+            const decoder = new TextDecoder();
+            const commitDecoder = params.compact ? new CompactCommitDecoder() : undefined;
+            const parseCommit = (line: string) => commitDecoder ? commitDecoder.decode(JSON.parse(line)) : JSON.parse(line);
+            let buffered = "";
+            let received = 0;
+            const receiveLine = (line: string) => {
+                addCommit(parseCommit(line));
+                received++;
+            };
+
+            for (let result = await reader.read(); !result.done; result = await reader.read()) {
+                buffered += decoder.decode(result.value, { stream: true });
+                // the last line may not have been fully received yet
+                const lines = buffered.split("\n");
+                buffered = lines.pop()!;
+                lines.filter(line => line.trim().length !== 0).forEach(receiveLine);
+            }
+
+            if (buffered.trim().length !== 0) {
+                receiveLine(buffered);
+            }
+            // the back-end cannot report errors once streaming has begun, so a short page is a failure
+            if (expectedCommits !== undefined && received < expectedCommits) {
+                throw new Error("Only " + received + " of " + expectedCommits + " commits were received");
+            }
+            return true;
+        })
+        .catch(error => {
+            setError("URL Error: " + error.message);
+            return false;
+        });
+}
+
 async function performJSONGet(
     url: string,
     setData: (data: any) => void,
@@ -50,15 +141,49 @@ async function performJSONGet(
         });
 }
 
+/**
+ * The interval between polls of a previs job in milliseconds
+ */
+const PREVIS_POLL_INTERVAL = 1000;
+
+/**
+ * Function to prepare a repository for visualisation. The repository is
+ * prepared by a background job on the back-end which is polled until the
+ * repository metadata is available
+ * @param params The request parameters
+ * @param setData The callback method with the repository metadata
+ * @param setError The callback method in the event of a failure
+ * @param setProgress The callback method for each progress update of the job
+ */
 export async function performPrevis(
     params: RequestParams,
     setData: (data: any) => void,
     setError: (error: string) => void,
+    setProgress: (job: any) => void = () => { },
 ) {
 
-    const url = getURL("/api/previs", params);
+    const url = getURL("/api/previs", { ...params, async: true });
     console.log("Making request to:", url);
 
-    performJSONGet(url, setData, setError);
+    let job: any;
+    await performJSONGet(url, (data: any) => job = data, setError);
+
+    while (job && job.status === "RUNNING") {
+        setProgress(job);
+        await new Promise(resolve => setTimeout(resolve, PREVIS_POLL_INTERVAL));
+
+        const statusURL = getURL("/api/previs/status", { job: job.id });
+        job = undefined;
+        await performJSONGet(statusURL, (data: any) => job = data, setError);
+    }
+
+    if (!job) {
+        return;
+    }
+    if (job.status === "FAILED") {
+        setError("URL Error: " + job.error);
+        return;
+    }
+    setData(job.metadata);
 
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+import { Commit, FileChange, Filechangetype } from "../repository/RepositoryRepresentation";
+
+/**
+ * A commit in the compact format returned by the back-end when the compact
+ * parameter is set. Paths and authors are ids within the tables of the response,
+ * and each commit carries the entries it adds to the tables
+ */
+export interface CompactCommit {
+    timestamp: number,
+    changes: [string, number, (boolean | number)?, number?][], // [type, path id, collapsed], [type, path id, old path id] for renames or [type, path id, collapsed, count] for summaries
+    author: number,
+    commitHash: string,
+    commitId: number,
+    paths?: [number, string][], // [parent path id or -1, name]
+    authors?: string[],
+    summarised?: boolean,
+}
+
+/**
+ * Decodes the commits of a single response in the compact format, the commits
+ * must be decoded in the order they were received
+ */
+export class CompactCommitDecoder {
+
+    private paths: string[] = [];
+
+    private authors: string[] = [];
+
+    decode(compact: CompactCommit): Commit {
+        compact.paths?.forEach(([parent, name]) => {
+            this.paths.push(parent === -1 ? name : this.paths[parent] + "/" + name);
+        });
+        compact.authors?.forEach(author => this.authors.push(author));
+
+        const changes: FileChange[] = compact.changes.map(([type, path, extra, count]) => {
+            const change: FileChange = { type: type, file: this.paths[path] };
+            if (type === Filechangetype.RENAMED) {
+                change.oldFile = this.paths[extra as number];
+            } else if (extra !== undefined) {
+                change.collapsed = extra as boolean;
+            }
+            if (count !== undefined) {
+                change.count = count;
+            }
+            return change;
+        });
+
+        const commit: Commit = {
+            timestamp: compact.timestamp,
+            changes: changes,
+            author: this.authors[compact.author],
+            commitHash: compact.commitHash,
+            commitId: compact.commitId,
+        };
+        if (compact.summarised) {
+            commit.summarised = true;
+        }
+        return commit;
+    }
+
+}
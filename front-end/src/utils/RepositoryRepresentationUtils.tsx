@@ -61,15 +61,28 @@ export function addDirectory(nodeData: DirectoryData[], links: LinkData[], dirNa
 export interface ModifiedFileData {
     fileData: FileData;
     changeType: string;
+    oldFileData?: FileData; // only set for renames
+    summary?: boolean; // if the change is a summary of the changes within a folder
 }
 
 export function getModifiedFileData(file: FileChange): ModifiedFileData {
-    const split = file.file.split("/");
+    const modified: ModifiedFileData = { changeType: file.type, fileData: getFileData(file.file, file.collapsed) };
+    if (file.oldFile) {
+        modified.oldFileData = getFileData(file.oldFile, file.collapsed);
+    }
+    if (file.count !== undefined) {
+        modified.summary = true;
+    }
+    return modified;
+}
+
+function getFileData(file: string, collapsed?: boolean): FileData {
+    const split = file.split("/");
 
     const name = split.pop()!;
     const dir = split.join("/");
     const extension = name.split(".").pop()!;
     const color = FileColorManager.getColorFromExtension(extension);
 
-    return { changeType: file.type, fileData: { name: name, directory: dir, color: color, fileExtension: extension, collapsed: file.collapsed} };
+    return { name: name, directory: dir, color: color, fileExtension: extension, collapsed: collapsed };
 }
\ No newline at end of file
@@ -0,0 +1,271 @@
+package com.github.mcnair.repohistoryvisualiser.benchmark;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.benchmark.SyntheticRepository.Shape;
+import com.github.mcnair.repohistoryvisualiser.repository.CommitIndex;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.Milestone;
+import com.github.mcnair.repohistoryvisualiser.repository.Settings;
+import com.github.mcnair.repohistoryvisualiser.repository.Structure;
+import com.github.mcnair.repohistoryvisualiser.services.CommitIndexService;
+import com.github.mcnair.repohistoryvisualiser.services.DiffCacheService;
+import com.github.mcnair.repohistoryvisualiser.services.GitService;
+import com.github.mcnair.repohistoryvisualiser.services.MetricsService;
+import com.github.mcnair.repohistoryvisualiser.services.RepositoryPoolService;
+import com.github.mcnair.repohistoryvisualiser.services.StructureCollapser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the commit traversal and diff paths of {@link GitService}
+ * against synthetic repositories, see {@link SyntheticRepository}. The private
+ * steps of the traversal are measured through the public methods which use
+ * them:
+ * <ul>
+ *     <li>{@code loadCommitData} computes a page of commits, with structures
+ *     which are collapsed throughout the page or which end within the page so
+ *     the files within the structure are listed</li>
+ *     <li>{@code collapseChanges} applies the collapsed structures to the
+ *     changes of a page as each commit is created</li>
+ *     <li>{@code getCommitCount} reads the branch index for the metadata</li>
+ *     <li>{@code orderMilestoneAndStructureData} locates the milestone and
+ *     structure commits for the metadata</li>
+ * </ul>
+ * Run with {@code -prof gc} to report the allocation rate alongside the
+ * throughput
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GitServiceBenchmark {
+
+    private static final String BRANCH = "master";
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final int STRUCTURES = 5;
+
+    private static final int MILESTONES = 20;
+
+    @Param({"1000", "10000", "100000"})
+    public int commits;
+
+    @Param({"WIDE", "DEEP"})
+    public Shape shape;
+
+    private Git git;
+
+    private GitService gitService;
+
+    private RepositoryPoolService repositoryPoolService;
+
+    private MetricsService metricsService;
+
+    private CommitIndex index;
+
+    /**
+     * The first commit of the page which is computed
+     */
+    private int pageStart;
+
+    /**
+     * Commit hashes spread evenly through the history, referred to by the
+     * milestones and structures
+     */
+    private List<String> commitHashes;
+
+    /**
+     * The diff cache used when it is disabled, which never has the changes of a
+     * commit so they are always computed
+     */
+    private static class DisabledDiffCacheService extends DiffCacheService {
+
+        DisabledDiffCacheService() {
+            super(new AppProperties());
+        }
+
+        @Override
+        public List<FileChange> getChanges(Repository repo, AnyObjectId commit) {
+            return null;
+        }
+
+        @Override
+        public void storeChanges(Repository repo, AnyObjectId commit, List<FileChange> changes) {
+        }
+
+    }
+
+    /**
+     * The state of the benchmarks which compute a page of commits
+     */
+    @State(Scope.Benchmark)
+    public static class PageState {
+
+        public enum Structures {
+            NONE, COLLAPSED, EXPANDING
+        }
+
+        @Param({"NONE", "COLLAPSED", "EXPANDING"})
+        public Structures structures;
+
+        @Param({"true", "false"})
+        public boolean diffCache;
+
+        private GitService gitService;
+
+        private List<Structure> pageStructures;
+
+        @Setup(Level.Trial)
+        public void setup(GitServiceBenchmark benchmark) {
+            DiffCacheService diffCacheService = diffCache ? new DiffCacheService(new AppProperties()) : new DisabledDiffCacheService();
+            gitService = new GitService(new CommitIndexService(), diffCacheService, benchmark.repositoryPoolService, benchmark.metricsService, new AppProperties());
+
+            pageStructures = new ArrayList<>();
+            if (structures != Structures.NONE) {
+                for (int i = 0; i < STRUCTURES; i++) {
+                    Structure structure = createStructure(benchmark.shape, i);
+                    if (structures == Structures.EXPANDING) {
+                        structure.endCommitID = benchmark.pageStart + PAGE_SIZE / 2;
+                    }
+                    pageStructures.add(structure);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            gitService.shutdown();
+        }
+
+    }
+
+    /**
+     * The state of the benchmark which collapses the changes of a page
+     */
+    @State(Scope.Benchmark)
+    public static class CollapseState {
+
+        @Param({"false", "true"})
+        public boolean collapse;
+
+        private StructureCollapser collapser;
+
+        private List<List<FileChange>> pageChanges;
+
+        @Setup(Level.Trial)
+        public void setup(GitServiceBenchmark benchmark) throws Exception {
+            List<Structure> structures = new ArrayList<>();
+            if (collapse) {
+                for (int i = 0; i < STRUCTURES; i++) {
+                    structures.add(createStructure(benchmark.shape, i));
+                }
+            }
+            collapser = new StructureCollapser(structures);
+
+            pageChanges = new ArrayList<>();
+            benchmark.gitService.loadCommitData(benchmark.git, benchmark.index, List.of(), benchmark.pageStart, PAGE_SIZE)
+                    .values().forEach(commit -> pageChanges.add(commit.getChanges()));
+        }
+
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        git = SyntheticRepository.open(shape, commits);
+        repositoryPoolService = new RepositoryPoolService(new AppProperties());
+        metricsService = new MetricsService(new SimpleMeterRegistry(), new AppProperties(), repositoryPoolService);
+        gitService = new GitService(new CommitIndexService(), new DiffCacheService(new AppProperties()), repositoryPoolService, metricsService, new AppProperties());
+
+        index = gitService.getBranchIndex(git, BRANCH);
+        pageStart = commits / 2;
+
+        CommitIndexService commitIndexService = new CommitIndexService();
+        commitHashes = new ArrayList<>();
+        int step = Math.max(1, commits / MILESTONES);
+        for (int ordinal = 0; ordinal < commits; ordinal += step) {
+            commitHashes.add(commitIndexService.readCommitIds(index, ordinal, 1).get(0).name());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        gitService.shutdown();
+        repositoryPoolService.shutdown();
+        git.close();
+    }
+
+    @Benchmark
+    public Object loadCommitData(PageState state) throws Exception {
+        return state.gitService.loadCommitData(git, index, state.pageStructures, pageStart, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public void collapseChanges(CollapseState state, Blackhole blackhole) {
+        for (List<FileChange> changes : state.pageChanges) {
+            // the collapser moves changes into the structure, so each commit is given its own copy
+            List<FileChange> copy = new ArrayList<>(changes.size());
+            for (FileChange change : changes) {
+                copy.add(new FileChange(change.getType(), change.getFile()));
+            }
+            blackhole.consume(state.collapser.collapse(copy));
+        }
+    }
+
+    @Benchmark
+    public Object getCommitCount() throws Exception {
+        return gitService.getRepositoryMetadata(null, BRANCH, git, null);
+    }
+
+    @Benchmark
+    public Object orderMilestoneAndStructureData() throws Exception {
+        // the settings are modified when they are ordered, so are created for each call
+        Settings settings = new Settings();
+        settings.milestones = new ArrayList<>();
+        settings.structures = new ArrayList<>();
+        for (int i = 0; i < commitHashes.size(); i++) {
+            Milestone milestone = new Milestone();
+            milestone.commitHash = commitHashes.get(i);
+            milestone.milestone = "Milestone " + i;
+            settings.milestones.add(milestone);
+        }
+        for (int i = 0; i + 1 < commitHashes.size() && i < STRUCTURES; i++) {
+            Structure structure = createStructure(shape, i);
+            structure.startCommitHash = commitHashes.get(i);
+            structure.endCommitHash = commitHashes.get(commitHashes.size() - 1 - i);
+            settings.structures.add(structure);
+        }
+        return gitService.getRepositoryMetadata(null, BRANCH, git, settings);
+    }
+
+    private static Structure createStructure(Shape shape, int folder) {
+        Structure structure = new Structure();
+        structure.label = "Structure " + folder;
+        structure.folder = shape.getFolder(folder);
+        structure.collapse = true;
+        return structure;
+    }
+
+}
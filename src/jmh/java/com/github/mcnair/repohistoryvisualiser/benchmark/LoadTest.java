@@ -0,0 +1,354 @@
+package com.github.mcnair.repohistoryvisualiser.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.benchmark.SyntheticRepository.Shape;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.util.FileUtils;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starts the application against local {@code file://} repositories and plays
+ * back many repositories at once, as a user watching a visualisation would.
+ * Each session prepares its repository with {@code /api/previs}, then requests
+ * the pages of commits in order with {@code /api/commitdata} at the playback
+ * rate, starting again from the first page once the history has been played.
+ * <p>
+ * The latency of each endpoint, the error rate and the heap and garbage
+ * collection of the JVM are reported once the test has finished. The
+ * application runs within the same JVM as the sessions, so the heap and
+ * garbage collection figures include the (small) cost of the sessions. The
+ * options are given as {@code name=value} arguments, see {@link Options}
+ */
+public class LoadTest {
+
+    private static final String BRANCH = "master";
+
+    private static final File CLONE_FOLDER = new File("target", "loadtest-clones");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * The options of a load test
+     */
+    static class Options {
+
+        /**
+         * The number of concurrent playback sessions
+         */
+        int sessions = 24;
+
+        /**
+         * The sizes of the synthetic repositories, a repository of each shape is
+         * generated for each size
+         */
+        List<Integer> commits = List.of(1000, 10000);
+
+        /**
+         * Any other local repositories to play back, as {@code file://} URLs
+         */
+        List<String> repositories = new ArrayList<>();
+
+        /**
+         * The number of commits requested within each page
+         */
+        int pageSize = 100;
+
+        /**
+         * The time between the page requests of a session, in milliseconds
+         */
+        long pageInterval = 500;
+
+        /**
+         * The length of the test, in seconds
+         */
+        long duration = 60;
+
+        /**
+         * If the compact commit format is requested
+         */
+        boolean compact = true;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                String[] option = arg.split("=", 2);
+                if (option.length != 2) {
+                    throw new IllegalArgumentException("Options must be given as name=value, found " + arg);
+                }
+                String value = option[1];
+                switch (option[0]) {
+                    case "sessions" -> options.sessions = Integer.parseInt(value);
+                    case "commits" -> options.commits = Arrays.stream(value.split(",")).map(Integer::parseInt).toList();
+                    case "repositories" -> options.repositories = Arrays.asList(value.split(","));
+                    case "pageSize" -> options.pageSize = Integer.parseInt(value);
+                    case "pageInterval" -> options.pageInterval = Long.parseLong(value);
+                    case "duration" -> options.duration = Long.parseLong(value);
+                    case "compact" -> options.compact = Boolean.parseBoolean(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + option[0]);
+                }
+            }
+            return options;
+        }
+
+    }
+
+    /**
+     * The latencies and errors of the requests to an endpoint
+     */
+    static class EndpointStatistics {
+
+        /**
+         * The upper bounds of the histogram buckets, in milliseconds
+         */
+        private static final long[] BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, Long.MAX_VALUE};
+
+        private final List<Long> latencies = new ArrayList<>();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        synchronized void record(long nanos) {
+            latencies.add(nanos);
+        }
+
+        void recordError() {
+            errors.incrementAndGet();
+        }
+
+        synchronized void report(PrintWriter out, String endpoint, double seconds) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            long requests = sorted.length + errors.get();
+
+            out.printf("%n%s%n", endpoint);
+            out.printf("  requests   %d (%.1f/s), %d bytes received%n", requests, requests / seconds, bytes.get());
+            out.printf("  errors     %d (%.2f%%)%n", errors.get(), requests == 0 ? 0 : 100.0 * errors.get() / requests);
+            if (sorted.length == 0) {
+                return;
+            }
+            out.printf("  latency    p50 %.1fms, p90 %.1fms, p99 %.1fms, max %.1fms%n",
+                    percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6);
+
+            int next = 0;
+            for (long bucket : BUCKETS) {
+                int count = 0;
+                while (next < sorted.length && sorted[next] <= TimeUnit.MILLISECONDS.toNanos(bucket)) {
+                    next++;
+                    count++;
+                }
+                if (count > 0) {
+                    String label = (bucket == Long.MAX_VALUE) ? "> 10000ms" : "<= " + bucket + "ms";
+                    out.printf("  %-10s %6d %s%n", label, count, "#".repeat((int) Math.ceil(50.0 * count / sorted.length)));
+                }
+            }
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1e6;
+        }
+
+    }
+
+    private final Options options;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    private final Map<String, EndpointStatistics> statistics = new LinkedHashMap<>();
+
+    private String baseURL;
+
+    private long endTime;
+
+    public LoadTest(Options options) {
+        this.options = options;
+        statistics.put("/api/previs", new EndpointStatistics());
+        statistics.put("/api/commitdata", new EndpointStatistics());
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest(Options.parse(args)).run();
+    }
+
+    public void run() throws Exception {
+        // the repositories are cloned again by every test, so the first sessions include the clone
+        if (CLONE_FOLDER.exists()) {
+            FileUtils.delete(CLONE_FOLDER, FileUtils.RECURSIVE);
+        }
+
+        // devtools would restart the application on another thread, running the load test again
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        StringWriter report = new StringWriter();
+        PrintWriter out = new PrintWriter(report);
+        ConfigurableApplicationContext context = SpringApplication.run(RepoHistoryVisualisorApplication.class,
+                "--server.port=0",
+                "--application.cloneFolder=" + CLONE_FOLDER.getAbsolutePath(),
+                "--logging.level.com.github.mcnair=WARN");
+        try {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            baseURL = "http://localhost:" + port;
+
+            List<String> repositories = new ArrayList<>(options.repositories);
+            for (int commits : options.commits) {
+                for (Shape shape : Shape.values()) {
+                    try (Git git = SyntheticRepository.open(shape, commits)) {
+                        repositories.add(git.getRepository().getWorkTree().toURI().toString());
+                    }
+                }
+            }
+
+            System.out.printf("Playing back %d repositories with %d sessions for %ds%n", repositories.size(), options.sessions, options.duration);
+            Map<String, Long> gcBefore = getCollections();
+            resetPeakHeap();
+
+            long start = System.nanoTime();
+            endTime = start + TimeUnit.SECONDS.toNanos(options.duration);
+            ExecutorService sessions = Executors.newFixedThreadPool(options.sessions);
+            for (int i = 0; i < options.sessions; i++) {
+                String repository = repositories.get(i % repositories.size());
+                sessions.execute(() -> playBack(repository));
+            }
+            sessions.shutdown();
+            sessions.awaitTermination(options.duration + 60, TimeUnit.SECONDS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            statistics.forEach((endpoint, endpointStatistics) -> endpointStatistics.report(out, endpoint, seconds));
+            reportMemory(out, gcBefore, seconds);
+        } finally {
+            context.close();
+        }
+
+        // reported once the application has stopped, so the report is not mixed with the shutdown logging
+        System.out.print(report);
+    }
+
+    /**
+     * A single user playing back a repository until the end of the test
+     */
+    private void playBack(String repository) {
+        String query = "repo=" + encode(repository) + "&branch=" + BRANCH;
+
+        while (System.nanoTime() < endTime) {
+            JsonNode metadata = request("/api/previs", query);
+            if (metadata == null) {
+                sleep(options.pageInterval);
+                continue;
+            }
+
+            String tip = metadata.path("tip").asText(null);
+            String version = metadata.path("version").asText(null);
+            int totalCommits = metadata.path("totalCommits").asInt();
+            for (int startCommit = 0; startCommit < totalCommits && System.nanoTime() < endTime; startCommit += options.pageSize) {
+                String pageQuery = query + "&startCommit=" + startCommit + "&commitCount=" + options.pageSize + "&compact=" + options.compact
+                        + (tip == null ? "" : "&tip=" + tip) + (version == null ? "" : "&version=" + version);
+                request("/api/commitdata", pageQuery);
+                sleep(options.pageInterval);
+            }
+        }
+    }
+
+    /**
+     * Performs a request, recording the latency or error
+     *
+     * @return The response body, or null if the request failed
+     */
+    private JsonNode request(String endpoint, String query) {
+        EndpointStatistics endpointStatistics = statistics.get(endpoint);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseURL + endpoint + "?" + query))
+                .header("Accept", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .GET().build();
+
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                endpointStatistics.recordError();
+                return null;
+            }
+            endpointStatistics.record(System.nanoTime() - start);
+            endpointStatistics.bytes.addAndGet(response.body().length);
+            return MAPPER.readTree(response.body());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            endpointStatistics.recordError();
+            return null;
+        } catch (Exception e) {
+            endpointStatistics.recordError();
+            return null;
+        }
+    }
+
+    private static void reportMemory(PrintWriter out, Map<String, Long> gcBefore, double seconds) {
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        out.printf("%nJVM%n");
+        out.printf("  heap       %dMB peak, %dMB max%n", peakHeap >> 20, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax() >> 20);
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long count = collector.getCollectionCount() - gcBefore.getOrDefault(collector.getName() + ".count", 0L);
+            long time = collector.getCollectionTime() - gcBefore.getOrDefault(collector.getName() + ".time", 0L);
+            out.printf("  %-24s %d collections, %dms (%.2f%% of the test)%n", collector.getName(), count, time, time / (seconds * 10));
+        }
+    }
+
+    private static Map<String, Long> getCollections() {
+        Map<String, Long> collections = new HashMap<>();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections.put(collector.getName() + ".count", collector.getCollectionCount());
+            collections.put(collector.getName() + ".time", collector.getCollectionTime());
+        }
+        return collections;
+    }
+
+    private static void resetPeakHeap() {
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.github.mcnair.repohistoryvisualiser.benchmark;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.benchmark.SyntheticRepository.Shape;
+import com.github.mcnair.repohistoryvisualiser.services.RepositoryMaintenanceService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks of walking the history of a repository before and after it has
+ * been maintained by {@link RepositoryMaintenanceService}, which repacks it
+ * with reachability bitmaps. Each trial uses its own copy of a synthetic
+ * repository, see {@link SyntheticRepository}, so the shared repositories are
+ * never repacked
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryMaintenanceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int commits;
+
+    @Param({"WIDE", "DEEP"})
+    public Shape shape;
+
+    @Param({"false", "true"})
+    public boolean maintained;
+
+    private File directory;
+
+    private Git git;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        File source;
+        try (Git synthetic = SyntheticRepository.open(shape, commits)) {
+            source = synthetic.getRepository().getDirectory();
+        }
+
+        directory = Files.createTempDirectory(new File("target").toPath(), "maintenance-").toFile();
+        copy(source.toPath(), directory.toPath().resolve(Constants.DOT_GIT));
+        git = Git.open(directory);
+
+        if (maintained) {
+            RepositoryMaintenanceService maintenanceService = new RepositoryMaintenanceService(new AppProperties());
+            try {
+                maintenanceService.maintain(git);
+            } finally {
+                maintenanceService.shutdown();
+            }
+        }
+    }
+
+    private static void copy(Path source, Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Path copy = target.resolve(source.relativize(path));
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        git.close();
+        FileUtils.delete(directory, FileUtils.RECURSIVE);
+    }
+
+    @Benchmark
+    public int walkHistory() throws Exception {
+        int count = 0;
+        try (RevWalk walk = new RevWalk(git.getRepository())) {
+            walk.setRetainBody(false);
+            walk.markStart(walk.parseCommit(git.getRepository().resolve(Constants.HEAD)));
+            while (walk.next() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,292 @@
+package com.github.mcnair.repohistoryvisualiser.benchmark;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.PackInserter;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Generates deterministic repositories for the benchmarks. The same shape and
+ * size always produce the same history, so results can be compared between
+ * runs and machines. Repositories are generated once and reused from
+ * {@code target/benchmark-repositories}
+ */
+public class SyntheticRepository {
+
+    private static final File REPOSITORY_FOLDER = new File("target", "benchmark-repositories");
+
+    private static final String COMPLETE_MARKER = "complete";
+
+    private static final String BRANCH = "master";
+
+    private static final long START_TIME = 1_500_000_000_000L;
+
+    private static final int AUTHORS = 20;
+
+    /**
+     * The layout of the files within a repository
+     */
+    public enum Shape {
+
+        /**
+         * 50 top level folders of 100 files
+         */
+        WIDE(50, 1, 100),
+
+        /**
+         * Folders nested 6 deep with 3 folders at each level and 8 files in
+         * each of the deepest folders
+         */
+        DEEP(3, 6, 8);
+
+        private final int foldersPerLevel;
+
+        private final int depth;
+
+        private final int filesPerFolder;
+
+        Shape(int foldersPerLevel, int depth, int filesPerFolder) {
+            this.foldersPerLevel = foldersPerLevel;
+            this.depth = depth;
+            this.filesPerFolder = filesPerFolder;
+        }
+
+        /**
+         * Used to get the path of a top level folder, which are used as
+         * structure folders by the benchmarks
+         *
+         * @param folder The index of the folder
+         * @return The path of the folder
+         */
+        public String getFolder(int folder) {
+            return folderName(folder % foldersPerLevel);
+        }
+
+    }
+
+    /**
+     * A folder of the working tree, only folders which have changed since the
+     * last commit are written again
+     */
+    private static class Folder {
+
+        private final TreeMap<String, Folder> folders = new TreeMap<>();
+
+        private final TreeMap<String, ObjectId> files = new TreeMap<>();
+
+        private ObjectId id;
+
+        private ObjectId write(ObjectInserter inserter) throws IOException {
+            if (id != null) {
+                return id;
+            }
+
+            // trees are sorted as if folder names end with a slash
+            TreeMap<String, Runnable> entries = new TreeMap<>();
+            TreeFormatter formatter = new TreeFormatter();
+            for (Map.Entry<String, Folder> folder : folders.entrySet()) {
+                ObjectId folderId = folder.getValue().write(inserter);
+                entries.put(folder.getKey() + "/", () -> formatter.append(folder.getKey(), FileMode.TREE, folderId));
+            }
+            for (Map.Entry<String, ObjectId> file : files.entrySet()) {
+                entries.put(file.getKey(), () -> formatter.append(file.getKey(), FileMode.REGULAR_FILE, file.getValue()));
+            }
+            entries.values().forEach(Runnable::run);
+
+            id = inserter.insert(formatter);
+            return id;
+        }
+
+    }
+
+    private final Shape shape;
+
+    private final int commits;
+
+    private final Random random;
+
+    private final Folder root = new Folder();
+
+    /**
+     * The folders containing files, along with the path of each folder
+     */
+    private final List<Folder> leafFolders = new ArrayList<>();
+
+    private final List<String> leafPaths = new ArrayList<>();
+
+    private SyntheticRepository(Shape shape, int commits) {
+        this.shape = shape;
+        this.commits = commits;
+        this.random = new Random(31L * shape.ordinal() + commits);
+    }
+
+    /**
+     * Used to open a synthetic repository, generating it if it does not exist
+     *
+     * @param shape   The layout of the files
+     * @param commits The number of commits on the master branch
+     * @return The repository
+     * @throws IOException     Thrown if the repository cannot be written
+     * @throws GitAPIException Thrown if the repository cannot be initialised
+     */
+    public static Git open(Shape shape, int commits) throws IOException, GitAPIException {
+        File directory = new File(REPOSITORY_FOLDER, shape.name().toLowerCase() + "-" + commits).getAbsoluteFile();
+        File marker = new File(directory, COMPLETE_MARKER);
+        if (!marker.exists()) {
+            if (directory.exists()) {
+                FileUtils.delete(directory, FileUtils.RECURSIVE);
+            }
+            new SyntheticRepository(shape, commits).generate(directory);
+            FileUtils.createNewFile(marker);
+        }
+        return Git.open(directory);
+    }
+
+    private void generate(File directory) throws IOException, GitAPIException {
+        long start = System.currentTimeMillis();
+        System.out.println("Generating " + shape + " repository with " + commits + " commits in " + directory);
+
+        try (Git git = Git.init().setDirectory(directory).setInitialBranch(BRANCH).call()) {
+            var repo = (FileRepository) git.getRepository();
+
+            ObjectId head = null;
+            // written as a single pack, loose objects would take far longer to write and read
+            try (PackInserter inserter = repo.getObjectDatabase().newPackInserter()) {
+                inserter.checkExisting(false);
+
+                createFolders(root, "", 0, inserter);
+                for (int i = 0; i < commits; i++) {
+                    if (i > 0) {
+                        modifyFiles(i, inserter);
+                    }
+                    head = commit(i, head, inserter);
+                }
+                inserter.flush();
+            }
+
+            RefUpdate update = repo.updateRef(Constants.R_HEADS + BRANCH);
+            update.setNewObjectId(head);
+            update.setForceUpdate(true);
+            update.update();
+        }
+
+        System.out.println("Generated repository in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private void createFolders(Folder folder, String path, int level, ObjectInserter inserter) throws IOException {
+        if (level == shape.depth) {
+            for (int i = 0; i < shape.filesPerFolder; i++) {
+                String name = fileName(i);
+                folder.files.put(name, insertBlob(inserter, path + name, 0));
+            }
+            leafFolders.add(folder);
+            leafPaths.add(path);
+            return;
+        }
+
+        for (int i = 0; i < shape.foldersPerLevel; i++) {
+            Folder child = new Folder();
+            folder.folders.put(folderName(i), child);
+            createFolders(child, path + folderName(i) + "/", level + 1, inserter);
+        }
+    }
+
+    /**
+     * Changes a few files within a single folder, occasionally adding or
+     * deleting a file
+     */
+    private void modifyFiles(int commit, ObjectInserter inserter) throws IOException {
+        int leaf = random.nextInt(leafFolders.size());
+        Folder folder = leafFolders.get(leaf);
+        String path = leafPaths.get(leaf);
+
+        int roll = random.nextInt(100);
+        if (roll < 5) {
+            String name = fileName(shape.filesPerFolder + random.nextInt(shape.filesPerFolder));
+            folder.files.put(name, insertBlob(inserter, path + name, commit));
+        } else if (roll < 8 && folder.files.size() > 1) {
+            folder.files.remove(randomFile(folder));
+        } else {
+            int changes = 1 + random.nextInt(3);
+            for (int i = 0; i < changes; i++) {
+                String name = randomFile(folder);
+                folder.files.put(name, insertBlob(inserter, path + name, commit));
+            }
+        }
+
+        invalidate(path);
+    }
+
+    private String randomFile(Folder folder) {
+        int skip = random.nextInt(folder.files.size());
+        var iterator = folder.files.keySet().iterator();
+        for (int i = 0; i < skip; i++) {
+            iterator.next();
+        }
+        return iterator.next();
+    }
+
+    /**
+     * Clears the tree IDs of a folder and its parents, so they are written
+     * again by the next commit
+     */
+    private void invalidate(String path) {
+        Folder folder = root;
+        folder.id = null;
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                folder = folder.folders.get(segment);
+                folder.id = null;
+            }
+        }
+    }
+
+    private ObjectId commit(int commit, ObjectId parent, ObjectInserter inserter) throws IOException {
+        int author = random.nextInt(AUTHORS);
+        PersonIdent ident = new PersonIdent("Author " + author, "author" + author + "@example.com",
+                new Date(START_TIME + commit * 60_000L), TimeZone.getTimeZone("UTC"));
+
+        CommitBuilder builder = new CommitBuilder();
+        builder.setTreeId(root.write(inserter));
+        if (parent != null) {
+            builder.setParentId(parent);
+        }
+        builder.setAuthor(ident);
+        builder.setCommitter(ident);
+        builder.setMessage("Commit " + commit + "\n");
+        return inserter.insert(builder);
+    }
+
+    private static ObjectId insertBlob(ObjectInserter inserter, String path, int commit) throws IOException {
+        return inserter.insert(Constants.OBJ_BLOB, (path + " changed by commit " + commit + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String folderName(int folder) {
+        return String.format("folder%02d", folder);
+    }
+
+    private static String fileName(int file) {
+        return String.format("file%03d.txt", file);
+    }
+
+}
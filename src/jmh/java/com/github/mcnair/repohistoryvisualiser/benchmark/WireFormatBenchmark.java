@@ -0,0 +1,103 @@
+package com.github.mcnair.repohistoryvisualiser.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.benchmark.SyntheticRepository.Shape;
+import com.github.mcnair.repohistoryvisualiser.repository.Commit;
+import com.github.mcnair.repohistoryvisualiser.repository.CommitIndex;
+import com.github.mcnair.repohistoryvisualiser.services.CommitIndexService;
+import com.github.mcnair.repohistoryvisualiser.services.DiffCacheService;
+import com.github.mcnair.repohistoryvisualiser.services.GitService;
+import com.github.mcnair.repohistoryvisualiser.services.MetricsService;
+import com.github.mcnair.repohistoryvisualiser.services.RepositoryPoolService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of encoding and decoding a page of commits as JSON and as CBOR,
+ * the two formats /commitdata can negotiate. The page is computed once from a
+ * synthetic repository, see {@link SyntheticRepository}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final String BRANCH = "master";
+
+    private static final int COMMITS = 1000;
+
+    private static final int PAGE_SIZE = 500;
+
+    @Param({"WIDE", "DEEP"})
+    public Shape shape;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    private Map<Integer, Commit> page;
+
+    private byte[] json;
+
+    private byte[] cbor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        var repositoryPoolService = new RepositoryPoolService(new AppProperties());
+        var metricsService = new MetricsService(new SimpleMeterRegistry(), new AppProperties(), repositoryPoolService);
+        var gitService = new GitService(new CommitIndexService(), new DiffCacheService(new AppProperties()), repositoryPoolService, metricsService, new AppProperties());
+        try (Git git = SyntheticRepository.open(shape, COMMITS)) {
+            CommitIndex index = gitService.getBranchIndex(git, BRANCH);
+            page = gitService.loadCommitData(git, index, List.of(), 0, PAGE_SIZE);
+        } finally {
+            gitService.shutdown();
+            repositoryPoolService.shutdown();
+        }
+
+        json = jsonMapper.writeValueAsBytes(page);
+        cbor = cborMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws Exception {
+        return jsonMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] encodeCbor() throws Exception {
+        return cborMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public Object decodeJson() throws Exception {
+        // the browser decodes the page into plain objects, so it is decoded as a tree
+        return jsonMapper.readTree(json);
+    }
+
+    @Benchmark
+    public Object decodeCbor() throws Exception {
+        return cborMapper.readTree(cbor);
+    }
+
+}
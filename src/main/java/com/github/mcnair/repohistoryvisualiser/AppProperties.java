@@ -11,8 +11,212 @@ public class AppProperties {
 	@Value("${application.cloneFolder}")
 	private String cloneFolder;
 
+	@Value("${application.diffThreads:0}")
+	private int diffThreads;
+
+	@Value("${application.renameDetection:true}")
+	private boolean renameDetection;
+
+	@Value("${application.renameLimit:1000}")
+	private int renameLimit;
+
+	@Value("${application.renameTimeoutMillis:1000}")
+	private int renameTimeoutMillis;
+
+	@Value("${application.commitSummaryThreshold:1000}")
+	private int commitSummaryThreshold;
+
+	@Value("${application.pageCacheSize:32}")
+	private int pageCacheSize;
+
+	@Value("${application.prefetchThreads:2}")
+	private int prefetchThreads;
+
+	@Value("${application.maxPrefetchPages:4}")
+	private int maxPrefetchPages;
+
+	@Value("${application.previsThreads:2}")
+	private int previsThreads;
+
+	@Value("${application.repositoryPoolSize:16}")
+	private int repositoryPoolSize;
+
+	@Value("${application.repositoryIdleSeconds:600}")
+	private int repositoryIdleSeconds;
+
+	@Value("${application.fetchIntervalSeconds:60}")
+	private int fetchIntervalSeconds;
+
+	@Value("${application.maintenanceIntervalMinutes:60}")
+	private int maintenanceIntervalMinutes;
+
+	@Value("${application.settingsCacheSize:64}")
+	private int settingsCacheSize;
+
+	@Value("${application.settingsRevalidateSeconds:60}")
+	private int settingsRevalidateSeconds;
+
+	@Value("${application.httpTimeoutSeconds:10}")
+	private int httpTimeoutSeconds;
+
+	@Value("${application.profilingMaxSeconds:600}")
+	private int profilingMaxSeconds;
+
+	@Value("${application.profilingMaxMegabytes:64}")
+	private int profilingMaxMegabytes;
+
+	@Value("${application.metricsMaxRepositories:100}")
+	private int metricsMaxRepositories;
+
 	public String getCloneFolder() {
 		return cloneFolder;
 	}
-	
+
+	/**
+	 * @return The number of threads the diffs of a page are computed on, 0 to use
+	 *         one thread per available processor
+	 */
+	public int getDiffThreads() {
+		return diffThreads;
+	}
+
+	/**
+	 * @return If renamed files are reported as a single rename, rather than as
+	 *         the deletion of the old path and the addition of the new path
+	 */
+	public boolean isRenameDetection() {
+		return renameDetection;
+	}
+
+	/**
+	 * @return The maximum number of added or deleted files within a commit which
+	 *         are compared by content to find renames, 0 for no limit. Renames
+	 *         without changes to the file are always found
+	 */
+	public int getRenameLimit() {
+		return renameLimit;
+	}
+
+	/**
+	 * @return The number of milliseconds renames within a single commit are
+	 *         compared by content for, before only renames without changes to
+	 *         the file are reported
+	 */
+	public int getRenameTimeoutMillis() {
+		return renameTimeoutMillis;
+	}
+
+	/**
+	 * @return The maximum number of changes a commit can have before its changes
+	 *         are summarised into folders, 0 to never summarise commits. The
+	 *         full changes of a summarised commit can be requested separately
+	 */
+	public int getCommitSummaryThreshold() {
+		return commitSummaryThreshold;
+	}
+
+	/**
+	 * @return The maximum number of commit pages held in memory
+	 */
+	public int getPageCacheSize() {
+		return pageCacheSize;
+	}
+
+	/**
+	 * @return The number of threads pages are prefetched on
+	 */
+	public int getPrefetchThreads() {
+		return prefetchThreads;
+	}
+
+	/**
+	 * @return The maximum number of pages a client can ask to be prefetched
+	 */
+	public int getMaxPrefetchPages() {
+		return maxPrefetchPages;
+	}
+
+	/**
+	 * @return The number of repositories which can be cloned or updated at once
+	 */
+	public int getPrevisThreads() {
+		return previsThreads;
+	}
+
+	/**
+	 * @return The maximum number of repositories kept open at once
+	 */
+	public int getRepositoryPoolSize() {
+		return repositoryPoolSize;
+	}
+
+	/**
+	 * @return The number of seconds an unused repository is kept open for, 0 to
+	 *         keep repositories open until the pool is full
+	 */
+	public int getRepositoryIdleSeconds() {
+		return repositoryIdleSeconds;
+	}
+
+	/**
+	 * @return The minimum number of seconds between fetches of the same branch
+	 */
+	public int getFetchIntervalSeconds() {
+		return fetchIntervalSeconds;
+	}
+
+	/**
+	 * @return The minimum number of minutes between repacks of the same repository
+	 */
+	public int getMaintenanceIntervalMinutes() {
+		return maintenanceIntervalMinutes;
+	}
+
+	/**
+	 * @return The maximum number of resolved settings held in memory
+	 */
+	public int getSettingsCacheSize() {
+		return settingsCacheSize;
+	}
+
+	/**
+	 * @return The number of seconds settings held in memory are used for before
+	 *         their file is checked for changes made outside of the application
+	 */
+	public int getSettingsRevalidateSeconds() {
+		return settingsRevalidateSeconds;
+	}
+
+	/**
+	 * @return The number of seconds to wait to connect to, or receive a response
+	 *         from, a remote server
+	 */
+	public int getHttpTimeoutSeconds() {
+		return httpTimeoutSeconds;
+	}
+
+	/**
+	 * @return The maximum length of a profiling recording, it is stopped once
+	 *         this has passed
+	 */
+	public int getProfilingMaxSeconds() {
+		return profilingMaxSeconds;
+	}
+
+	/**
+	 * @return The maximum size of a profiling recording, the oldest events are
+	 *         discarded once this has been reached
+	 */
+	public int getProfilingMaxMegabytes() {
+		return profilingMaxMegabytes;
+	}
+
+	/**
+	 * @return The maximum number of repositories metrics are recorded for, the
+	 *         metrics of further repositories are discarded
+	 */
+	public int getMetricsMaxRepositories() {
+		return metricsMaxRepositories;
+	}
+
 }
@@ -1,30 +1,58 @@
 package com.github.mcnair.repohistoryvisualiser.api;
 
 import com.github.mcnair.repohistoryvisualiser.exception.IllegalBranchException;
-import com.github.mcnair.repohistoryvisualiser.exception.IllegalCloneException;
 import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
 import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.github.mcnair.repohistoryvisualiser.repository.Commit;
-import com.github.mcnair.repohistoryvisualiser.repository.RepositoryMetadata;
+import com.github.mcnair.repohistoryvisualiser.repository.CommitIndex;
+import com.github.mcnair.repohistoryvisualiser.repository.CompactCommit;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.PrevisJob;
+import com.github.mcnair.repohistoryvisualiser.repository.PrevisJob.JobStatus;
 import com.github.mcnair.repohistoryvisualiser.repository.Settings;
 import com.github.mcnair.repohistoryvisualiser.repository.Structure;
+import com.github.mcnair.repohistoryvisualiser.services.CommitPageCacheService;
+import com.github.mcnair.repohistoryvisualiser.services.CompactCommitEncoder;
 import com.github.mcnair.repohistoryvisualiser.services.GitCloneService;
 import com.github.mcnair.repohistoryvisualiser.services.GitService;
+import com.github.mcnair.repohistoryvisualiser.services.JSONService;
+import com.github.mcnair.repohistoryvisualiser.services.PrevisJobService;
 import com.github.mcnair.repohistoryvisualiser.services.SettingsService;
 import com.github.mcnair.repohistoryvisualiser.services.URLService;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Slf4j
 @RestController
@@ -39,27 +67,43 @@ public class APIController {
 
     private SettingsService settingsService;
 
+    private JSONService jsonService;
+
+    private CommitPageCacheService commitPageCacheService;
+
+    private PrevisJobService previsJobService;
+
     @Autowired
-    public APIController(GitCloneService gitCloneService, URLService urlService, GitService gitService, SettingsService settingsService) {
+    public APIController(GitCloneService gitCloneService, URLService urlService, GitService gitService, SettingsService settingsService, JSONService jsonService, CommitPageCacheService commitPageCacheService, PrevisJobService previsJobService) {
         this.gitCloneService = gitCloneService;
         this.urlService = urlService;
         this.gitService = gitService;
         this.settingsService = settingsService;
+        this.jsonService = jsonService;
+        this.commitPageCacheService = commitPageCacheService;
+        this.previsJobService = previsJobService;
     }
 
     /**
-     * Used to clone a repository locally
+     * Used to clone a repository locally. The page is returned as JSON, or as CBOR
+     * if the client only accepts application/cbor
      *
-     * @param clone The repository to clone
+     * @param clone    The repository to clone
+     * @param prefetch The number of following pages to compute in the background, defaults to 1
+     * @param compact  If true, the commits are returned in commit order in the compact format, see {@link CompactCommit}
+     * @param tip      The branch tip the client expects, if it is the current tip the response can be cached indefinitely
+     * @param version  The page version the client expects from /previs, which must also be current for the response to be cached indefinitely
      * @return The response to the request
      */
     @GetMapping("/commitdata")
-    public ResponseEntity<?> commitData(@RequestParam(name = "repo") String clone, @RequestParam(name = "branch") String branch, @RequestParam(name = "settings", required = false) String settingsURL, @RequestParam(value = "startCommit", required = false) Integer startCommit, @RequestParam(value = "commitCount", required = false) Integer commitCount) {
+    public ResponseEntity<?> commitData(@RequestParam(name = "repo") String clone, @RequestParam(name = "branch") String branch, @RequestParam(name = "settings", required = false) String settingsURL, @RequestParam(value = "startCommit", required = false) Integer startCommit, @RequestParam(value = "commitCount", required = false) Integer commitCount, @RequestParam(value = "prefetch", required = false) Integer prefetch, @RequestParam(value = "compact", required = false) Boolean compact, @RequestParam(value = "tip", required = false) String tip, @RequestParam(value = "version", required = false) String version, @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch, @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
 
         log.info("Received request for API: /clone/{} with branch {}, startCommit = {}, commitCount = {}", clone, branch, startCommit, commitCount);
 
         if (startCommit == null) {
             startCommit = 0;
+        } else if (startCommit < 0) {
+            return ResponseEntity.badRequest().body("The start commit cannot be negative");
         }
 
         if (commitCount == null) {
@@ -80,24 +124,30 @@ public class APIController {
             return ResponseEntity.badRequest().body("You must call the /previs endpoint before you can begin the visualisation");
         }
 
-        List<Structure> structures = new ArrayList<>();
-        if (settingsURL != null) {
-            try {
-                Settings settings = settingsService.loadSettings(clone, settingsURL);
-
-                if(settings != null && settings.structures != null) {
-                    structures = settings.structures;
-                }
-            } catch (IllegalURLException | IOException e) {
-                log.error("Unable to load the settings data in the provided context. SettingsURL: {}", settingsURL);
-                return ResponseEntity.badRequest().body("Invalid settings URL");
-            }
+        List<Structure> structures;
+        try {
+            structures = loadStructures(clone, settingsURL);
+        } catch (IllegalURLException | IOException e) {
+            log.error("Unable to load the settings data in the provided context. SettingsURL: {}", settingsURL);
+            return ResponseEntity.badRequest().body("Invalid settings URL");
         }
 
         // processing the git repository to get the data required
+        CommitIndex index;
         Map<Integer, Commit> commits;
+        ResponseEntity.BodyBuilder responseBuilder;
         try {
-            commits = gitService.loadCommitData(clone, git, branch, structures, startCommit, commitCount);
+            index = gitService.getBranchIndex(git, branch);
+
+            // a page never changes for the same branch tip, so it is only computed if the client does not already have it
+            MediaType mediaType = negotiatePageType(accept);
+            String eTag = createETag(clone, index, structures, startCommit, commitCount, Boolean.TRUE.equals(compact), mediaType);
+            if (matchesETag(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).header(HttpHeaders.CACHE_CONTROL, createCacheControl(index, tip, version, structures)).build();
+            }
+            responseBuilder = ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).header(HttpHeaders.CACHE_CONTROL, createCacheControl(index, tip, version, structures)).contentType(mediaType);
+
+            commits = commitPageCacheService.getCommitPage(clone, settingsURL, git, index, structures, startCommit, commitCount);
         } catch (RepositoryTraverseException e) {
             log.error("Unable to traverse repository with clone URL = {}", clone);
             return ResponseEntity.badRequest().body("That repository cannot be visualised");
@@ -106,37 +156,159 @@ public class APIController {
             return ResponseEntity.badRequest().body("That branch does not exist on that repository");
         }
 
-        return ResponseEntity.ok(commits);
+        // the next page is likely to be requested while this page is being played
+        commitPageCacheService.prefetch(clone, settingsURL, git, index, structures, startCommit, commitCount, (prefetch == null) ? 1 : prefetch);
+
+        if (Boolean.TRUE.equals(compact)) {
+            CompactCommitEncoder encoder = new CompactCommitEncoder();
+            return responseBuilder.body(new TreeMap<>(commits).values().stream().map(encoder::encode).toList());
+        }
+        return responseBuilder.body(commits);
     }
 
-    @GetMapping("/previs")
-    public ResponseEntity<?> prepareVisualisation(@RequestParam(name = "repo") String clone, @RequestParam(name = "branch") String branch, @RequestParam(name = "settings", required = false) String settingsURL) {
-        log.info("Received request for API: /previs/{} with branch {} and settings {}", clone, branch, settingsURL);
+    /**
+     * Streams a page of commits as newline-delimited JSON, writing each commit as
+     * soon as it has been computed so playback can begin before the page is
+     * complete
+     *
+     * @param clone    The repository clone URL
+     * @param prefetch The number of following pages to compute in the background, defaults to 1
+     * @param compact  If true, each commit is written in the compact format, see {@link CompactCommit}
+     * @param tip      The branch tip the client expects, if it is the current tip the response can be cached indefinitely
+     * @param version  The page version the client expects from /previs, which must also be current for the response to be cached indefinitely
+     * @return The response to the request
+     */
+    @GetMapping(value = "/commitdata/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCommitData(@RequestParam(name = "repo") String clone, @RequestParam(name = "branch") String branch, @RequestParam(name = "settings", required = false) String settingsURL, @RequestParam(value = "startCommit", required = false) Integer startCommit, @RequestParam(value = "commitCount", required = false) Integer commitCount, @RequestParam(value = "prefetch", required = false) Integer prefetch, @RequestParam(value = "compact", required = false) Boolean compact, @RequestParam(value = "tip", required = false) String tip, @RequestParam(value = "version", required = false) String version, @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        log.info("Received request for API: /commitdata/stream/{} with branch {}, startCommit = {}, commitCount = {}", clone, branch, startCommit, commitCount);
+
+        int start = (startCommit == null) ? 0 : startCommit;
+        int count = (commitCount == null) ? 50 : commitCount;
+        int prefetchPages = (prefetch == null) ? 1 : prefetch;
+
+        if (start < 0) {
+            return streamError("The start commit cannot be negative");
+        }
 
         Git git;
         try {
-            git = gitCloneService.getUpToDateRepositoryOrClone(clone);
+            git = gitCloneService.getExistingRepositoryOrNull(clone);
+        } catch (IllegalURLException e) {
+            log.error("Unable to clone repository, clone may be malformed or not exist. URL = '{}'", clone);
+            return streamError("Invalid repository clone URL");
+        }
 
-        } catch (IllegalCloneException e) {
-            log.error("Unable to prepare repository, may be malformed or not exist. URL = '{}'", clone);
-            return ResponseEntity.badRequest().body("Invalid repository clone URL");
+        if (git == null) {
+            return streamError("You must call the /previs endpoint before you can begin the visualisation");
         }
 
-        Settings settings = null;
+        List<Structure> structures;
+        try {
+            structures = loadStructures(clone, settingsURL);
+        } catch (IllegalURLException | IOException e) {
+            log.error("Unable to load the settings data in the provided context. SettingsURL: {}", settingsURL);
+            return streamError("Invalid settings URL");
+        }
 
-        if (settingsURL != null) {
+        // the branch is validated before streaming begins so errors can still be reported
+        CommitIndex index;
+        try {
+            index = gitService.getBranchIndex(git, branch);
+        } catch (RepositoryTraverseException e) {
+            log.error("Unable to traverse repository with clone URL = {}", clone);
+            return streamError("That repository cannot be visualised");
+        } catch (IllegalBranchException e) {
+            log.error("Repository does not include the specified branch = {}", branch);
+            return streamError("That branch does not exist on that repository");
+        }
+
+        String eTag = createETag(clone, index, structures, start, count, Boolean.TRUE.equals(compact), MediaType.APPLICATION_NDJSON);
+        if (matchesETag(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).header(HttpHeaders.CACHE_CONTROL, createCacheControl(index, tip, version, structures)).build();
+        }
+
+        // the compact path and author tables are built up over the whole response
+        ObjectWriter writer;
+        Function<Commit, Object> encoder;
+        if (Boolean.TRUE.equals(compact)) {
+            writer = jsonService.getWriter(CompactCommit.class);
+            encoder = new CompactCommitEncoder()::encode;
+        } else {
+            writer = jsonService.getWriter(Commit.class);
+            encoder = commit -> commit;
+        }
+        StreamingResponseBody body = out -> {
             try {
-                settings = settingsService.manageSettings(settingsURL);
-            } catch (IllegalURLException e) {
-                log.error("Unable to get settings data. URL = '{}'", settingsURL);
-                e.printStackTrace();
-                return ResponseEntity.badRequest().body("Invalid settings URL");
+                Map<Integer, Commit> cached = commitPageCacheService.getCachedPage(clone, settingsURL, index, start, count);
+                if (cached != null) {
+                    for (Commit commit : new TreeMap<>(cached).values()) {
+                        writeLine(out, writer, encoder.apply(commit));
+                    }
+                } else {
+                    Map<Integer, Commit> page = new HashMap<>();
+                    gitService.streamCommitData(git, index, structures, start, count, commit -> {
+                        page.put(commit.getCommitId(), commit);
+                        try {
+                            writeLine(out, writer, encoder.apply(commit));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    commitPageCacheService.addPage(clone, settingsURL, index, start, count, page);
+                }
+            } catch (RepositoryTraverseException e) {
+                // the status has already been sent, so the response is aborted to stop the page appearing complete
+                log.error("Unable to traverse repository with clone URL = {}", clone);
+                throw new IOException("Unable to traverse repository", e);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
             }
+
+            commitPageCacheService.prefetch(clone, settingsURL, git, index, structures, start, count, prefetchPages);
+        };
+
+        return ResponseEntity.ok().eTag(eTag).header(HttpHeaders.CACHE_CONTROL, createCacheControl(index, tip, version, structures)).contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Used to get the full changes of a single commit. The changes of large
+     * commits are summarised within pages of commits, so can be requested
+     * separately when they are needed
+     *
+     * @param clone    The repository clone URL
+     * @param commitId The ID of the commit within the branch
+     * @return The response to the request
+     */
+    @GetMapping("/commitchanges")
+    public ResponseEntity<?> commitChanges(@RequestParam(name = "repo") String clone, @RequestParam(name = "branch") String branch, @RequestParam(name = "settings", required = false) String settingsURL, @RequestParam(name = "commitId") int commitId) {
+
+        log.info("Received request for API: /commitchanges/{} with branch {}, commitId = {}", clone, branch, commitId);
+
+        Git git;
+        try {
+            git = gitCloneService.getExistingRepositoryOrNull(clone);
+        } catch (IllegalURLException e) {
+            log.error("Unable to clone repository, clone may be malformed or not exist. URL = '{}'", clone);
+            return ResponseEntity.badRequest().body("Invalid repository clone URL");
+        }
+
+        if (git == null) {
+            return ResponseEntity.badRequest().body("You must call the /previs endpoint before you can begin the visualisation");
+        }
+
+        List<Structure> structures;
+        try {
+            structures = loadStructures(clone, settingsURL);
+        } catch (IllegalURLException | IOException e) {
+            log.error("Unable to load the settings data in the provided context. SettingsURL: {}", settingsURL);
+            return ResponseEntity.badRequest().body("Invalid settings URL");
         }
 
-        RepositoryMetadata metadata = null;
+        List<FileChange> changes;
         try {
-            metadata = gitService.getRepositoryMetadata(clone, branch, git, settings);
+            CommitIndex index = gitService.getBranchIndex(git, branch);
+            changes = gitService.getFullCommitChanges(git, index, structures, commitId);
         } catch (RepositoryTraverseException e) {
             log.error("Unable to traverse repository with clone URL = {}", clone);
             return ResponseEntity.badRequest().body("That repository cannot be visualised");
@@ -145,17 +317,172 @@ public class APIController {
             return ResponseEntity.badRequest().body("That branch does not exist on that repository");
         }
 
+        if (changes == null) {
+            return ResponseEntity.badRequest().body("That commit does not exist on that branch");
+        }
+        return ResponseEntity.ok(changes);
+    }
+
+    /**
+     * Creates an ETag for a page of commits. The page is identified by the branch
+     * tip, the structures and the change options it was computed with, so the
+     * ETag changes whenever the content of the page could change. The ETag is weak, as Tomcat does not
+     * compress responses with strong ETags. Each format of a page has its own ETag
+     */
+    private String createETag(String clone, CommitIndex index, List<Structure> structures, int startCommit, int commitCount, boolean compact, MediaType mediaType) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String page = String.join("\n", clone, index.getBranch(), ObjectId.toString(index.getTip()), String.valueOf(startCommit), String.valueOf(commitCount), String.valueOf(compact), mediaType.toString(), String.valueOf(gitService.getChangeOptions()));
+            digest.update(page.getBytes(StandardCharsets.UTF_8));
+            digest.update(jsonService.getMapper().writeValueAsBytes(structures));
+            return "W/\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Unable to create ETag", e);
+        }
+    }
+
+    /**
+     * Chooses the format of a page as the message converters would, JSON unless
+     * the client prefers CBOR. The format is chosen before the page is written so
+     * it can be part of the ETag
+     */
+    private MediaType negotiatePageType(String accept) {
+        if (accept == null) {
+            return MediaType.APPLICATION_JSON;
+        }
+
+        List<MediaType> types;
+        try {
+            types = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        types.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed()
+                .thenComparing(MediaType::isWildcardType)
+                .thenComparing(MediaType::isWildcardSubtype));
+
+        for (MediaType type : types) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            if (type.includes(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            if (type.includes(MediaType.APPLICATION_CBOR)) {
+                return MediaType.APPLICATION_CBOR;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Checks an If-None-Match header against an ETag using weak comparison, so
+     * weak prefixes added or removed by compressing proxies are ignored
+     */
+    private boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = stripWeakPrefix(eTag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = stripWeakPrefix(candidate.trim());
+            if (candidate.equals("*") || candidate.equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeakPrefix(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    /**
+     * A page can be cached indefinitely when the request names the current branch
+     * tip and page version, as the URL then identifies a single version of the
+     * page. The page version covers the settings and change options, which are
+     * not otherwise part of the URL. Otherwise caches must revalidate with the ETag
+     */
+    private String createCacheControl(CommitIndex index, String tip, String version, List<Structure> structures) {
+        if (tip != null && version != null && ObjectId.isId(tip) && ObjectId.fromString(tip).equals(index.getTip()) && version.equals(gitService.getPageVersion(structures))) {
+            // CacheControl does not support the immutable directive in this version of Spring
+            return CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+        }
+        return CacheControl.noCache().cachePublic().getHeaderValue();
+    }
+
+    private void writeLine(OutputStream out, ObjectWriter writer, Object value) throws IOException {
+        out.write(writer.writeValueAsBytes(value));
+        out.write('\n');
+        out.flush();
+    }
+
+    /**
+     * Creates an error response for the stream endpoint. The body must be streamed
+     * for Spring to handle the response as a stream, see
+     * {@link #streamCommitData}
+     */
+    private ResponseEntity<StreamingResponseBody> streamError(String message) {
+        return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Loads the structures configured by the settings stored for the repository
+     *
+     * @param clone       The repository clone URL
+     * @param settingsURL The settings URL, or null if no settings are in use
+     * @return The configured structures
+     */
+    private List<Structure> loadStructures(String clone, String settingsURL) throws IllegalURLException, IOException {
         if (settingsURL != null) {
-            try {
-                settingsService.saveSettings(clone, settingsURL, settings);
-            } catch (IllegalURLException | IOException e) {
-                log.error("Unable to store settings data. Settings URL = {}", settingsURL);
-                e.printStackTrace();
-                return ResponseEntity.badRequest().body("Unable to handle settings data");
+            Settings settings = settingsService.loadSettings(clone, settingsURL);
+
+            if (settings != null && settings.structures != null) {
+                return settings.structures;
             }
         }
+        return new ArrayList<>();
+    }
 
-        return ResponseEntity.ok(metadata);
+    /**
+     * Used to prepare a repository for visualisation, cloning or updating it and
+     * returning its metadata, as JSON or as CBOR if the client only accepts
+     * application/cbor
+     *
+     * @param clone The repository clone URL
+     * @param async If true, the repository is prepared in the background and the
+     *              started job is returned, see {@link #previsStatus(String)}
+     * @return The response to the request
+     */
+    @GetMapping("/previs")
+    public ResponseEntity<?> prepareVisualisation(@RequestParam(name = "repo") String clone, @RequestParam(name = "branch") String branch, @RequestParam(name = "settings", required = false) String settingsURL, @RequestParam(name = "async", required = false) Boolean async) {
+        log.info("Received request for API: /previs/{} with branch {} and settings {}", clone, branch, settingsURL);
+
+        if (Boolean.TRUE.equals(async)) {
+            return ResponseEntity.accepted().body(previsJobService.startJob(clone, branch, settingsURL));
+        }
+
+        PrevisJob job = previsJobService.runJobAndWait(clone, branch, settingsURL);
+        if (job.getStatus() != JobStatus.COMPLETE) {
+            return ResponseEntity.badRequest().body(job.getError());
+        }
+        return ResponseEntity.ok(job.getMetadata());
+    }
+
+    /**
+     * Used to poll the progress of a job started by {@link #prepareVisualisation},
+     * once complete the job includes the repository metadata
+     *
+     * @param jobId The ID of the job
+     * @return The response to the request
+     */
+    @GetMapping("/previs/status")
+    public ResponseEntity<?> previsStatus(@RequestParam(name = "job") String jobId) {
+        PrevisJob job = previsJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.badRequest().body("That job does not exist");
+        }
+        return ResponseEntity.ok(job);
     }
 
 }
@@ -0,0 +1,62 @@
+package com.github.mcnair.repohistoryvisualiser.api;
+
+import com.github.mcnair.repohistoryvisualiser.repository.ProfilingSummary;
+import com.github.mcnair.repohistoryvisualiser.services.ProfilingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * The actuator endpoint used to profile the commit diffs of a running server,
+ * see {@link ProfilingService}:
+ * <ul>
+ *     <li>{@code POST /actuator/profiling/start} with {@code {"seconds": 60}} starts a recording</li>
+ *     <li>{@code POST /actuator/profiling/stop} with {@code {"top": 10}} stops the recording and summarises it</li>
+ *     <li>{@code GET /actuator/profiling?top=10} summarises the current or last recording</li>
+ * </ul>
+ * The bodies of the write operations must be sent as {@code application/json}.
+ * Like the other actuator endpoints, it is only served on the management port,
+ * which is bound to localhost by default
+ */
+@Component
+@Endpoint(id = "profiling")
+public class ProfilingEndpoint {
+
+    private static final int DEFAULT_TOP = 10;
+
+    private final ProfilingService profilingService;
+
+    @Autowired
+    public ProfilingEndpoint(ProfilingService profilingService) {
+        this.profilingService = profilingService;
+    }
+
+    @ReadOperation
+    public ProfilingSummary summary(@Nullable Integer top) throws IOException {
+        return profilingService.getSummary((top == null) ? DEFAULT_TOP : top);
+    }
+
+    @WriteOperation
+    public ProfilingSummary control(@Selector String action, @Nullable Integer seconds, @Nullable Integer top) throws IOException {
+        switch (action) {
+            case "start":
+                try {
+                    return profilingService.start(seconds);
+                } catch (IllegalStateException e) {
+                    throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+                }
+            case "stop":
+                return profilingService.stop((top == null) ? DEFAULT_TOP : top);
+            default:
+                throw new InvalidEndpointRequestException("Unknown action " + action, "The action must be start or stop");
+        }
+    }
+
+}
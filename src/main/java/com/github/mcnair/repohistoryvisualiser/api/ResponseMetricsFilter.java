@@ -0,0 +1,152 @@
+package com.github.mcnair.repohistoryvisualiser.api;
+
+import com.github.mcnair.repohistoryvisualiser.services.GitCloneService;
+import com.github.mcnair.repohistoryvisualiser.services.MetricsService;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the size of the responses of the API, see
+ * {@link MetricsService#recordResponseBytes(String, String, long)}. The size is
+ * counted as the response is written, so streamed responses are recorded once
+ * the stream has completed.
+ * <p>
+ * Responses are tagged with the path pattern of the endpoint rather than the
+ * requested path, and with the repository only if it has been cloned, so
+ * arbitrary requests cannot create new meters
+ */
+@Component
+public class ResponseMetricsFilter extends OncePerRequestFilter {
+
+    /**
+     * The endpoint tag of requests which did not match an endpoint
+     */
+    private static final String UNMATCHED_ENDPOINT = "unmatched";
+
+    private final MetricsService metricsService;
+
+    private final GitCloneService gitCloneService;
+
+    @Autowired
+    public ResponseMetricsFilter(MetricsService metricsService, GitCloneService gitCloneService) {
+        this.metricsService = metricsService;
+        this.gitCloneService = gitCloneService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        CountingResponse countingResponse = new CountingResponse(response);
+        try {
+            filterChain.doFilter(request, countingResponse);
+        } finally {
+            String repository = getRepositoryTag(request.getParameter("repo"));
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String endpoint = (pattern == null) ? UNMATCHED_ENDPOINT : pattern.toString();
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        metricsService.recordResponseBytes(repository, endpoint, countingResponse.bytes.get());
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                metricsService.recordResponseBytes(repository, endpoint, countingResponse.bytes.get());
+            }
+        }
+    }
+
+    private String getRepositoryTag(String clone) {
+        if (clone == null || !gitCloneService.isCloned(clone)) {
+            return MetricsService.UNKNOWN_REPOSITORY;
+        }
+        return metricsService.getRepositoryTag(clone);
+    }
+
+    /**
+     * A response which counts the bytes written to its output stream
+     */
+    private static class CountingResponse extends HttpServletResponseWrapper {
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        private ServletOutputStream outputStream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public synchronized ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        bytes.incrementAndGet();
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        bytes.addAndGet(len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        delegate.setWriteListener(writeListener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+    }
+
+}
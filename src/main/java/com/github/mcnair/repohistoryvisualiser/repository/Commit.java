@@ -18,4 +18,12 @@ public class Commit {
 
 	private final int commitId;
 
+	/**
+	 * If the changes of the commit have been summarised into folders as the
+	 * commit is too large to display, the full changes can be requested
+	 * separately
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private Boolean summarised;
+
 }
@@ -0,0 +1,29 @@
+package com.github.mcnair.repohistoryvisualiser.repository;
+
+import lombok.Data;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.File;
+
+/**
+ * Handle to the on-disk ordinal index of a branch, mapping each commit ordinal
+ * (0 being the oldest commit) to its commit ID
+ */
+@Data
+public class CommitIndex {
+
+    private final File file;
+
+    private final String branch;
+
+    /**
+     * The branch tip the index was last brought up to date with
+     */
+    private final ObjectId tip;
+
+    /**
+     * The number of commits within the index
+     */
+    private final int size;
+
+}
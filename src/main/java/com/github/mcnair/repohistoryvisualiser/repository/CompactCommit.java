@@ -0,0 +1,124 @@
+package com.github.mcnair.repohistoryvisualiser.repository;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange.FileChangeType;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A commit encoded against the path and author tables of a response. Paths and
+ * authors are referred to by their position within the tables, and each commit
+ * carries the entries it adds to the tables, so the tables are built up while
+ * the response is read
+ */
+@Data
+public class CompactCommit {
+
+    private final int timestamp;
+
+    private final List<CompactFileChange> changes;
+
+    /**
+     * The ID of the author within the author table
+     */
+    private final int author;
+
+    private final String commitHash;
+
+    private final int commitId;
+
+    /**
+     * The path segments added to the path table by this commit
+     */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private final List<PathSegment> paths;
+
+    /**
+     * The authors added to the author table by this commit
+     */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private final List<String> authors;
+
+    /**
+     * If the changes of the commit have been summarised, see
+     * {@link Commit#getSummarised()}
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean summarised;
+
+    /**
+     * A file change, written as {@code [type, path]} or
+     * {@code [type, path, collapsed]}. Renames are written as
+     * {@code [type, path, oldPath]} and the summaries of large commits as
+     * {@code [type, path, collapsed, count]}
+     */
+    @Data
+    public static class CompactFileChange {
+
+        private final FileChangeType type;
+
+        /**
+         * The ID of the file within the path table
+         */
+        private final int path;
+
+        private final Boolean collapsed;
+
+        /**
+         * The ID of the path of the file before it was renamed, only set for
+         * renames
+         */
+        private final Integer oldPath;
+
+        /**
+         * The number of changes summarised by this change, only set for the
+         * summaries of large commits
+         */
+        private final Integer count;
+
+        public CompactFileChange(FileChangeType type, int path, Boolean collapsed) {
+            this(type, path, collapsed, null, null);
+        }
+
+        public CompactFileChange(FileChangeType type, int path, Boolean collapsed, Integer oldPath, Integer count) {
+            this.type = type;
+            this.path = path;
+            this.collapsed = collapsed;
+            this.oldPath = oldPath;
+            this.count = count;
+        }
+
+        @JsonValue
+        public Object[] toArray() {
+            if (oldPath != null) {
+                return new Object[]{type, path, oldPath};
+            }
+            if (count != null) {
+                return new Object[]{type, path, collapsed, count};
+            }
+            return (collapsed == null) ? new Object[]{type, path} : new Object[]{type, path, collapsed};
+        }
+
+    }
+
+    /**
+     * An entry of the path table, written as {@code [parent, name]}. The path of
+     * the entry is the path of the parent entry followed by the name, or just the
+     * name if the parent is -1
+     */
+    @Data
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"parent", "name"})
+    public static class PathSegment {
+
+        private final int parent;
+
+        private final String name;
+
+    }
+
+}
@@ -11,14 +11,42 @@ public class FileChange {
 		this.file = file;
 	}
 
+	/**
+	 * Used to create a rename of a file
+	 *
+	 * @param oldFile The path of the file before the rename
+	 * @param file    The path of the file after the rename
+	 */
+	public FileChange(String oldFile, String file) {
+		this(FileChangeType.R, file);
+		this.oldFile = oldFile;
+	}
+
 	public enum FileChangeType {
-		A, M, D, EXPANDED;
+		/**
+		 * The ordinals are stored within the diff cache, so types must only be
+		 * added to the end
+		 */
+		A, M, D, EXPANDED, R;
 	}
 	
 	private FileChangeType type;
 	private String file;
 
+	/**
+	 * The path of the file before it was renamed, only set for renames
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String oldFile;
+
 	@JsonInclude(JsonInclude.Include.NON_NULL)
 	private Boolean collapsed;
+
+	/**
+	 * The number of changes summarised by this change, only set for the summaries
+	 * of large commits
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private Integer count;
 	
 }
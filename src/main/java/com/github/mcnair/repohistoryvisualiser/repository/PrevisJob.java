@@ -0,0 +1,72 @@
+package com.github.mcnair.repohistoryvisualiser.repository;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The state of a background job preparing a repository for visualisation,
+ * cloning or updating the repository before its metadata is computed
+ */
+@Data
+public class PrevisJob {
+
+    public enum JobStatus {
+        RUNNING, COMPLETE, FAILED
+    }
+
+    private final String id;
+
+    private final String url;
+
+    private final String branch;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final String settingsURL;
+
+    private volatile JobStatus status = JobStatus.RUNNING;
+
+    /**
+     * The name of the git task currently being performed
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private volatile String task;
+
+    /**
+     * The work completed on the current task
+     */
+    private volatile int completed;
+
+    /**
+     * The total work of the current task, 0 if unknown
+     */
+    private volatile int total;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private volatile String error;
+
+    /**
+     * The metadata of the repository, set once the job is complete
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private volatile RepositoryMetadata metadata;
+
+    /**
+     * The time the job finished, in milliseconds since the epoch
+     */
+    @JsonIgnore
+    private volatile long finishedAt;
+
+    /**
+     * Completed with the job once it has finished, whether or not it succeeded
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final CompletableFuture<PrevisJob> completion = new CompletableFuture<>();
+
+}
@@ -0,0 +1,75 @@
+package com.github.mcnair.repohistoryvisualiser.repository;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A summary of the commits which took longest to diff during a profiling
+ * recording
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProfilingSummary {
+
+    public enum State {
+        /**
+         * No recording has been started
+         */
+        NONE,
+        RUNNING,
+        STOPPED
+    }
+
+    private final State state;
+
+    /**
+     * The time the recording was started
+     */
+    private final Instant startTime;
+
+    /**
+     * The maximum length of the recording in seconds, it is stopped once this
+     * has passed
+     */
+    private final Long maxSeconds;
+
+    /**
+     * The heaviest commits of each repository, heaviest first
+     */
+    private final Map<String, List<CommitCost>> repositories;
+
+    /**
+     * The cost of a single commit, combining all the events recorded for it
+     */
+    @Data
+    public static class CommitCost {
+
+        private final String commitHash;
+
+        /**
+         * The total time spent walking the trees of the commit
+         */
+        private final double durationMillis;
+
+        /**
+         * The number of times the trees of the commit were walked
+         */
+        private final int events;
+
+        /**
+         * The total number of changes found
+         */
+        private final long changes;
+
+        /**
+         * The total number of tree entries visited
+         */
+        private final long entriesVisited;
+
+    }
+
+}
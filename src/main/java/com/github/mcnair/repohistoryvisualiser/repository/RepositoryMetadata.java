@@ -12,6 +12,21 @@ public class RepositoryMetadata {
 
     public final int totalCommits;
 
+    /**
+     * The commit hash of the branch tip, which can be passed when requesting
+     * commits so the responses can be cached indefinitely
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public final String tip;
+
+    /**
+     * The version of the settings and change options the commits are computed
+     * with, which must be passed along with the tip for the responses to be
+     * cached indefinitely
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public final String version;
+
     @JsonInclude(JsonInclude.Include.NON_NULL)
     public final Settings settings;
 
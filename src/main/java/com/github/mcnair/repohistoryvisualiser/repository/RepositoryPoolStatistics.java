@@ -0,0 +1,31 @@
+package com.github.mcnair.repohistoryvisualiser.repository;
+
+import lombok.Data;
+
+/**
+ * Usage statistics of the pool of open repositories
+ */
+@Data
+public class RepositoryPoolStatistics {
+
+    /**
+     * The number of repositories currently open within the pool
+     */
+    private final int open;
+
+    /**
+     * The number of requests for a repository which was already open
+     */
+    private final long hits;
+
+    /**
+     * The number of requests for a repository which had to be opened
+     */
+    private final long misses;
+
+    /**
+     * The number of repositories closed as they were idle or least recently used
+     */
+    private final long evictions;
+
+}
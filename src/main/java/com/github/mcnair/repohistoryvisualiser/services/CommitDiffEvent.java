@@ -0,0 +1,57 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for the work done reading the trees of a single
+ * commit, so slow pages can be traced back to the commits which caused them.
+ * The events are only recorded while a recording is running, see
+ * {@link ProfilingService}
+ */
+@Name(CommitDiffEvent.NAME)
+@Label("Commit Diff")
+@Category({"Repo History Visualiser", "Git"})
+@Description("The tree entries walked to compute the changes of a commit")
+@StackTrace(false)
+public class CommitDiffEvent extends Event {
+
+    public static final String NAME = "com.github.mcnair.repohistoryvisualiser.CommitDiff";
+
+    /**
+     * The changes of a commit were computed from the trees of the commit and its
+     * first parent
+     */
+    public static final String PARENT = "parent";
+
+    /**
+     * The changes of a commit without a parent were computed from its tree
+     */
+    public static final String ROOT = "root";
+
+    /**
+     * The files within a structure were listed as the structure was expanded
+     */
+    public static final String STRUCTURE = "structure";
+
+    @Label("Repository")
+    String repository;
+
+    @Label("Commit Hash")
+    String commitHash;
+
+    @Label("Operation")
+    @Description("How the trees were walked, parent, root or structure")
+    String operation;
+
+    @Label("Changes")
+    int changes;
+
+    @Label("Tree Entries Visited")
+    long entriesVisited;
+
+}
@@ -0,0 +1,327 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
+import com.github.mcnair.repohistoryvisualiser.repository.CommitIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.MutableObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service to manage the persistent commit ordinal index of each cloned branch.
+ * The index is stored within the clone folder and maps each commit ordinal to
+ * its commit ID, so a page of commits can be located without walking the
+ * history of the branch.
+ * <p>
+ * File format: magic, version, branch tip the index is up to date with, commit
+ * count, followed by the raw commit IDs in ordinal order (oldest first)
+ */
+@Service
+@Slf4j
+public class CommitIndexService {
+
+    /**
+     * The folder within the clone folder that the indexes are stored in
+     */
+    public static final String INDEX_FOLDER = "commitIndex";
+
+    private static final int MAGIC = 0x52485649;
+
+    private static final int VERSION = 1;
+
+    private static final int ENTRY_SIZE = Constants.OBJECT_ID_LENGTH;
+
+    private static final int TIP_OFFSET = 8;
+
+    private static final int HEADER_SIZE = TIP_OFFSET + ENTRY_SIZE + 4;
+
+    private static final int SCAN_BUFFER_SIZE = ENTRY_SIZE * 4096;
+
+    private static final int NOT_FOUND = -1;
+
+    private final ConcurrentHashMap<File, Object> locks = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<File, ResolvedOrdinals> resolvedOrdinals = new ConcurrentHashMap<>();
+
+    /**
+     * The commits which have been looked up within an index while it had the specified tip
+     */
+    private record ResolvedOrdinals(ObjectId tip, Map<ObjectId, Integer> ordinals) {
+    }
+
+    /**
+     * Used to get the index of a branch, building the index if it does not exist
+     * or extending it with any new commits if the branch tip has moved
+     *
+     * @param repo   The repository the branch is within
+     * @param branch The branch name
+     * @param tip    The current tip of the branch
+     * @return The up-to-date index of the branch
+     * @throws RepositoryTraverseException Thrown if the repository cannot be traversed or the index cannot be written
+     */
+    public CommitIndex getUpToDateIndex(Repository repo, String branch, ObjectId tip) throws RepositoryTraverseException {
+        File file = getIndexFile(repo, branch);
+
+        synchronized (getLock(file)) {
+            try {
+                CommitIndex index = readIndex(file, branch);
+                if (index != null && index.getTip().equals(tip)) {
+                    return index;
+                }
+
+                if (index != null) {
+                    CommitIndex extended = extendIndex(repo, index, tip);
+                    if (extended != null) {
+                        return extended;
+                    }
+                    log.info("Branch {} no longer contains the indexed commits, rebuilding index {}", branch, file.getPath());
+                }
+
+                return buildIndex(repo, file, branch, tip);
+            } catch (IOException e) {
+                throw new RepositoryTraverseException(e);
+            }
+        }
+    }
+
+    /**
+     * Used to read the commit IDs of a range of ordinals from an index, only
+     * reading the section of the index which contains the range
+     *
+     * @param index The index to read from
+     * @param start The first ordinal to read
+     * @param count The maximum number of ordinals to read
+     * @return The commit IDs in ordinal order, truncated at the end of the index
+     * @throws RepositoryTraverseException Thrown if the index cannot be read
+     */
+    public List<ObjectId> readCommitIds(CommitIndex index, int start, int count) throws RepositoryTraverseException {
+        int first = Math.max(start, 0);
+        int end = (int) Math.min(index.getSize(), (long) start + count);
+        if (first >= end) {
+            return new ArrayList<>();
+        }
+
+        byte[] buffer = new byte[(end - first) * ENTRY_SIZE];
+        synchronized (getLock(index.getFile())) {
+            try (var file = new RandomAccessFile(index.getFile(), "r")) {
+                file.seek(HEADER_SIZE + (long) first * ENTRY_SIZE);
+                file.readFully(buffer);
+            } catch (IOException e) {
+                throw new RepositoryTraverseException(e);
+            }
+        }
+
+        List<ObjectId> ids = new ArrayList<>(end - first);
+        for (int offset = 0; offset < buffer.length; offset += ENTRY_SIZE) {
+            ids.add(ObjectId.fromRaw(buffer, offset));
+        }
+        return ids;
+    }
+
+    /**
+     * Used to find the ordinals of a set of commits within an index. Results are
+     * cached against the tip of the index, so repeated lookups of the same commits
+     * on an unchanged branch do not read the index again
+     *
+     * @param index   The index to search
+     * @param commits The commits to find
+     * @return The ordinal of each commit which is part of the branch, commits which are not part of the branch are omitted
+     * @throws RepositoryTraverseException Thrown if the index cannot be read
+     */
+    public Map<ObjectId, Integer> findOrdinals(CommitIndex index, Collection<? extends ObjectId> commits) throws RepositoryTraverseException {
+        File file = index.getFile().getAbsoluteFile();
+
+        synchronized (getLock(file)) {
+            ResolvedOrdinals resolved = resolvedOrdinals.get(file);
+            if (resolved == null || !resolved.tip().equals(index.getTip())) {
+                resolved = new ResolvedOrdinals(index.getTip(), new HashMap<>());
+                resolvedOrdinals.put(file, resolved);
+            }
+
+            Set<ObjectId> remaining = new HashSet<>();
+            for (ObjectId commit : commits) {
+                if (!resolved.ordinals().containsKey(commit)) {
+                    remaining.add(commit.copy());
+                }
+            }
+
+            if (!remaining.isEmpty()) {
+                scanIndex(index, remaining, resolved.ordinals());
+            }
+
+            Map<ObjectId, Integer> ordinals = new HashMap<>();
+            for (ObjectId commit : commits) {
+                int ordinal = resolved.ordinals().get(commit);
+                if (ordinal != NOT_FOUND) {
+                    ordinals.put(commit, ordinal);
+                }
+            }
+            return ordinals;
+        }
+    }
+
+    /**
+     * Reads through the index to find the ordinals of the remaining commits,
+     * recording commits which are not within the index as not found
+     */
+    private void scanIndex(CommitIndex index, Set<ObjectId> remaining, Map<ObjectId, Integer> ordinals) throws RepositoryTraverseException {
+        try (var in = new BufferedInputStream(new FileInputStream(index.getFile()), SCAN_BUFFER_SIZE)) {
+            in.skipNBytes(HEADER_SIZE);
+
+            byte[] entry = new byte[ENTRY_SIZE];
+            var id = new MutableObjectId();
+            for (int ordinal = 0; ordinal < index.getSize() && !remaining.isEmpty(); ordinal++) {
+                in.readNBytes(entry, 0, ENTRY_SIZE);
+                id.fromRaw(entry);
+                if (remaining.remove(id)) {
+                    ordinals.put(id.toObjectId(), ordinal);
+                }
+            }
+        } catch (IOException e) {
+            throw new RepositoryTraverseException(e);
+        }
+
+        remaining.forEach(commit -> ordinals.put(commit, NOT_FOUND));
+    }
+
+    /**
+     * Gets the file the index of the specified branch is stored in
+     *
+     * @param repo   The repository the branch is within
+     * @param branch The branch name
+     * @return The index file
+     */
+    public File getIndexFile(Repository repo, String branch) {
+        String fileName = URLEncoder.encode(branch, StandardCharsets.UTF_8) + ".idx";
+        return new File(new File(repo.getWorkTree(), INDEX_FOLDER), fileName);
+    }
+
+    private Object getLock(File file) {
+        return locks.computeIfAbsent(file.getAbsoluteFile(), f -> new Object());
+    }
+
+    /**
+     * Reads the header of an index, returning null if the index does not exist or
+     * is not valid, so it can be rebuilt
+     */
+    private CommitIndex readIndex(File file, String branch) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), HEADER_SIZE))) {
+            if (file.length() < HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Commit index {} is not valid and will be rebuilt", file.getPath());
+                return null;
+            }
+
+            byte[] tip = new byte[ENTRY_SIZE];
+            in.readFully(tip);
+            int size = in.readInt();
+
+            if (size < 0 || file.length() < HEADER_SIZE + (long) size * ENTRY_SIZE) {
+                log.warn("Commit index {} is truncated and will be rebuilt", file.getPath());
+                return null;
+            }
+
+            return new CommitIndex(file, branch, ObjectId.fromRaw(tip), size);
+        }
+    }
+
+    /**
+     * Appends the commits between the indexed tip and the new tip to the index
+     *
+     * @return The extended index, or null if the indexed tip is no longer part of the branch
+     */
+    private CommitIndex extendIndex(Repository repo, CommitIndex index, ObjectId tip) throws IOException {
+        List<ObjectId> added = new ArrayList<>();
+
+        try (RevWalk walk = new RevWalk(repo)) {
+            walk.setRetainBody(false);
+            RevCommit newTip = walk.parseCommit(tip);
+            RevCommit oldTip;
+            try {
+                oldTip = walk.parseCommit(index.getTip());
+            } catch (MissingObjectException e) {
+                return null;
+            }
+
+            if (!walk.isMergedInto(oldTip, newTip)) {
+                return null;
+            }
+
+            walk.reset();
+            walk.markStart(newTip);
+            walk.markUninteresting(oldTip);
+            for (RevCommit commit : walk) {
+                added.add(commit.copy());
+            }
+        }
+        Collections.reverse(added);
+
+        try (var file = new RandomAccessFile(index.getFile(), "rw")) {
+            // the new entries are written before the header so an interrupted write leaves the index valid
+            file.seek(HEADER_SIZE + (long) index.getSize() * ENTRY_SIZE);
+            file.write(toRaw(added));
+
+            file.seek(TIP_OFFSET);
+            file.write(toRaw(List.of(tip)));
+            file.writeInt(index.getSize() + added.size());
+        }
+
+        log.info("Extended commit index {} with {} commits", index.getFile().getPath(), added.size());
+        return new CommitIndex(index.getFile(), index.getBranch(), tip.copy(), index.getSize() + added.size());
+    }
+
+    /**
+     * Builds the index of a branch from scratch, replacing any existing index
+     */
+    private CommitIndex buildIndex(Repository repo, File file, String branch, ObjectId tip) throws IOException {
+        List<ObjectId> commits = new ArrayList<>();
+
+        try (RevWalk walk = new RevWalk(repo)) {
+            walk.setRetainBody(false);
+            walk.markStart(walk.parseCommit(tip));
+            for (RevCommit commit : walk) {
+                commits.add(commit.copy());
+            }
+        }
+        Collections.reverse(commits);
+
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.write(toRaw(List.of(tip)));
+            out.writeInt(commits.size());
+            out.write(toRaw(commits));
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        log.info("Built commit index {} containing {} commits", file.getPath(), commits.size());
+        return new CommitIndex(file, branch, tip.copy(), commits.size());
+    }
+
+    private byte[] toRaw(List<? extends ObjectId> ids) {
+        byte[] raw = new byte[ids.size() * ENTRY_SIZE];
+        for (int i = 0; i < ids.size(); i++) {
+            ids.get(i).copyRawTo(raw, i * ENTRY_SIZE);
+        }
+        return raw;
+    }
+
+}
@@ -0,0 +1,230 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
+import com.github.mcnair.repohistoryvisualiser.repository.Commit;
+import com.github.mcnair.repohistoryvisualiser.repository.CommitIndex;
+import com.github.mcnair.repohistoryvisualiser.repository.Structure;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service to hold recently computed pages of commits in memory, and to compute
+ * the pages a client is about to request in the background so they are ready
+ * when requested
+ */
+@Service
+@Slf4j
+public class CommitPageCacheService {
+
+    private GitService gitService;
+
+    private final int maxPages;
+
+    private final int maxPrefetchPages;
+
+    private final ExecutorService prefetchExecutor;
+
+    /**
+     * The cached pages, in least recently used order. Pages which are still being
+     * computed are included so a request for a page being prefetched waits for it
+     */
+    private final LinkedHashMap<PageKey, CompletableFuture<Map<Integer, Commit>>> pages;
+
+    /**
+     * Identifies a page of commits, the branch tip is included so pages are never
+     * served for a branch which has since moved
+     */
+    private record PageKey(String cloneURL, String branch, ObjectId tip, String settingsURL, int startCommit, int commitCount) {
+
+        PageKey(String clone, String settingsURL, CommitIndex index, int startCommit, int commitCount) {
+            this(clone, index.getBranch(), index.getTip(), settingsURL, startCommit, commitCount);
+        }
+
+        /**
+         * @return The key of the page after this page
+         */
+        PageKey next() {
+            return new PageKey(cloneURL, branch, tip, settingsURL, startCommit + commitCount, commitCount);
+        }
+
+    }
+
+    @Autowired
+    public CommitPageCacheService(GitService gitService, AppProperties properties) {
+        this.gitService = gitService;
+        this.maxPages = properties.getPageCacheSize();
+        this.maxPrefetchPages = properties.getMaxPrefetchPages();
+
+        pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PageKey, CompletableFuture<Map<Integer, Commit>>> eldest) {
+                return size() > maxPages;
+            }
+        };
+
+        AtomicInteger threadCount = new AtomicInteger();
+        prefetchExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getPrefetchThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "page-prefetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    /**
+     * Used to get a page of commits, computing it if it is not cached
+     *
+     * @param clone       The repository clone URL
+     * @param settingsURL The settings URL, or null if no settings are in use
+     * @param git         The repository
+     * @param index       The index of the branch
+     * @param structures  The structures configured by the settings
+     * @param startCommit The ID of the first commit of the page
+     * @param commitCount The maximum number of commits within the page
+     * @return The commits within the page, keyed by commit ID
+     * @throws RepositoryTraverseException Thrown if the repository cannot be traversed
+     */
+    public Map<Integer, Commit> getCommitPage(String clone, String settingsURL, Git git, CommitIndex index, List<Structure> structures, int startCommit, int commitCount) throws RepositoryTraverseException {
+        var key = new PageKey(clone, settingsURL, index, startCommit, commitCount);
+        CompletableFuture<Map<Integer, Commit>> page;
+        synchronized (pages) {
+            page = pages.get(key);
+            if (page == null) {
+                page = new CompletableFuture<>();
+                pages.put(key, page);
+            } else {
+                return awaitPage(page);
+            }
+        }
+
+        computePage(key, page, git, index, structures);
+        return awaitPage(page);
+    }
+
+    /**
+     * Used to get a page of commits only if it has been cached or is being computed
+     *
+     * @param clone       The repository clone URL
+     * @param settingsURL The settings URL, or null if no settings are in use
+     * @param index       The index of the branch
+     * @param startCommit The ID of the first commit of the page
+     * @param commitCount The maximum number of commits within the page
+     * @return The commits within the page, or null if the page is not cached
+     * @throws RepositoryTraverseException Thrown if the repository cannot be traversed
+     */
+    public Map<Integer, Commit> getCachedPage(String clone, String settingsURL, CommitIndex index, int startCommit, int commitCount) throws RepositoryTraverseException {
+        CompletableFuture<Map<Integer, Commit>> page;
+        synchronized (pages) {
+            page = pages.get(new PageKey(clone, settingsURL, index, startCommit, commitCount));
+        }
+        return (page == null) ? null : awaitPage(page);
+    }
+
+    /**
+     * Used to add a page which has been computed elsewhere to the cache
+     *
+     * @param clone       The repository clone URL
+     * @param settingsURL The settings URL, or null if no settings are in use
+     * @param index       The index of the branch
+     * @param startCommit The ID of the first commit of the page
+     * @param commitCount The maximum number of commits within the page
+     * @param page        The commits within the page
+     */
+    public void addPage(String clone, String settingsURL, CommitIndex index, int startCommit, int commitCount, Map<Integer, Commit> page) {
+        synchronized (pages) {
+            pages.putIfAbsent(new PageKey(clone, settingsURL, index, startCommit, commitCount), CompletableFuture.completedFuture(page));
+        }
+    }
+
+    /**
+     * Used to compute the pages after a page in the background
+     *
+     * @param clone       The repository clone URL
+     * @param settingsURL The settings URL, or null if no settings are in use
+     * @param git         The repository
+     * @param index       The index of the branch
+     * @param structures  The structures configured by the settings
+     * @param startCommit The ID of the first commit of the page that has just been served
+     * @param commitCount The number of commits within each page
+     * @param pageCount   The number of pages to compute ahead, limited by the configured maximum
+     */
+    public void prefetch(String clone, String settingsURL, Git git, CommitIndex index, List<Structure> structures, int startCommit, int commitCount, int pageCount) {
+        PageKey next = new PageKey(clone, settingsURL, index, startCommit, commitCount);
+        for (int i = 0; i < Math.min(pageCount, maxPrefetchPages); i++) {
+            next = next.next();
+            if (next.startCommit() >= index.getSize() || next.commitCount() <= 0) {
+                return;
+            }
+
+            CompletableFuture<Map<Integer, Commit>> page;
+            synchronized (pages) {
+                if (pages.containsKey(next)) {
+                    continue;
+                }
+                page = new CompletableFuture<>();
+                pages.put(next, page);
+            }
+
+            PageKey prefetchKey = next;
+            prefetchExecutor.execute(() -> computePage(prefetchKey, page, git, index, structures));
+        }
+    }
+
+    /**
+     * Used to remove all cached pages of a repository, for example after its
+     * settings have changed
+     *
+     * @param clone The repository clone URL
+     */
+    public void invalidate(String clone) {
+        synchronized (pages) {
+            pages.keySet().removeIf(key -> key.cloneURL().equals(clone));
+        }
+    }
+
+    private void computePage(PageKey key, CompletableFuture<Map<Integer, Commit>> page, Git git, CommitIndex index, List<Structure> structures) {
+        try {
+            page.complete(gitService.loadCommitData(git, index, structures, key.startCommit(), key.commitCount()));
+        } catch (RepositoryTraverseException | RuntimeException e) {
+            // failed pages are not cached so they can be retried
+            synchronized (pages) {
+                pages.remove(key, page);
+            }
+            page.completeExceptionally(e);
+        }
+    }
+
+    private Map<Integer, Commit> awaitPage(CompletableFuture<Map<Integer, Commit>> page) throws RepositoryTraverseException {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryTraverseException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RepositoryTraverseException traverseException) {
+                throw traverseException;
+            }
+            throw new RepositoryTraverseException(e.getCause());
+        }
+    }
+
+}
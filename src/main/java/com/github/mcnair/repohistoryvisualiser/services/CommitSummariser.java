@@ -0,0 +1,149 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange.FileChangeType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces the changes of commits with more changes than the threshold with a
+ * single collapsed change for each folder, in the same way as collapsed
+ * structures. The deepest folders are used which keep the number of changes
+ * within the threshold, and each summary records the number of changes it
+ * replaces.
+ * <p>
+ * A summary has the type of the changes it replaces if they all have the same
+ * type, otherwise it is a modification
+ */
+public class CommitSummariser {
+
+    /**
+     * The name of the summary within its folder, as with the label of a
+     * structure
+     */
+    public static final String SUMMARY_LABEL = "summary";
+
+    private final int threshold;
+
+    /**
+     * @param threshold The maximum number of changes a commit can have before it
+     *                  is summarised, 0 to never summarise commits
+     */
+    public CommitSummariser(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return The maximum number of changes a commit can have before it is
+     *         summarised, 0 if commits are never summarised
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @param changes The changes of a commit
+     * @return If the changes are over the threshold, so would be summarised
+     */
+    public boolean shouldSummarise(List<FileChange> changes) {
+        return threshold > 0 && changes.size() > threshold;
+    }
+
+    /**
+     * Used to summarise the changes of a commit
+     *
+     * @param changes The changes of the commit
+     * @return The summarised changes, or the changes unchanged if they are within
+     *         the threshold
+     */
+    public List<FileChange> summarise(List<FileChange> changes) {
+        if (!shouldSummarise(changes)) {
+            return changes;
+        }
+
+        int depth = getSummaryDepth(changes);
+
+        Map<String, FileChange> summaries = new LinkedHashMap<>();
+        for (FileChange change : changes) {
+            // the old paths of renames are not shown within a summary
+            FileChangeType type = (change.getType() == FileChangeType.R) ? FileChangeType.M : change.getType();
+            String folder = getFolder(change.getFile(), depth);
+
+            FileChange summary = summaries.get(folder);
+            if (summary == null) {
+                summary = new FileChange(type, folder.isEmpty() ? SUMMARY_LABEL : folder + "/" + SUMMARY_LABEL);
+                summary.setCollapsed(true);
+                summary.setCount(0);
+                summaries.put(folder, summary);
+            } else if (summary.getType() != type) {
+                summary.setType(FileChangeType.M);
+            }
+            summary.setCount(summary.getCount() + ((change.getCount() == null) ? 1 : change.getCount()));
+        }
+        return new ArrayList<>(summaries.values());
+    }
+
+    /**
+     * Gets the deepest folder depth which summarises the changes within the
+     * threshold. At a depth of 0 every change is within a single summary
+     */
+    private int getSummaryDepth(List<FileChange> changes) {
+        int maxDepth = 0;
+        for (FileChange change : changes) {
+            maxDepth = Math.max(maxDepth, getFolderDepth(change.getFile()));
+        }
+
+        int depth = 0;
+        for (int candidate = 1; candidate <= maxDepth; candidate++) {
+            if (!isWithinThreshold(changes, candidate)) {
+                break;
+            }
+            depth = candidate;
+        }
+        return depth;
+    }
+
+    private boolean isWithinThreshold(List<FileChange> changes, int depth) {
+        Set<String> folders = new HashSet<>();
+        for (FileChange change : changes) {
+            if (folders.add(getFolder(change.getFile(), depth)) && folders.size() > threshold) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getFolderDepth(String path) {
+        int depth = 0;
+        for (int i = path.indexOf('/'); i != -1; i = path.indexOf('/', i + 1)) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Gets the folder containing a path, limited to the given number of
+     * segments
+     *
+     * @param path  The path
+     * @param depth The maximum number of segments of the folder
+     * @return The folder, or an empty string for the root folder
+     */
+    private static String getFolder(String path, int depth) {
+        int end = -1;
+        for (int i = 0; i < depth; i++) {
+            int next = path.indexOf('/', end + 1);
+            if (next == -1) {
+                break;
+            }
+            end = next;
+        }
+        return (end == -1) ? "" : path.substring(0, end);
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.repository.Commit;
+import com.github.mcnair.repohistoryvisualiser.repository.CompactCommit;
+import com.github.mcnair.repohistoryvisualiser.repository.CompactCommit.CompactFileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.CompactCommit.PathSegment;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the commits of a single response into the compact format, see
+ * {@link CompactCommit}. The path and author tables are held by the encoder,
+ * so commits must be decoded in the order they were encoded
+ */
+public class CompactCommitEncoder {
+
+    private final Map<String, Integer> pathIds = new HashMap<>();
+
+    private final Map<String, Integer> authorIds = new HashMap<>();
+
+    /**
+     * Used to encode the next commit of the response
+     *
+     * @param commit The commit
+     * @return The encoded commit
+     */
+    public CompactCommit encode(Commit commit) {
+        List<PathSegment> paths = new ArrayList<>();
+        List<String> authors = new ArrayList<>();
+
+        List<CompactFileChange> changes = new ArrayList<>(commit.getChanges().size());
+        for (FileChange change : commit.getChanges()) {
+            Integer oldPath = (change.getOldFile() == null) ? null : getPathId(change.getOldFile(), paths);
+            changes.add(new CompactFileChange(change.getType(), getPathId(change.getFile(), paths), change.getCollapsed(), oldPath, change.getCount()));
+        }
+
+        Integer author = authorIds.get(commit.getAuthor());
+        if (author == null) {
+            author = authorIds.size();
+            authorIds.put(commit.getAuthor(), author);
+            authors.add(commit.getAuthor());
+        }
+
+        CompactCommit compact = new CompactCommit(commit.getTimestamp(), changes, author, commit.getCommitHash(), commit.getCommitId(), paths, authors);
+        compact.setSummarised(commit.getSummarised());
+        return compact;
+    }
+
+    /**
+     * Used to get the ID of a path, adding it and any of its parents to the path
+     * table if they have not been encoded before
+     *
+     * @param path  The path
+     * @param added The list to add any new path table entries to
+     * @return The ID of the path
+     */
+    private int getPathId(String path, List<PathSegment> added) {
+        Integer id = pathIds.get(path);
+        if (id != null) {
+            return id;
+        }
+
+        int separator = path.lastIndexOf('/');
+        int parent = (separator == -1) ? -1 : getPathId(path.substring(0, separator), added);
+
+        id = pathIds.size();
+        pathIds.put(path, id);
+        added.add(new PathSegment(parent, path.substring(separator + 1)));
+        return id;
+    }
+
+}
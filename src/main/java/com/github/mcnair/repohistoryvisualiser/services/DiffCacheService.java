@@ -0,0 +1,464 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange.FileChangeType;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdOwnerMap;
+import org.eclipse.jgit.lib.Repository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Service to manage the persistent cache of the file changes of each commit.
+ * As the changes of a commit never change, they are stored in an append-only
+ * store within the clone folder so they only need to be computed once.
+ * <p>
+ * Each store is made up of a path dictionary and a change file. Path records
+ * are the length and UTF-8 bytes of a path, change records are the commit ID,
+ * the change count, the rename count, the type code and path ID of each change
+ * and then the path ID of the old path of each rename. Every record ends with a
+ * CRC32 checksum, and any records which fail the check (along with any records
+ * after them) are discarded when the store is opened, so they are computed
+ * again.
+ * <p>
+ * The header of each file holds the rename options the changes were computed
+ * with, so the store is rebuilt if the options change
+ */
+@Service
+@Slf4j
+public class DiffCacheService {
+
+    /**
+     * The folder within the clone folder that the cache is stored in
+     */
+    public static final String CACHE_FOLDER = "diffCache";
+
+    private static final String PATHS_FILE = "paths.dat";
+
+    private static final String CHANGES_FILE = "changes.dat";
+
+    private static final int MAGIC = 0x52485644;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 12;
+
+    private static final int PREFIX_SIZE = Constants.OBJECT_ID_LENGTH + 8;
+
+    private static final int CHANGE_SIZE = 5;
+
+    private static final int RENAME_SIZE = 4;
+
+    private final ConcurrentHashMap<File, DiffStore> stores = new ConcurrentHashMap<>();
+
+    /**
+     * The rename limit changes are computed with, or -1 if renames are not
+     * detected
+     */
+    private final int renameOptions;
+
+    @Autowired
+    public DiffCacheService(AppProperties properties) {
+        this.renameOptions = properties.isRenameDetection() ? Math.max(0, properties.getRenameLimit()) : -1;
+    }
+
+    /**
+     * Used to get the cached changes of a commit
+     *
+     * @param repo   The repository the commit is within
+     * @param commit The commit
+     * @return The changes of the commit, or null if they have not been cached
+     */
+    public List<FileChange> getChanges(Repository repo, AnyObjectId commit) {
+        File folder = getCacheFolder(repo);
+        DiffStore store = null;
+        try {
+            store = getStore(folder);
+            return store.read(commit);
+        } catch (IOException e) {
+            log.warn("Unable to read diff cache {}, discarding store", folder.getPath(), e);
+            closeStore(folder, store);
+            return null;
+        }
+    }
+
+    /**
+     * Used to add the changes of a commit to the cache
+     *
+     * @param repo    The repository the commit is within
+     * @param commit  The commit
+     * @param changes The changes of the commit
+     */
+    public void storeChanges(Repository repo, AnyObjectId commit, List<FileChange> changes) {
+        File folder = getCacheFolder(repo);
+        DiffStore store = null;
+        try {
+            store = getStore(folder);
+            store.write(commit, changes);
+        } catch (IOException e) {
+            log.warn("Unable to write to diff cache {}, discarding store", folder.getPath(), e);
+            closeStore(folder, store);
+        }
+    }
+
+    /**
+     * Used to delete the cache of a repository, so it is rebuilt as commits are
+     * requested
+     *
+     * @param repo The repository
+     * @throws IOException Thrown if the cache cannot be deleted
+     */
+    public void rebuild(Repository repo) throws IOException {
+        File folder = getCacheFolder(repo);
+        synchronized (stores) {
+            DiffStore store = stores.remove(folder);
+            if (store != null) {
+                store.close();
+            }
+            for (String name : List.of(PATHS_FILE, CHANGES_FILE)) {
+                File file = new File(folder, name);
+                if (file.exists() && !file.delete()) {
+                    throw new IOException("Unable to delete " + file.getPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the folder the cache of a repository is stored in
+     *
+     * @param repo The repository
+     * @return The cache folder
+     */
+    public File getCacheFolder(Repository repo) {
+        return new File(repo.getWorkTree(), CACHE_FOLDER).getAbsoluteFile();
+    }
+
+    private DiffStore getStore(File folder) throws IOException {
+        DiffStore store = stores.get(folder);
+        if (store != null) {
+            return store;
+        }
+
+        synchronized (stores) {
+            store = stores.get(folder);
+            if (store == null) {
+                store = new DiffStore(folder, renameOptions);
+                stores.put(folder, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Used to discard a store which has failed. The store is only removed if it
+     * is still the store of the folder, as the cache may have been rebuilt with a
+     * new store which other readers are using
+     *
+     * @param folder The cache folder
+     * @param store  The store which failed, or null if it could not be opened
+     */
+    private void closeStore(File folder, DiffStore store) {
+        if (store != null && stores.remove(folder, store)) {
+            store.close();
+        }
+    }
+
+    private static class DiffEntry extends ObjectIdOwnerMap.Entry {
+
+        private final int offset;
+
+        DiffEntry(AnyObjectId id, int offset) {
+            super(id);
+            this.offset = offset;
+        }
+
+    }
+
+    /**
+     * The store of a single repository
+     */
+    private static class DiffStore {
+
+        private final FileChannel pathsChannel;
+
+        private final FileChannel changesChannel;
+
+        private final List<String> paths = new ArrayList<>();
+
+        private final Map<String, Integer> pathIds = new HashMap<>();
+
+        private final ObjectIdOwnerMap<DiffEntry> entries = new ObjectIdOwnerMap<>();
+
+        private long pathsSize;
+
+        private long changesSize;
+
+        private MappedByteBuffer mapped;
+
+        DiffStore(File folder, int renameOptions) throws IOException {
+            folder.mkdirs();
+            pathsChannel = FileChannel.open(new File(folder, PATHS_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            changesChannel = FileChannel.open(new File(folder, CHANGES_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            try {
+                if (!hasValidHeader(pathsChannel, renameOptions) || !hasValidHeader(changesChannel, renameOptions)) {
+                    if (pathsChannel.size() != 0 || changesChannel.size() != 0) {
+                        log.warn("Diff cache {} is not valid and will be rebuilt", folder.getPath());
+                    }
+                    writeHeader(pathsChannel, renameOptions);
+                    writeHeader(changesChannel, renameOptions);
+                }
+
+                pathsSize = loadPaths();
+                pathsChannel.truncate(pathsSize);
+                changesSize = loadChanges();
+                changesChannel.truncate(changesSize);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        synchronized List<FileChange> read(AnyObjectId commit) throws IOException {
+            DiffEntry entry = entries.get(commit);
+            if (entry == null) {
+                return null;
+            }
+
+            if (mapped == null || mapped.capacity() < changesSize) {
+                mapped = changesChannel.map(FileChannel.MapMode.READ_ONLY, 0, changesSize);
+            }
+
+            int count = mapped.getInt(entry.offset + Constants.OBJECT_ID_LENGTH);
+            int position = entry.offset + PREFIX_SIZE;
+            int renamePosition = position + count * CHANGE_SIZE;
+
+            FileChangeType[] types = FileChangeType.values();
+            List<FileChange> changes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++, position += CHANGE_SIZE) {
+                FileChangeType type = types[mapped.get(position)];
+                String file = paths.get(mapped.getInt(position + 1));
+                if (type == FileChangeType.R) {
+                    changes.add(new FileChange(paths.get(mapped.getInt(renamePosition)), file));
+                    renamePosition += RENAME_SIZE;
+                } else {
+                    changes.add(new FileChange(type, file));
+                }
+            }
+            return changes;
+        }
+
+        synchronized void write(AnyObjectId commit, List<FileChange> changes) throws IOException {
+            if (entries.contains(commit)) {
+                return;
+            }
+
+            int renames = (int) changes.stream().filter(change -> change.getType() == FileChangeType.R).count();
+            long recordSize = PREFIX_SIZE + (long) changes.size() * CHANGE_SIZE + (long) renames * RENAME_SIZE + 4;
+            if (changesSize + recordSize > Integer.MAX_VALUE) {
+                // the store is mapped as a single buffer so cannot grow beyond this size
+                return;
+            }
+
+            // the paths are written first so a change record never references a path which has not been stored
+            var newPaths = new ByteArrayOutputStream();
+            var pathsOut = new DataOutputStream(newPaths);
+            var record = ByteBuffer.allocate((int) recordSize);
+            commit.copyRawTo(record);
+            record.putInt(changes.size());
+            record.putInt(renames);
+
+            for (FileChange change : changes) {
+                record.put((byte) change.getType().ordinal());
+                record.putInt(getPathId(change.getFile(), pathsOut));
+            }
+            for (FileChange change : changes) {
+                if (change.getType() == FileChangeType.R) {
+                    record.putInt(getPathId(change.getOldFile(), pathsOut));
+                }
+            }
+            record.putInt(checksum(record.array(), 0, (int) recordSize - 4));
+
+            if (newPaths.size() > 0) {
+                pathsSize += writeFully(pathsChannel, ByteBuffer.wrap(newPaths.toByteArray()), pathsSize);
+            }
+
+            changesSize += writeFully(changesChannel, record.flip(), changesSize);
+            entries.add(new DiffEntry(commit, (int) (changesSize - recordSize)));
+        }
+
+        /**
+         * Gets the ID of a path, adding the path to the dictionary if it has not
+         * been stored before
+         *
+         * @param path     The path
+         * @param pathsOut The stream new path records are written to
+         * @return The ID of the path
+         */
+        private int getPathId(String path, DataOutputStream pathsOut) throws IOException {
+            Integer pathId = pathIds.get(path);
+            if (pathId == null) {
+                pathId = paths.size();
+                paths.add(path);
+                pathIds.put(path, pathId);
+
+                byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+                pathsOut.writeInt(bytes.length);
+                pathsOut.write(bytes);
+                pathsOut.writeInt(checksum(bytes, 0, bytes.length));
+            }
+            return pathId;
+        }
+
+        synchronized void close() {
+            try {
+                pathsChannel.close();
+                changesChannel.close();
+            } catch (IOException e) {
+                log.warn("Unable to close diff cache", e);
+            }
+            mapped = null;
+        }
+
+        /**
+         * Reads the path dictionary into memory
+         *
+         * @return The size of the valid section of the file
+         */
+        private long loadPaths() throws IOException {
+            long size = pathsChannel.size();
+            long valid = HEADER_SIZE;
+
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(pathsChannel.position(HEADER_SIZE))));
+            while (valid + 8 <= size) {
+                int length = in.readInt();
+                if (length < 0 || valid + 8 + length > size) {
+                    break;
+                }
+
+                byte[] bytes = in.readNBytes(length);
+                if (in.readInt() != checksum(bytes, 0, length)) {
+                    break;
+                }
+
+                String path = new String(bytes, StandardCharsets.UTF_8);
+                pathIds.put(path, paths.size());
+                paths.add(path);
+                valid += 8 + length;
+            }
+            return valid;
+        }
+
+        /**
+         * Reads the location of each change record into memory, validating each record
+         *
+         * @return The size of the valid section of the file
+         */
+        private long loadChanges() throws IOException {
+            long size = Math.min(changesChannel.size(), Integer.MAX_VALUE);
+            long valid = HEADER_SIZE;
+            int typeCount = FileChangeType.values().length;
+
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(changesChannel.position(HEADER_SIZE))));
+            byte[] prefix = new byte[PREFIX_SIZE];
+            records:
+            while (valid + prefix.length + 4 <= size) {
+                in.readFully(prefix);
+                int count = ByteBuffer.wrap(prefix).getInt(Constants.OBJECT_ID_LENGTH);
+                int renames = ByteBuffer.wrap(prefix).getInt(Constants.OBJECT_ID_LENGTH + 4);
+                long longRecordSize = prefix.length + (long) count * CHANGE_SIZE + (long) renames * RENAME_SIZE + 4;
+                if (count < 0 || renames < 0 || renames > count || valid + longRecordSize > size) {
+                    break;
+                }
+                int recordSize = (int) longRecordSize;
+
+                var record = ByteBuffer.allocate(recordSize);
+                record.put(prefix);
+                in.readFully(record.array(), prefix.length, recordSize - prefix.length);
+                if (record.getInt(recordSize - 4) != checksum(record.array(), 0, recordSize - 4)) {
+                    break;
+                }
+
+                int renamesFound = 0;
+                for (int i = 0; i < count; i++) {
+                    int position = prefix.length + i * CHANGE_SIZE;
+                    int type = record.get(position);
+                    if (type < 0 || type >= typeCount || !isValidPathId(record.getInt(position + 1))) {
+                        break records;
+                    }
+                    if (type == FileChangeType.R.ordinal()) {
+                        renamesFound++;
+                    }
+                }
+                if (renamesFound != renames) {
+                    break;
+                }
+                for (int i = 0; i < renames; i++) {
+                    if (!isValidPathId(record.getInt(prefix.length + count * CHANGE_SIZE + i * RENAME_SIZE))) {
+                        break records;
+                    }
+                }
+
+                ObjectId commit = ObjectId.fromRaw(prefix);
+                if (!entries.contains(commit)) {
+                    entries.add(new DiffEntry(commit, (int) valid));
+                }
+                valid += recordSize;
+            }
+            return valid;
+        }
+
+        private boolean isValidPathId(int pathId) {
+            return pathId >= 0 && pathId < paths.size();
+        }
+
+        private static boolean hasValidHeader(FileChannel channel, int renameOptions) throws IOException {
+            if (channel.size() < HEADER_SIZE) {
+                return false;
+            }
+            var header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == renameOptions;
+        }
+
+        private static void writeHeader(FileChannel channel, int renameOptions) throws IOException {
+            channel.truncate(0);
+            writeFully(channel, ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(renameOptions).flip(), 0);
+        }
+
+        private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            int written = 0;
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, position + written);
+            }
+            return written;
+        }
+
+        private static int checksum(byte[] bytes, int offset, int length) {
+            var crc = new CRC32();
+            crc.update(bytes, offset, length);
+            return (int) crc.getValue();
+        }
+
+    }
+
+}
@@ -6,12 +6,21 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.text.MessageFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.validation.constraints.NotNull;
 
 import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
+import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.util.FS;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -25,16 +34,53 @@ import com.github.mcnair.repohistoryvisualiser.exception.IllegalCloneException;
  *
  */
 @Service
+@Slf4j
 public class GitCloneService {
 
 	private GitService gitService;
 
 	private AppProperties properties;
 
+	private RepositoryMaintenanceService repositoryMaintenanceService;
+
+	private MetricsService metricsService;
+
+	/**
+	 * The clones and updates currently running, keyed by clone folder
+	 */
+	private final ConcurrentHashMap<File, RunningUpdate> updates = new ConcurrentHashMap<>();
+
+	/**
+	 * The time each branch of each clone folder was last fetched
+	 */
+	private final ConcurrentHashMap<String, Long> lastFetches = new ConcurrentHashMap<>();
+
+	private final long fetchInterval;
+
+	private record RunningUpdate(String branch, CompletableFuture<Git> result) {
+	}
+
 	@Autowired
-	public GitCloneService(GitService gitService, AppProperties properties) {
+	public GitCloneService(GitService gitService, RepositoryMaintenanceService repositoryMaintenanceService, MetricsService metricsService, AppProperties properties) {
 		this.gitService = gitService;
+		this.repositoryMaintenanceService = repositoryMaintenanceService;
+		this.metricsService = metricsService;
 		this.properties = properties;
+		this.fetchInterval = TimeUnit.SECONDS.toMillis(properties.getFetchIntervalSeconds());
+	}
+
+	/**
+	 * Used to check if a repository has already been cloned, without opening it
+	 *
+	 * @param url The clone url
+	 * @return If the clone folder of the url contains a repository
+	 */
+	public boolean isCloned(String url) {
+		try {
+			return RepositoryCache.FileKey.resolve(getCloneFolder(url), FS.DETECTED) != null;
+		} catch (IllegalURLException e) {
+			return false;
+		}
 	}
 
 	/**
@@ -55,26 +101,109 @@ public class GitCloneService {
 	}
 
 	/**
-	 * Used to get an existing cloned repository, or to clone it if it does not
-	 * exist
+	 * Used to get an existing cloned repository with the branch fetched, or to
+	 * clone it if it does not exist
 	 * 
-	 * @param url the clone URL
+	 * @param url    the clone URL
+	 * @param branch The branch to fetch
 	 * @return The repository
 	 * @throws IllegalCloneException if the repository cannot be cloned
 	 */
-	public Git getUpToDateRepositoryOrClone(String url) throws IllegalCloneException {
+	public Git getUpToDateRepositoryOrClone(String url, String branch) throws IllegalCloneException {
+		return getUpToDateRepositoryOrClone(url, branch, NullProgressMonitor.INSTANCE);
+	}
+
+	/**
+	 * Used to get an existing cloned repository with the branch fetched, or to
+	 * clone it if it does not exist, reporting the progress of the clone or fetch
+	 * 
+	 * @param url     the clone URL
+	 * @param branch  The branch to fetch
+	 * @param monitor The monitor to report progress to
+	 * @return The repository
+	 * @throws IllegalCloneException if the repository cannot be cloned
+	 */
+	public Git getUpToDateRepositoryOrClone(String url, String branch, ProgressMonitor monitor) throws IllegalCloneException {
+		File folder;
+		try {
+			folder = getCloneFolder(url);
+		} catch (IllegalURLException e) {
+			throw new IllegalCloneException(url, e);
+		}
+
+		// only one clone or update of a folder runs at once, any other callers wait
+		// for it and share its result
+		var update = new RunningUpdate(branch, new CompletableFuture<>());
+		RunningUpdate running;
+		while ((running = updates.putIfAbsent(folder, update)) != null) {
+			Git git = awaitUpdate(url, running.result());
+			if (running.branch().equals(branch)) {
+				return git;
+			}
+		}
+
+		try {
+			Git git = updateOrCloneRepository(url, folder, branch, monitor);
+			update.result().complete(git);
+			return git;
+		} catch (IllegalCloneException | RuntimeException e) {
+			update.result().completeExceptionally(e);
+			throw e;
+		} finally {
+			updates.remove(folder, update);
+		}
+	}
+
+	private Git updateOrCloneRepository(String url, File folder, String branch, ProgressMonitor monitor) throws IllegalCloneException {
 		Git git;
 		try {
 			git = getExistingRepositoryOrNull(url);
 		} catch (IllegalURLException e) {
 			throw new IllegalCloneException(url, e);
 		}
-		if (git != null) {
-			gitService.pullRepository(git);
-			return git;
+
+		String fetchKey = folder.getPath() + ":" + branch;
+		if (git == null) {
+			System.out.println("cloning repo");
+			long start = System.nanoTime();
+			git = cloneRepository(url, monitor);
+			metricsService.recordClone(metricsService.getRepositoryTag(url), System.nanoTime() - start);
+			// the clone has fetched every branch, but only the default branch exists locally
+			lastFetches.put(fetchKey, System.currentTimeMillis());
+			repositoryMaintenanceService.scheduleMaintenance(git);
+		}
+
+		Long lastFetch = lastFetches.get(fetchKey);
+		boolean fetchDue = lastFetch == null || System.currentTimeMillis() - lastFetch >= fetchInterval;
+		if (fetchDue || !gitService.hasLocalBranch(git, branch)) {
+			try {
+				long start = System.nanoTime();
+				boolean fetched = gitService.fetchBranch(git, branch, monitor);
+				metricsService.recordFetch(metricsService.getRepositoryTag(url), System.nanoTime() - start);
+				if (fetched) {
+					repositoryMaintenanceService.scheduleMaintenance(git);
+				}
+				lastFetches.put(fetchKey, System.currentTimeMillis());
+			} catch (GitAPIException e) {
+				// the existing clone can still be visualised
+				log.warn("Unable to fetch branch {} of {}", branch, url, e);
+			}
+		}
+		return git;
+	}
+
+	private Git awaitUpdate(String url, CompletableFuture<Git> update) throws IllegalCloneException {
+		try {
+			return update.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalCloneException(url, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IllegalCloneException cloneException) {
+				throw new IllegalCloneException(url, cloneException);
+			}
+			throw new IllegalCloneException(url, e.getCause());
 		}
-		System.out.println("cloning repo");
-		return cloneRepository(url);
 	}
 
 	/**
@@ -117,10 +246,22 @@ public class GitCloneService {
 	 * @throws IllegalCloneException Thrown if the repository cannot be cloned
 	 */
 	public Git cloneRepository(String url) throws IllegalCloneException {
+		return cloneRepository(url, NullProgressMonitor.INSTANCE);
+	}
+
+	/**
+	 * Clone a repository to the file system, reporting the progress of the clone
+	 * 
+	 * @param url     The URL of the repository to clone
+	 * @param monitor The monitor to report progress to
+	 * @return The cloned repository
+	 * @throws IllegalCloneException Thrown if the repository cannot be cloned
+	 */
+	public Git cloneRepository(String url, ProgressMonitor monitor) throws IllegalCloneException {
 
 		try {
 			var folder = getCloneFolder(url);
-			return gitService.cloneRepositoryToDirectory(url, folder, true);
+			return gitService.cloneRepositoryToDirectory(url, folder, true, monitor);
 		} catch (GitAPIException | IllegalURLException e) {
 			throw new IllegalCloneException(url, e);
 		}
@@ -1,32 +1,144 @@
 package com.github.mcnair.repohistoryvisualiser.services;
 
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
 import com.github.mcnair.repohistoryvisualiser.exception.IllegalBranchException;
 import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
 import com.github.mcnair.repohistoryvisualiser.repository.*;
 import com.github.mcnair.repohistoryvisualiser.repository.FileChange.FileChangeType;
-import graphql.com.google.common.collect.Iterables;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.CanceledException;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffConfig;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.EmptyProgressMonitor;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TrackingRefUpdate;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.validation.constraints.NotNull;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 public class GitService {
 
+    private CommitIndexService commitIndexService;
+
+    private DiffCacheService diffCacheService;
+
+    private RepositoryPoolService repositoryPoolService;
+
+    private MetricsService metricsService;
+
+    /**
+     * The bounded pool that the diffs of the commits within a page are computed on
+     */
+    private final ExecutorService diffExecutor;
+
+    private final int diffThreads;
+
+    private final boolean renameDetection;
+
+    private final int renameLimit;
+
+    private final long renameTimeoutNanos;
+
+    private final CommitSummariser summariser;
+
+    @Autowired
+    public GitService(CommitIndexService commitIndexService, DiffCacheService diffCacheService, RepositoryPoolService repositoryPoolService, MetricsService metricsService, AppProperties properties) {
+        this.commitIndexService = commitIndexService;
+        this.diffCacheService = diffCacheService;
+        this.repositoryPoolService = repositoryPoolService;
+        this.metricsService = metricsService;
+
+        diffThreads = properties.getDiffThreads() > 0 ? properties.getDiffThreads() : Runtime.getRuntime().availableProcessors();
+        renameDetection = properties.isRenameDetection();
+        renameLimit = Math.max(0, properties.getRenameLimit());
+        renameTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getRenameTimeoutMillis());
+        summariser = new CommitSummariser(properties.getCommitSummaryThreshold());
+        AtomicInteger threadCount = new AtomicInteger();
+        diffExecutor = Executors.newFixedThreadPool(diffThreads, runnable -> {
+            Thread thread = new Thread(runnable, "diff-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        diffExecutor.shutdownNow();
+    }
+
+    /**
+     * @return The options which affect the changes computed for a commit, so
+     *         pages computed with different options can be told apart
+     */
+    public String getChangeOptions() {
+        return "renames=" + (renameDetection ? renameLimit : -1) + ",summary=" + summariser.getThreshold();
+    }
+
+    /**
+     * Used to get the version of the pages of a repository, which changes
+     * whenever the settings or change options the pages are computed with
+     * change. Unlike the branch tip, these are not part of the page URL
+     *
+     * @param structures The structures configured for the repository, with
+     *                   their commit IDs resolved
+     * @return The version of the pages
+     */
+    public String getPageVersion(List<Structure> structures) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder version = new StringBuilder(getChangeOptions());
+            if (structures != null) {
+                for (Structure structure : structures) {
+                    version.append('\n').append(structure.label).append('\0').append(structure.folder)
+                            .append('\0').append(structure.startCommitHash).append('\0').append(structure.startCommitID)
+                            .append('\0').append(structure.endCommitHash).append('\0').append(structure.endCommitID)
+                            .append('\0').append(structure.collapse);
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest(version.toString().getBytes(StandardCharsets.UTF_8)), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unable to create page version", e);
+        }
+    }
+
     public static FileChangeType getFileChangeType(ChangeType change) {
 
         if (change != null) {
@@ -37,6 +149,8 @@ public class GitService {
                     return FileChangeType.M;
                 case DELETE:
                     return FileChangeType.D;
+                case RENAME:
+                    return FileChangeType.R;
             }
         }
         return FileChangeType.A;
@@ -52,123 +166,440 @@ public class GitService {
      * @throws GitAPIException Thrown if an error occurs during cloning
      */
     public @NotNull Git cloneRepositoryToDirectory(@NotNull String url, @NotNull File directory, @NotNull boolean noCheckout) throws GitAPIException {
+        return cloneRepositoryToDirectory(url, directory, noCheckout, NullProgressMonitor.INSTANCE);
+    }
+
+    /**
+     * Used to clone a repository, reporting the progress of the clone
+     *
+     * @param url        The clone URL
+     * @param directory  The directory to clone into
+     * @param noCheckout If the working tree should not be checked out
+     * @param monitor    The monitor to report progress to
+     * @return The cloned repository
+     * @throws GitAPIException Thrown if the repository cannot be cloned
+     */
+    public @NotNull Git cloneRepositoryToDirectory(@NotNull String url, @NotNull File directory, @NotNull boolean noCheckout, @NotNull ProgressMonitor monitor) throws GitAPIException {
         log.info("Cloning {} to {}", url, directory.getAbsolutePath());
-        return Git.cloneRepository().setURI(url).setNoCheckout(noCheckout).setDirectory(directory).call();
+        Git git = Git.cloneRepository().setURI(url).setNoCheckout(noCheckout).setDirectory(directory).setProgressMonitor(monitor).call();
+        return repositoryPoolService.addRepository(directory, git);
     }
 
+    /**
+     * Used to get a repository which has already been cloned. The repository is
+     * shared with other requests and must not be closed
+     *
+     * @param directory The directory of the repository
+     * @return The repository
+     * @throws IOException Thrown if the directory does not contain a repository
+     */
     public Git getLocalRepository(File directory) throws IOException {
-        return Git.open(directory);
+        return repositoryPoolService.getRepository(directory);
     }
 
     public Map<Integer, Commit> loadCommitData(String cloneURL, Git git, String branch, List<Structure> structures, int startCommit, int commitCount) throws RepositoryTraverseException, IllegalBranchException {
+        return loadCommitData(git, getBranchIndex(git, branch), structures, startCommit, commitCount);
+    }
+
+    /**
+     * Used to compute a page of commits
+     *
+     * @param git         The repository
+     * @param index       The index of the branch, see {@link #getBranchIndex(Git, String)}
+     * @param structures  The structures configured for the repository
+     * @param startCommit The ID of the first commit of the page
+     * @param commitCount The maximum number of commits within the page
+     * @return The commits within the page, keyed by commit ID
+     * @throws RepositoryTraverseException Thrown if the repository cannot be traversed
+     */
+    public Map<Integer, Commit> loadCommitData(Git git, CommitIndex index, List<Structure> structures, int startCommit, int commitCount) throws RepositoryTraverseException {
         HashMap<Integer, Commit> commitData = new HashMap<>();
+        streamCommitData(git, index, structures, startCommit, commitCount, commit -> commitData.put(commit.getCommitId(), commit));
+        return commitData;
+    }
 
-        List<Structure> activeStructures = new ArrayList<>();
+    /**
+     * Used to compute a page of commits, passing each commit to the consumer in
+     * commit order as soon as it has been computed. The changes of commits over
+     * the summary threshold are summarised, see {@link CommitSummariser}
+     *
+     * @param git         The repository
+     * @param index       The index of the branch, see {@link #getBranchIndex(Git, String)}
+     * @param structures  The structures configured for the repository
+     * @param startCommit The ID of the first commit of the page
+     * @param commitCount The maximum number of commits within the page
+     * @param consumer    The consumer of the computed commits
+     * @throws RepositoryTraverseException Thrown if the repository cannot be traversed
+     */
+    public void streamCommitData(Git git, CommitIndex index, List<Structure> structures, int startCommit, int commitCount, Consumer<Commit> consumer) throws RepositoryTraverseException {
+        streamCommitData(git, index, structures, startCommit, commitCount, true, consumer);
+    }
 
-        if (structures != null) {
-            for (Structure structure : structures) {
-                if (structure.isActive(startCommit - 1) && structure.collapse) {
-                    activeStructures.add(structure);
-                }
-            }
+    /**
+     * Used to get the full changes of a single commit, which are never
+     * summarised
+     *
+     * @param git        The repository
+     * @param index      The index of the branch, see {@link #getBranchIndex(Git, String)}
+     * @param structures The structures configured for the repository
+     * @param commitId   The ID of the commit
+     * @return The changes of the commit, or null if the commit is not within the branch
+     * @throws RepositoryTraverseException Thrown if the repository cannot be traversed
+     */
+    public List<FileChange> getFullCommitChanges(Git git, CommitIndex index, List<Structure> structures, int commitId) throws RepositoryTraverseException {
+        if (commitId < 0 || commitId >= index.getSize()) {
+            return null;
         }
 
+        List<FileChange> changes = new ArrayList<>();
+        streamCommitData(git, index, structures, commitId, 1, false, commit -> changes.addAll(commit.getChanges()));
+        return changes;
+    }
+
+    private void streamCommitData(Git git, CommitIndex index, List<Structure> structures, int startCommit, int commitCount, boolean summarise, Consumer<Commit> consumer) throws RepositoryTraverseException {
+        // the structures are compiled once, then only the structures starting or ending at a commit are checked
+        StructureTimeline timeline = new StructureTimeline(structures);
+        Set<Structure> activeStructures = timeline.getActiveStructures(startCommit - 1);
+        StructureCollapser collapser = new StructureCollapser(activeStructures);
 
         // adding commits
         try {
 
-            var branchVar = git.getRepository().resolve(branch);
+            var repo = git.getRepository();
+            String repository = metricsService.getRepositoryTag(repo);
 
-            if (branchVar == null) {
-                throw new IllegalBranchException(branch);
-            }
+            // only the commits within the requested page are read from the index
+            List<ObjectId> commitIds = commitIndexService.readCommitIds(index, startCommit, commitCount);
 
-            List<RevCommit> revCommits = new ArrayList<>();
-            for (RevCommit commit : git.log().add(branchVar).call()) {
-                revCommits.add(commit);
-            }
-            Collections.reverse(revCommits);
-
-            for (int i = startCommit; i < startCommit + commitCount && i < revCommits.size(); i++) {
-                List<FileChange> additionalChanges = new ArrayList<>();
-                if (structures != null) {
-                    for (Structure structure : structures) {
-                        // checking if the structure needs adding
-                        if (!activeStructures.contains(structure) && structure.isActive(i) && structure.collapse) {
-                            activeStructures.add(structure);
-                        } else if (activeStructures.contains(structure) && !structure.isActive(i)) {
-                            additionalChanges.addAll(getFilesWithinStructure(git.getRepository(), revCommits.get(i), structure));
-                            activeStructures.remove(structure);
-                        }
+            try (RevWalk walk = new RevWalk(repo)) {
+                List<RevCommit> revCommits = new ArrayList<>(commitIds.size());
+                for (ObjectId commitId : commitIds) {
+                    RevCommit revCommit = walk.parseCommit(commitId);
+                    if (revCommit.getParentCount() > 0) {
+                        walk.parseHeaders(revCommit.getParent(0));
                     }
+                    revCommits.add(revCommit);
                 }
 
-                Commit commit = createCommit(git.getRepository(), revCommits.get(i), i, activeStructures);
-                commit.getChanges().addAll(additionalChanges);
-                commitData.put(i, commit);
+                // the diffs are computed in parallel, structures are then applied in commit order
+                List<CompletableFuture<List<FileChange>>> pageChanges = computeChanges(repo, repository, revCommits);
+
+                for (int offset = 0; offset < revCommits.size(); offset++) {
+                    int i = startCommit + offset;
+                    RevCommit revCommit = revCommits.get(offset);
+
+                    List<FileChange> additionalChanges = new ArrayList<>();
+                    boolean structuresChanged = false;
+                    for (Structure structure : timeline.getEndingStructures(i)) {
+                        if (activeStructures.remove(structure)) {
+                            additionalChanges.addAll(getFilesWithinStructure(repo, repository, revCommit, structure));
+                            structuresChanged = true;
+                        }
+                    }
+                    for (Structure structure : timeline.getStartingStructures(i)) {
+                        structuresChanged |= activeStructures.add(structure);
+                    }
+                    if (structuresChanged) {
+                        collapser = new StructureCollapser(activeStructures);
+                    }
+
+                    consumer.accept(createCommit(repository, revCommit, i, awaitChanges(pageChanges.get(offset)), additionalChanges, collapser, summarise));
+                }
             }
 
-        } catch (GitAPIException | IOException e) {
+        } catch (IOException e) {
             throw new RepositoryTraverseException(e);
         }
+    }
+
+    private Commit createCommit(String repository, RevCommit revCommit, int commitId, List<FileChange> changes, List<FileChange> additionalChanges, StructureCollapser collapser, boolean summarise) {
+
+        // replacing all collapsed node with the parent of the collapsed node
+        if (!collapser.isEmpty()) {
+            long start = System.nanoTime();
+            changes = collapser.collapse(changes);
+            metricsService.recordStructureCollapse(repository, System.nanoTime() - start);
+        }
+
+        // the files of expanded structures are part of the commit, so count towards the summary threshold
+        if (!additionalChanges.isEmpty()) {
+            changes = new ArrayList<>(changes);
+            changes.addAll(additionalChanges);
+        }
+
+        // commits which are too large to display are replaced by a summary of each folder
+        boolean summarised = summarise && summariser.shouldSummarise(changes);
+        if (summarised) {
+            changes = summariser.summarise(changes);
+        }
+
+        PersonIdent authorIdent = revCommit.getAuthorIdent();
+        Commit commit = new Commit(revCommit.getCommitTime(), changes, authorIdent.getName(), revCommit.getId().getName(), commitId);
+        if (summarised) {
+            commit.setSummarised(true);
+        }
+        return commit;
 
-        return commitData;
     }
 
-    private Commit createCommit(org.eclipse.jgit.lib.Repository repo, RevCommit revCommit, int commitId, List<Structure> structures) throws RepositoryTraverseException {
+    /**
+     * Used to compute the changes made by each commit on the diff worker pool.
+     * Each worker uses a single reader, diff formatter and rename detector for
+     * all the commits it processes
+     *
+     * @param repo       The repository the commits are within
+     * @param repository The repository tag the diff metrics are recorded with
+     * @param revCommits The commits, with the headers of their first parent parsed
+     * @return The changes of each commit, in the same order as the commits
+     */
+    private List<CompletableFuture<List<FileChange>>> computeChanges(org.eclipse.jgit.lib.Repository repo, String repository, List<RevCommit> revCommits) {
+        List<CompletableFuture<List<FileChange>>> changes = new ArrayList<>(revCommits.size());
+        for (int i = 0; i < revCommits.size(); i++) {
+            changes.add(new CompletableFuture<>());
+        }
 
-        List<FileChange> changes;
-        if (revCommit.getParentCount() == 0) {
-            changes = getChangesFromRoot(repo, revCommit);
-        } else {
-            changes = getChangesFromParent(repo, revCommit);
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(diffThreads, revCommits.size());
+        for (int i = 0; i < workers; i++) {
+            diffExecutor.execute(() -> computeChanges(repo, repository, revCommits, changes, next));
         }
 
-        // replacing all collapsed node with the parent of the collapsed node
-        for (FileChange change : new ArrayList<>(changes)) {
-
-            for (Structure structure : structures) {
-                if (change.getFile().startsWith(structure.folder)) {
-                    if (changes.stream().anyMatch(fc -> fc.getFile().equals(structure.folder + "/" + structure.label) && fc.getCollapsed())) {
-                        changes.remove(change);
-                    } else {
-                        change.setFile(structure.folder + "/" + structure.label);
-                        change.setCollapsed(true);
-                    }
+        return changes;
+    }
+
+    private void computeChanges(org.eclipse.jgit.lib.Repository repo, String repository, List<RevCommit> revCommits, List<CompletableFuture<List<FileChange>>> changes, AtomicInteger next) {
+        try (ObjectReader reader = repo.newObjectReader(); DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            df.setReader(reader, repo.getConfig());
+            df.setDiffComparator(RawTextComparator.DEFAULT);
+            CountingTreeFilter visited = new CountingTreeFilter();
+            df.setPathFilter(visited);
+            RenameDetector renames = renameDetection ? createRenameDetector(repo, reader) : null;
+
+            int i;
+            while ((i = next.getAndIncrement()) < revCommits.size()) {
+                try {
+                    changes.get(i).complete(getCommitChanges(repo, repository, reader, df, visited, renames, revCommits.get(i)));
+                } catch (RepositoryTraverseException | RuntimeException e) {
+                    changes.get(i).completeExceptionally(e);
                 }
             }
+        } catch (RuntimeException e) {
+            // ensuring no commit is left waiting if the worker cannot be set up
+            int i;
+            while ((i = next.getAndIncrement()) < revCommits.size()) {
+                changes.get(i).completeExceptionally(e);
+            }
         }
+    }
 
-        PersonIdent authorIdent = revCommit.getAuthorIdent();
-        return new Commit(revCommit.getCommitTime(), changes, authorIdent.getName(), revCommit.getId().getName(), commitId);
+    private List<FileChange> awaitChanges(CompletableFuture<List<FileChange>> changes) throws RepositoryTraverseException {
+        try {
+            return changes.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryTraverseException(e);
+        } catch (ExecutionException e) {
+            throw new RepositoryTraverseException(e.getCause());
+        }
+    }
+
+    /**
+     * Gets the changes made by a commit, using the diff cache where possible as
+     * the changes of a commit never change
+     *
+     * @param repo       The repository the commit is within
+     * @param repository The repository tag the diff metrics are recorded with
+     * @param reader     The reader to read objects with
+     * @param df         The diff formatter to compute the changes with
+     * @param visited    The path filter of the diff formatter, which counts the tree entries it visits
+     * @param renames    The rename detector, or null if renames are not detected
+     * @param revCommit  The commit
+     * @return The changes made by the commit
+     * @throws RepositoryTraverseException Thrown if the changes cannot be computed
+     */
+    private List<FileChange> getCommitChanges(org.eclipse.jgit.lib.Repository repo, String repository, ObjectReader reader, DiffFormatter df, CountingTreeFilter visited, RenameDetector renames, RevCommit revCommit) throws RepositoryTraverseException {
+        long start = System.nanoTime();
+        List<FileChange> changes = diffCacheService.getChanges(repo, revCommit);
+        if (changes != null) {
+            metricsService.recordDiff(repository, true, System.nanoTime() - start, changes.size());
+            return changes;
+        }
+
+        boolean complete = true;
+        if (revCommit.getParentCount() == 0) {
+            changes = getChangesFromRoot(repo, repository, reader, revCommit);
+        } else {
+            CommitChanges parentChanges = getChangesFromParent(df, visited, renames, reader, repository, revCommit);
+            changes = parentChanges.changes();
+            complete = parentChanges.complete();
+        }
 
+        // changes missing the renames of a timed out comparison are computed again next time, rather than kept for good
+        if (complete) {
+            diffCacheService.storeChanges(repo, revCommit, changes);
+        }
+        metricsService.recordDiff(repository, false, System.nanoTime() - start, changes.size());
+        return changes;
+    }
+
+    /**
+     * @param changes  The changes made by a commit
+     * @param complete If the changes are final, false if the renames were only
+     *                 partially compared within the time budget
+     */
+    private record CommitChanges(List<FileChange> changes, boolean complete) {
     }
 
-    private List<FileChange> getChangesFromParent(org.eclipse.jgit.lib.Repository repo, RevCommit commit) throws RepositoryTraverseException {
+    private CommitChanges getChangesFromParent(DiffFormatter df, CountingTreeFilter visited, RenameDetector renames, ObjectReader reader, String repository, RevCommit commit) throws RepositoryTraverseException {
+        CommitDiffEvent event = new CommitDiffEvent();
+        event.begin();
+        visited.reset();
+
         RevCommit parent = commit.getParent(0);
 
-        List<FileChange> changes = new ArrayList<>();
-        List<DiffEntry> diffs;
+        List<FileChange> changes;
+        boolean complete = true;
 
-        try (DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
-            df.setRepository(repo);
-            df.setDiffComparator(RawTextComparator.DEFAULT);
-            diffs = df.scan(parent.getTree(), commit.getTree());
+        try {
+            List<DiffEntry> diffs = df.scan(parent.getTree(), commit.getTree());
+            List<DiffEntry> renamed = (renames != null) ? detectRenames(renames, reader, commit, diffs) : diffs;
+            if (renamed != null) {
+                changes = new ArrayList<>(renamed.size());
+                for (DiffEntry diff : renamed) {
+                    changes.add(getFileChange(diff));
+                }
+            } else {
+                // the rename detector marks the deleted files it has paired, so the changes are scanned again
+                visited.reset();
+                changes = getChangesWithExactRenames(df.scan(parent.getTree(), commit.getTree()));
+                complete = false;
+            }
         } catch (IOException e) {
             throw new RepositoryTraverseException(e);
         }
 
+        commitEvent(event, repository, commit, CommitDiffEvent.PARENT, changes.size(), visited.getVisited());
+        return new CommitChanges(changes, complete);
+    }
+
+    private static FileChange getFileChange(DiffEntry diff) {
+        var changeType = getFileChangeType(diff.getChangeType());
+        if (changeType == FileChangeType.R) {
+            return new FileChange(diff.getOldPath(), diff.getNewPath());
+        }
+        return new FileChange(changeType, (changeType == FileChangeType.D) ? diff.getOldPath() : diff.getNewPath());
+    }
+
+    /**
+     * @param id   The ID of the file contents
+     * @param type The type bits of the file mode, so a file and a symlink are
+     *             never paired
+     */
+    private record FileContents(AbbreviatedObjectId id, int type) {
+
+        FileContents(AbbreviatedObjectId id, FileMode mode) {
+            this(id, mode.getBits() & FileMode.TYPE_MASK);
+        }
+
+        boolean isFile() {
+            return type == FileMode.TYPE_FILE || type == FileMode.TYPE_SYMLINK;
+        }
+
+    }
+
+    /**
+     * Used to convert the changes of a commit, pairing each added file with a
+     * deleted file of the same contents into a rename. Only the object IDs of
+     * the files are compared, so the cost does not depend on the size of the
+     * files
+     *
+     * @param diffs The changes of the commit, without renames
+     * @return The changes of the commit, with the renames of unchanged files
+     */
+    public static List<FileChange> getChangesWithExactRenames(List<DiffEntry> diffs) {
+        Map<FileContents, Deque<DiffEntry>> deleted = new HashMap<>();
         for (DiffEntry diff : diffs) {
-            var changeType = getFileChangeType(diff.getChangeType());
-            changes.add(new FileChange(changeType, (changeType == FileChangeType.D) ? diff.getOldPath() : diff.getNewPath()));
+            FileContents contents = new FileContents(diff.getOldId(), diff.getOldMode());
+            if (diff.getChangeType() == ChangeType.DELETE && contents.isFile()) {
+                deleted.computeIfAbsent(contents, key -> new ArrayDeque<>()).add(diff);
+            }
         }
 
+        // each deleted file is the source of at most one rename
+        Map<DiffEntry, DiffEntry> sources = new IdentityHashMap<>();
+        Set<DiffEntry> renamedSources = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (DiffEntry diff : diffs) {
+            if (diff.getChangeType() != ChangeType.ADD) {
+                continue;
+            }
+            Deque<DiffEntry> candidates = deleted.get(new FileContents(diff.getNewId(), diff.getNewMode()));
+            if (candidates != null && !candidates.isEmpty()) {
+                DiffEntry source = candidates.poll();
+                sources.put(diff, source);
+                renamedSources.add(source);
+            }
+        }
+
+        List<FileChange> changes = new ArrayList<>(diffs.size() - sources.size());
+        for (DiffEntry diff : diffs) {
+            if (renamedSources.contains(diff)) {
+                continue;
+            }
+            DiffEntry source = sources.get(diff);
+            changes.add((source != null) ? new FileChange(source.getOldPath(), diff.getNewPath()) : getFileChange(diff));
+        }
         return changes;
     }
 
-    private List<FileChange> getChangesFromRoot(org.eclipse.jgit.lib.Repository repo, RevCommit commit) throws RepositoryTraverseException {
+    private RenameDetector createRenameDetector(org.eclipse.jgit.lib.Repository repo, ObjectReader reader) {
+        RenameDetector renames = new RenameDetector(reader, repo.getConfig().get(DiffConfig.KEY));
+        renames.setSkipContentRenamesForBinaryFiles(true);
+        return renames;
+    }
+
+    /**
+     * Used to pair the deleted and added files of a commit into renames. Files
+     * which have been renamed without changes are always paired, files which
+     * have also been changed are compared by content until the rename limit or
+     * time budget is reached
+     *
+     * @param renames The rename detector
+     * @param reader  The reader to read the files with
+     * @param commit  The commit the changes are from
+     * @param diffs   The changes of the commit, without renames
+     * @return The changes of the commit, with renames, or null if the time
+     *         budget was reached, see {@link #getChangesWithExactRenames(List)}
+     * @throws IOException Thrown if the files cannot be read
+     */
+    private List<DiffEntry> detectRenames(RenameDetector renames, ObjectReader reader, RevCommit commit, List<DiffEntry> diffs) throws IOException {
+        boolean added = false;
+        boolean deleted = false;
+        for (DiffEntry diff : diffs) {
+            added |= diff.getChangeType() == ChangeType.ADD;
+            deleted |= diff.getChangeType() == ChangeType.DELETE;
+        }
+        if (!added || !deleted) {
+            // nothing can have been renamed
+            return diffs;
+        }
+
+        renames.reset();
+        renames.setRenameLimit(renameLimit);
+        renames.addAll(diffs);
+        try {
+            return renames.compute(reader, (renameTimeoutNanos > 0) ? new DeadlineProgressMonitor(renameTimeoutNanos) : NullProgressMonitor.INSTANCE);
+        } catch (CanceledException e) {
+            log.debug("Comparing renames of commit {} took longer than {}ms, only exact renames are reported", commit.getName(), TimeUnit.NANOSECONDS.toMillis(renameTimeoutNanos));
+            return null;
+        }
+    }
+
+    private List<FileChange> getChangesFromRoot(org.eclipse.jgit.lib.Repository repo, String repository, ObjectReader reader, RevCommit commit) throws RepositoryTraverseException {
+        CommitDiffEvent event = new CommitDiffEvent();
+        event.begin();
+
         List<FileChange> changes = new ArrayList<>();
-        try (var tw = new TreeWalk(repo)) {
+        try (var tw = new TreeWalk(repo, reader)) {
             tw.addTree(commit.getTree());
             tw.setRecursive(true);
 
@@ -180,10 +611,16 @@ public class GitService {
             throw new RepositoryTraverseException(e);
         }
 
+        // every entry of a recursive walk without a filter is a file of the commit
+        commitEvent(event, repository, commit, CommitDiffEvent.ROOT, changes.size(), changes.size());
         return changes;
     }
 
-    private List<FileChange> getFilesWithinStructure(org.eclipse.jgit.lib.Repository repo, RevCommit commit, Structure structure) throws RepositoryTraverseException {
+    private List<FileChange> getFilesWithinStructure(org.eclipse.jgit.lib.Repository repo, String repository, RevCommit commit, Structure structure) throws RepositoryTraverseException {
+        CommitDiffEvent event = new CommitDiffEvent();
+        event.begin();
+        long visited = 0;
+
         List<FileChange> changes = new ArrayList<>();
         try (var tw = new TreeWalk(repo)) {
             tw.addTree(commit.getTree());
@@ -191,6 +628,7 @@ public class GitService {
 
             boolean found = false;
             while (tw.next()) {
+                visited++;
                 if (tw.isSubtree()) {
                     String pathString = tw.getPathString();
                     if (structure.folder.equals(pathString)) {
@@ -208,141 +646,241 @@ public class GitService {
             if (found) {
                 tw.setRecursive(true);
                 while (tw.next()) {
+                    visited++;
                     changes.add(new FileChange(FileChangeType.EXPANDED, tw.getPathString()));
                 }
-            } else {
-                // no files exist within the structure
-                return changes;
             }
+            // otherwise no files exist within the structure
 
         } catch (IOException e) {
             throw new RepositoryTraverseException(e);
         }
 
+        commitEvent(event, repository, commit, CommitDiffEvent.STRUCTURE, changes.size(), visited);
         return changes;
     }
 
-    public RepositoryMetadata getRepositoryMetadata(String cloneURL, String branch, Git git, Settings settings) throws RepositoryTraverseException, IllegalBranchException {
-        int commitCount = getCommitCount(git, branch);
-        if (settings != null) {
-            orderMilestoneAndStructureData(branch, git, settings, commitCount);
+    private void commitEvent(CommitDiffEvent event, String repository, RevCommit commit, String operation, int changes, long entriesVisited) {
+        if (event.shouldCommit()) {
+            event.repository = repository;
+            event.commitHash = commit.getName();
+            event.operation = operation;
+            event.changes = changes;
+            event.entriesVisited = entriesVisited;
+            event.commit();
         }
-
-        return new RepositoryMetadata(cloneURL, branch, commitCount, settings);
     }
 
-    private void orderMilestoneAndStructureData(String branch, Git git, Settings settings, int commitCount) throws IllegalBranchException, RepositoryTraverseException {
-        // streaming milestones into hashmap for efficient lookup
-        HashMap<String, Milestone> milestones = new HashMap<>();
-        HashMap<String, List<Structure>> structuresStart = new HashMap<>();
-        HashMap<String, List<Structure>> structuresEnd = new HashMap<>();
+    /**
+     * A path filter which includes every path, counting the tree entries the
+     * diff formatter visits while computing the changes of a commit
+     */
+    private static class CountingTreeFilter extends TreeFilter {
 
+        private long visited;
 
-        if (settings.milestones != null) {
-            settings.milestones.forEach(milestone -> milestones.put(milestone.commitHash, milestone));
+        @Override
+        public boolean include(TreeWalk walker) {
+            visited++;
+            return true;
         }
 
-        if (settings.structures != null) {
-            settings.structures.forEach(structure -> {
-                if (structure.startCommitHash != null) {
-                    List<Structure> structureList = structuresStart.get(structure.startCommitHash);
-                    if (structureList == null) {
-                        structureList = new ArrayList<>();
-                        structureList.add(structure);
-                        structuresStart.put(structure.startCommitHash, structureList);
-                    } else {
-                        structureList.add(structure);
-                    }
+        @Override
+        public boolean shouldBeRecursive() {
+            return false;
+        }
 
-                }
-                if (structure.endCommitHash != null) {
-                    List<Structure> structureList = structuresEnd.get(structure.endCommitHash);
-                    if (structureList == null) {
-                        structureList = new ArrayList<>();
-                        structureList.add(structure);
-                        structuresEnd.put(structure.endCommitHash, structureList);
-                    } else {
-                        structureList.add(structure);
-                    }
-                }
-            });
+        @Override
+        public TreeFilter clone() {
+            // the filter is only used by the worker which created it
+            return this;
         }
 
-        try {
-            var branchVar = git.getRepository().resolve(branch);
+        long getVisited() {
+            return visited;
+        }
 
-            if (branchVar == null) {
-                throw new IllegalBranchException(branch);
-            }
+        void reset() {
+            visited = 0;
+        }
 
-            // getting the location id of all the milestone commits so they can be ordered
-            int id = commitCount;
-            for (RevCommit commit : git.log().add(branchVar).call()) {
-                String commitHash = commit.getId().getName();
-                var milestone = milestones.get(commitHash);
-                if (milestone != null) {
-                    milestone.commitID = id;
-                    milestones.remove(milestone.commitHash);
-                }
+    }
 
-                var structureEnd = structuresEnd.get(commitHash);
-                if (structureEnd != null) {
-                    int finalId = id;
-                    structureEnd.forEach(structure -> {
-                        structure.endCommitID = finalId;
-                    });
-                    structuresEnd.remove(commitHash);
-                }
+    /**
+     * A progress monitor which is cancelled once its time budget has passed
+     */
+    private static class DeadlineProgressMonitor extends EmptyProgressMonitor {
 
-                var structureStart = structuresStart.get(commitHash);
-                if (structureStart != null) {
-                    int finalId = id;
-                    structureStart.forEach(structure -> {
-                        structure.startCommitID = finalId;
-                    });
-                    structuresStart.remove(commitHash);
-                }
+        private final long deadline;
 
-                id--;
-            }
-        } catch (IOException | GitAPIException e) {
-            throw new RepositoryTraverseException(e);
+        DeadlineProgressMonitor(long timeoutNanos) {
+            this.deadline = System.nanoTime() + timeoutNanos;
         }
 
-        for (Map.Entry<String, Milestone> temp : milestones.entrySet()) {
-            log.warn("Commit hash: " + temp.getKey() + " does not exist on git data");
-            settings.milestones.remove(temp.getValue());
+        @Override
+        public boolean isCancelled() {
+            return System.nanoTime() - deadline > 0;
         }
 
-        for (Map.Entry<String, List<Structure>> temp : structuresStart.entrySet()) {
-            log.warn("Commit hash: " + temp.getKey() + " does not exist on git data");
-            settings.milestones.remove(temp.getValue());
-        }
+    }
 
-        for (Map.Entry<String, List<Structure>> temp : structuresEnd.entrySet()) {
-            log.warn("Commit hash: " + temp.getKey() + " does not exist on git data");
-            settings.milestones.remove(temp.getValue());
+    public RepositoryMetadata getRepositoryMetadata(String cloneURL, String branch, Git git, Settings settings) throws RepositoryTraverseException, IllegalBranchException {
+        // the index is only walked (without commit bodies) if the branch tip has moved since it was last used
+        CommitIndex index = getBranchIndex(git, branch);
+        if (settings != null) {
+            orderMilestoneAndStructureData(index, settings);
         }
 
+        String version = getPageVersion((settings == null) ? null : settings.structures);
+        return new RepositoryMetadata(cloneURL, branch, index.getSize(), ObjectId.toString(index.getTip()), version, settings);
     }
 
-    private int getCommitCount(Git git, String branch) throws RepositoryTraverseException, IllegalBranchException {
-
+    /**
+     * Used to get the up-to-date commit index of a branch
+     *
+     * @param git    The repository
+     * @param branch The branch
+     * @return The index of the branch
+     * @throws RepositoryTraverseException Thrown if the repository cannot be traversed
+     * @throws IllegalBranchException      Thrown if the branch does not exist
+     */
+    public CommitIndex getBranchIndex(Git git, String branch) throws RepositoryTraverseException, IllegalBranchException {
         try {
-            var branchVar = git.getRepository().resolve(branch);
+            var repo = git.getRepository();
+            var branchVar = repo.resolve(branch);
 
             if (branchVar == null) {
                 throw new IllegalBranchException(branch);
             }
-            return Iterables.size(git.log().add(branchVar).call());
 
-        } catch (IOException | GitAPIException | NullPointerException e) {
+            long start = System.nanoTime();
+            CommitIndex index = commitIndexService.getUpToDateIndex(repo, branch, branchVar);
+            metricsService.recordHistoryWalk(metricsService.getRepositoryTag(repo), System.nanoTime() - start);
+            return index;
+        } catch (IOException e) {
             throw new RepositoryTraverseException(e);
         }
+    }
+
+    private void orderMilestoneAndStructureData(CommitIndex index, Settings settings) throws RepositoryTraverseException {
+        // collecting all referenced commits so they can be located in a single lookup
+        Set<ObjectId> commits = new HashSet<>();
 
+        if (settings.milestones != null) {
+            settings.milestones.forEach(milestone -> addCommitHash(commits, milestone.commitHash));
+        }
+
+        if (settings.structures != null) {
+            settings.structures.forEach(structure -> {
+                addCommitHash(commits, structure.startCommitHash);
+                addCommitHash(commits, structure.endCommitHash);
+            });
+        }
+
+        Map<ObjectId, Integer> ordinals = commitIndexService.findOrdinals(index, commits);
+
+        // commit IDs count from 1 at the first commit of the branch
+        if (settings.milestones != null) {
+            settings.milestones.removeIf(milestone -> {
+                Integer ordinal = getOrdinal(ordinals, milestone.commitHash);
+                if (ordinal == null) {
+                    return true;
+                }
+                milestone.commitID = ordinal + 1;
+                return false;
+            });
+        }
+
+        if (settings.structures != null) {
+            settings.structures.removeIf(structure -> {
+                if (structure.startCommitHash != null) {
+                    Integer ordinal = getOrdinal(ordinals, structure.startCommitHash);
+                    if (ordinal == null) {
+                        return true;
+                    }
+                    structure.startCommitID = ordinal + 1;
+                }
+
+                if (structure.endCommitHash != null) {
+                    Integer ordinal = getOrdinal(ordinals, structure.endCommitHash);
+                    if (ordinal == null) {
+                        return true;
+                    }
+                    structure.endCommitID = ordinal + 1;
+                }
+                return false;
+            });
+        }
+
+    }
+
+    private void addCommitHash(Set<ObjectId> commits, String commitHash) {
+        if (commitHash != null && ObjectId.isId(commitHash)) {
+            commits.add(ObjectId.fromString(commitHash));
+        }
+    }
+
+    private Integer getOrdinal(Map<ObjectId, Integer> ordinals, String commitHash) {
+        Integer ordinal = ObjectId.isId(commitHash) ? ordinals.get(ObjectId.fromString(commitHash)) : null;
+        if (ordinal == null) {
+            log.warn("Commit hash: " + commitHash + " does not exist on git data");
+        }
+        return ordinal;
+    }
+
+    /**
+     * Used to check if a branch exists locally within a repository
+     *
+     * @param git    The repository
+     * @param branch The branch
+     * @return If the branch exists
+     */
+    public boolean hasLocalBranch(Git git, String branch) {
+        try {
+            return git.getRepository().exactRef(Constants.R_HEADS + branch) != null;
+        } catch (IOException e) {
+            return false;
+        }
     }
 
-    public void pullRepository(Git git) {
-        git.pull();
+    /**
+     * Used to fetch a single branch from the origin of a repository. As clones do
+     * not have a working tree, the fetch updates the local branch directly. If the
+     * branch has moved, its commit index is extended with the new commits
+     *
+     * @param git     The repository
+     * @param branch  The branch to fetch
+     * @param monitor The monitor to report progress to
+     * @return If the branch has moved
+     * @throws GitAPIException Thrown if the branch cannot be fetched
+     */
+    public boolean fetchBranch(Git git, String branch, ProgressMonitor monitor) throws GitAPIException {
+        String ref = Constants.R_HEADS + branch;
+        if (!Repository.isValidRefName(ref)) {
+            // the branch may be a commit ID or another revision, which cannot be fetched
+            return false;
+        }
+
+        var repo = git.getRepository();
+        FetchResult result = git.fetch()
+                .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                .setRefSpecs(new RefSpec("+" + ref + ":" + ref))
+                .setProgressMonitor(monitor)
+                .call();
+
+        TrackingRefUpdate update = result.getTrackingRefUpdate(ref);
+        if (update == null || update.getNewObjectId().equals(update.getOldObjectId())) {
+            log.info("Branch {} of {} is up to date", branch, repo.getDirectory());
+            return false;
+        }
+
+        log.info("Fetched branch {} of {}, {} -> {}", branch, repo.getDirectory(), update.getOldObjectId().name(), update.getNewObjectId().name());
+        try {
+            commitIndexService.getUpToDateIndex(repo, branch, update.getNewObjectId());
+        } catch (RepositoryTraverseException e) {
+            // the index is brought up to date again when it is next used
+            log.warn("Unable to update the commit index of branch {}", branch, e);
+        }
+        return true;
     }
 }
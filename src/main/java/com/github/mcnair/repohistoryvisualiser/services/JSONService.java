@@ -1,26 +1,57 @@
 package com.github.mcnair.repohistoryvisualiser.services;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class JSONService {
 
+    /**
+     * A mapper is thread-safe once configured, so a single mapper is shared to
+     * keep its serializer and deserializer caches between calls
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final ConcurrentHashMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
     public <T> void writeJSON(File file, T object) throws IOException {
-        ObjectMapper mapper = createMapper();
-        mapper.writeValue(file, object);
+        ObjectWriter writer = (object == null) ? mapper.writer() : getWriter(object.getClass());
+        writer.writeValue(file, object);
     }
 
     public <T> T readJSON(File file, Class<T> classType) throws IOException {
-        ObjectMapper mapper = createMapper();
-        return mapper.readValue(file, classType);
+        return getReader(classType).readValue(file);
+    }
+
+    /**
+     * @return The shared mapper, which must not be reconfigured
+     */
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    /**
+     * @param classType The type to read
+     * @return The shared reader for the type
+     */
+    public ObjectReader getReader(Class<?> classType) {
+        return readers.computeIfAbsent(classType, mapper::readerFor);
     }
 
-    public ObjectMapper createMapper() {
-        return new ObjectMapper();
+    /**
+     * @param classType The type to write
+     * @return The shared writer for the type
+     */
+    public ObjectWriter getWriter(Class<?> classType) {
+        return writers.computeIfAbsent(classType, mapper::writerFor);
     }
 
 }
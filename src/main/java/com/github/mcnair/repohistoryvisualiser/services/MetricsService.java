@@ -0,0 +1,228 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.eclipse.jgit.lib.Repository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the time spent in each phase of preparing and visualising a
+ * repository. Meters are tagged with the repository they were recorded for,
+ * which is the path of the repository within the clone folder (for example
+ * {@code github.com/user/repo}), so the same tag is used whether the repository
+ * is known by its clone URL or its local repository
+ */
+@Service
+public class MetricsService {
+
+    public static final String CLONE = "repohistory.clone";
+
+    public static final String FETCH = "repohistory.fetch";
+
+    public static final String HISTORY_WALK = "repohistory.history.walk";
+
+    public static final String DIFF = "repohistory.diff";
+
+    public static final String DIFF_CHANGES = "repohistory.diff.changes";
+
+    public static final String STRUCTURE_COLLAPSE = "repohistory.structure.collapse";
+
+    public static final String SETTINGS_LOAD = "repohistory.settings.load";
+
+    public static final String SETTINGS_FETCH = "repohistory.settings.fetch";
+
+    public static final String RESPONSE_BYTES = "repohistory.response.bytes";
+
+    public static final String POOL_OPEN = "repohistory.pool.open";
+
+    public static final String POOL_HITS = "repohistory.pool.hits";
+
+    public static final String POOL_MISSES = "repohistory.pool.misses";
+
+    public static final String POOL_EVICTIONS = "repohistory.pool.evictions";
+
+    private static final String REPOSITORY_TAG = "repository";
+
+    /**
+     * The tag of meters which are not recorded for a known repository
+     */
+    public static final String UNKNOWN_REPOSITORY = "unknown";
+
+    private final MeterRegistry registry;
+
+    private final Path cloneFolder;
+
+    @Autowired
+    public MetricsService(MeterRegistry registry, AppProperties properties, RepositoryPoolService repositoryPoolService) {
+        this.registry = registry;
+        this.cloneFolder = Path.of(String.valueOf(properties.getCloneFolder())).toAbsolutePath().normalize();
+        // each repository creates its own meters, so their number is bounded
+        registry.config().meterFilter(MeterFilter.maximumAllowableTags("repohistory", REPOSITORY_TAG, Math.max(1, properties.getMetricsMaxRepositories()), MeterFilter.deny()));
+        bindRepositoryPool(repositoryPoolService);
+    }
+
+    /**
+     * Registers the usage statistics of the pool of open repositories, which are
+     * read from the pool whenever the meters are published
+     */
+    private void bindRepositoryPool(RepositoryPoolService pool) {
+        Gauge.builder(POOL_OPEN, pool, p -> p.getStatistics().getOpen())
+                .description("The number of repositories currently open within the pool")
+                .strongReference(true)
+                .register(registry);
+        FunctionCounter.builder(POOL_HITS, pool, p -> p.getStatistics().getHits())
+                .description("The number of requests for a repository which was already open")
+                .register(registry);
+        FunctionCounter.builder(POOL_MISSES, pool, p -> p.getStatistics().getMisses())
+                .description("The number of requests for a repository which had to be opened")
+                .register(registry);
+        FunctionCounter.builder(POOL_EVICTIONS, pool, p -> p.getStatistics().getEvictions())
+                .description("The number of repositories closed as they were idle or least recently used")
+                .register(registry);
+    }
+
+    /**
+     * Gets the repository tag of a clone URL
+     *
+     * @param cloneURL The clone URL
+     * @return The repository tag
+     */
+    public String getRepositoryTag(String cloneURL) {
+        if (cloneURL == null) {
+            return UNKNOWN_REPOSITORY;
+        }
+
+        try {
+            URL url = new URL(cloneURL);
+            String path = url.getHost() + url.getPath();
+            if (path.endsWith(".git")) {
+                path = path.substring(0, path.length() - ".git".length());
+            }
+            return normalise(path);
+        } catch (MalformedURLException e) {
+            return UNKNOWN_REPOSITORY;
+        }
+    }
+
+    /**
+     * Gets the repository tag of a local repository
+     *
+     * @param repo The repository
+     * @return The repository tag
+     */
+    public String getRepositoryTag(Repository repo) {
+        File folder = repo.isBare() ? repo.getDirectory() : repo.getWorkTree();
+        if (folder == null) {
+            return UNKNOWN_REPOSITORY;
+        }
+
+        Path path = folder.toPath().toAbsolutePath().normalize();
+        if (path.startsWith(cloneFolder)) {
+            return normalise(cloneFolder.relativize(path).toString());
+        }
+        return normalise(path.getFileName().toString());
+    }
+
+    private static String normalise(String path) {
+        path = path.replace('\\', '/');
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path.isEmpty() ? UNKNOWN_REPOSITORY : path;
+    }
+
+    public void recordClone(String repository, long nanos) {
+        timer(CLONE, "The time taken to clone a repository", repository).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFetch(String repository, long nanos) {
+        timer(FETCH, "The time taken to fetch a branch of a repository", repository).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordHistoryWalk(String repository, long nanos) {
+        timer(HISTORY_WALK, "The time taken to bring the commit index of a branch up to date", repository).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Used to record the changes of a commit
+     *
+     * @param repository The repository tag
+     * @param cached     If the changes were read from the diff cache
+     * @param nanos      The time taken to get the changes
+     * @param changes    The number of changes made by the commit
+     */
+    public void recordDiff(String repository, boolean cached, long nanos, int changes) {
+        Timer.builder(DIFF)
+                .description("The time taken to get the changes of a commit")
+                .tags(REPOSITORY_TAG, Objects.requireNonNullElse(repository, UNKNOWN_REPOSITORY), "cached", String.valueOf(cached))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder(DIFF_CHANGES)
+                .description("The number of changes made by a commit")
+                .baseUnit("changes")
+                .tags(REPOSITORY_TAG, Objects.requireNonNullElse(repository, UNKNOWN_REPOSITORY))
+                .register(registry)
+                .record(changes);
+    }
+
+    public void recordStructureCollapse(String repository, long nanos) {
+        timer(STRUCTURE_COLLAPSE, "The time taken to collapse the structures within the changes of a commit", repository).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSettingsLoad(String repository, long nanos) {
+        timer(SETTINGS_LOAD, "The time taken to load the stored settings of a repository", repository).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Used to record the time taken to read the settings at a settings URL, which
+     * is not yet associated with a repository
+     *
+     * @param nanos The time taken
+     */
+    public void recordSettingsFetch(long nanos) {
+        Timer.builder(SETTINGS_FETCH)
+                .description("The time taken to read the settings at a settings URL")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Used to record the size of a response before compression
+     *
+     * @param repository The repository tag
+     * @param endpoint   The path pattern of the endpoint
+     * @param bytes      The size of the response body
+     */
+    public void recordResponseBytes(String repository, String endpoint, long bytes) {
+        DistributionSummary.builder(RESPONSE_BYTES)
+                .description("The size of a response before compression")
+                .baseUnit("bytes")
+                .tags(REPOSITORY_TAG, Objects.requireNonNullElse(repository, UNKNOWN_REPOSITORY), "endpoint", endpoint)
+                .register(registry)
+                .record(bytes);
+    }
+
+    private Timer timer(String name, String description, String repository) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(REPOSITORY_TAG, Objects.requireNonNullElse(repository, UNKNOWN_REPOSITORY))
+                .register(registry);
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.exception.IllegalBranchException;
+import com.github.mcnair.repohistoryvisualiser.exception.IllegalCloneException;
+import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
+import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
+import com.github.mcnair.repohistoryvisualiser.repository.PrevisJob;
+import com.github.mcnair.repohistoryvisualiser.repository.PrevisJob.JobStatus;
+import com.github.mcnair.repohistoryvisualiser.repository.RepositoryMetadata;
+import com.github.mcnair.repohistoryvisualiser.repository.Settings;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.EmptyProgressMonitor;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service to prepare repositories for visualisation in the background, so
+ * requests never wait on a clone or fetch. Clients start a job, then poll it
+ * for progress until the repository metadata is available
+ */
+@Service
+@Slf4j
+public class PrevisJobService {
+
+    /**
+     * How long a finished job can be polled for before it is forgotten
+     */
+    private static final long FINISHED_JOB_RETENTION = TimeUnit.MINUTES.toMillis(10);
+
+    private GitCloneService gitCloneService;
+
+    private GitService gitService;
+
+    private SettingsService settingsService;
+
+    private CommitPageCacheService commitPageCacheService;
+
+    private final ExecutorService jobExecutor;
+
+    private final ConcurrentHashMap<String, PrevisJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PrevisJobService(GitCloneService gitCloneService, GitService gitService, SettingsService settingsService, CommitPageCacheService commitPageCacheService, AppProperties properties) {
+        this.gitCloneService = gitCloneService;
+        this.gitService = gitService;
+        this.settingsService = settingsService;
+        this.commitPageCacheService = commitPageCacheService;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        jobExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getPrevisThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "previs-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * Used to start preparing a repository for visualisation. If the same
+     * repository is already being prepared with the same branch and settings, the
+     * existing job is returned instead
+     *
+     * @param clone       The repository clone URL
+     * @param branch      The branch to visualise
+     * @param settingsURL The settings URL, or null if no settings are in use
+     * @return The job
+     */
+    public PrevisJob startJob(String clone, String branch, String settingsURL) {
+        removeFinishedJobs();
+
+        PrevisJob job;
+        synchronized (jobs) {
+            for (PrevisJob existing : jobs.values()) {
+                if (existing.getStatus() == JobStatus.RUNNING && existing.getUrl().equals(clone)
+                        && existing.getBranch().equals(branch) && Objects.equals(existing.getSettingsURL(), settingsURL)) {
+                    return existing;
+                }
+            }
+
+            job = new PrevisJob(UUID.randomUUID().toString(), clone, branch, settingsURL);
+            jobs.put(job.getId(), job);
+        }
+
+        log.info("Starting previs job {} for {} with branch {}", job.getId(), clone, branch);
+        jobExecutor.execute(() -> {
+            try {
+                runJob(job);
+            } catch (RuntimeException e) {
+                log.error("Previs job {} failed", job.getId(), e);
+                fail(job, "That repository cannot be visualised");
+            } finally {
+                job.getCompletion().complete(job);
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Used to prepare a repository for visualisation and wait until it is ready.
+     * The same job is run as by {@link #startJob}, so a job which is already
+     * running for the repository is joined
+     *
+     * @param clone       The repository clone URL
+     * @param branch      The branch to visualise
+     * @param settingsURL The settings URL, or null if no settings are in use
+     * @return The finished job
+     */
+    public PrevisJob runJobAndWait(String clone, String branch, String settingsURL) {
+        return startJob(clone, branch, settingsURL).getCompletion().join();
+    }
+
+    /**
+     * Used to get a job
+     *
+     * @param id The ID of the job
+     * @return The job, or null if the job does not exist
+     */
+    public PrevisJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    private void runJob(PrevisJob job) {
+        String clone = job.getUrl();
+
+        Git git;
+        try {
+            git = gitCloneService.getUpToDateRepositoryOrClone(clone, job.getBranch(), new JobProgressMonitor(job));
+        } catch (IllegalCloneException e) {
+            log.error("Unable to prepare repository, may be malformed or not exist. URL = '{}'", clone);
+            fail(job, "Invalid repository clone URL");
+            return;
+        }
+
+        Settings settings = null;
+        if (job.getSettingsURL() != null) {
+            try {
+                settings = settingsService.manageSettings(job.getSettingsURL());
+            } catch (IllegalURLException e) {
+                log.error("Unable to get settings data. URL = '{}'", job.getSettingsURL());
+                fail(job, "Invalid settings URL");
+                return;
+            }
+        }
+
+        job.setTask("Indexing commits");
+        RepositoryMetadata metadata;
+        try {
+            metadata = gitService.getRepositoryMetadata(clone, job.getBranch(), git, settings);
+        } catch (RepositoryTraverseException e) {
+            log.error("Unable to traverse repository with clone URL = {}", clone);
+            fail(job, "That repository cannot be visualised");
+            return;
+        } catch (IllegalBranchException e) {
+            log.error("Repository does not include the specified branch = {}", job.getBranch());
+            fail(job, "That branch does not exist on that repository");
+            return;
+        }
+
+        if (job.getSettingsURL() != null) {
+            try {
+                settingsService.saveSettings(clone, job.getSettingsURL(), settings);
+                commitPageCacheService.invalidate(clone);
+            } catch (IllegalURLException | IOException e) {
+                log.error("Unable to store settings data. Settings URL = {}", job.getSettingsURL());
+                fail(job, "Unable to handle settings data");
+                return;
+            }
+        }
+
+        job.setMetadata(metadata);
+        job.setFinishedAt(System.currentTimeMillis());
+        job.setStatus(JobStatus.COMPLETE);
+        log.info("Previs job {} complete", job.getId());
+    }
+
+    private void fail(PrevisJob job, String error) {
+        job.setError(error);
+        job.setFinishedAt(System.currentTimeMillis());
+        job.setStatus(JobStatus.FAILED);
+    }
+
+    private void removeFinishedJobs() {
+        long expiry = System.currentTimeMillis() - FINISHED_JOB_RETENTION;
+        jobs.values().removeIf(job -> job.getStatus() != JobStatus.RUNNING && job.getFinishedAt() < expiry);
+    }
+
+    /**
+     * Records the progress reported by JGit against a job
+     */
+    private static class JobProgressMonitor extends EmptyProgressMonitor {
+
+        private final PrevisJob job;
+
+        JobProgressMonitor(PrevisJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void beginTask(String title, int totalWork) {
+            job.setTask(title);
+            job.setCompleted(0);
+            job.setTotal((totalWork == ProgressMonitor.UNKNOWN) ? 0 : totalWork);
+        }
+
+        @Override
+        public void update(int completed) {
+            job.setCompleted(job.getCompleted() + completed);
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.repository.ProfilingSummary;
+import com.github.mcnair.repohistoryvisualiser.repository.ProfilingSummary.CommitCost;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Manages a flight recording of the {@link CommitDiffEvent}s, so the commits
+ * causing slow pages can be found on a running server. Only one recording runs
+ * at a time, and it is bounded in both length and size
+ */
+@Service
+@Slf4j
+public class ProfilingService {
+
+    private static final String RECORDING_NAME = "repo-history-visualiser-profiling";
+
+    private final Duration maxDuration;
+
+    private final long maxSize;
+
+    /**
+     * The current or last recording, null if no recording has been started
+     */
+    private Recording recording;
+
+    @Autowired
+    public ProfilingService(AppProperties properties) {
+        this.maxDuration = Duration.ofSeconds(Math.max(1, properties.getProfilingMaxSeconds()));
+        this.maxSize = Math.max(1, properties.getProfilingMaxMegabytes()) * 1024L * 1024L;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    /**
+     * Used to start a recording, discarding the previous recording
+     *
+     * @param seconds The length of the recording, limited to the configured maximum. If null the maximum is used
+     * @return The state of the started recording
+     * @throws IllegalStateException Thrown if a recording is already running
+     */
+    public synchronized ProfilingSummary start(Integer seconds) {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        shutdown();
+
+        Duration duration = (seconds == null || seconds <= 0 || Duration.ofSeconds(seconds).compareTo(maxDuration) > 0) ? maxDuration : Duration.ofSeconds(seconds);
+
+        recording = new Recording();
+        recording.setName(RECORDING_NAME);
+        recording.enable(CommitDiffEvent.class).withThreshold(Duration.ZERO);
+        recording.setDuration(duration);
+        recording.setMaxSize(maxSize);
+        recording.setToDisk(true);
+        recording.start();
+
+        log.info("Started profiling recording for {}s", duration.toSeconds());
+        return createSummary(null);
+    }
+
+    /**
+     * Used to stop the running recording and summarise it
+     *
+     * @param top The number of commits to include for each repository
+     * @return The summary of the recording
+     * @throws IOException Thrown if the recording cannot be read
+     */
+    public synchronized ProfilingSummary stop(int top) throws IOException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+            log.info("Stopped profiling recording");
+        }
+        return getSummary(top);
+    }
+
+    /**
+     * Used to summarise the current or last recording, the recording continues if
+     * it is running
+     *
+     * @param top The number of commits to include for each repository
+     * @return The summary of the recording
+     * @throws IOException Thrown if the recording cannot be read
+     */
+    public synchronized ProfilingSummary getSummary(int top) throws IOException {
+        if (recording == null) {
+            return new ProfilingSummary(ProfilingSummary.State.NONE, null, null, null);
+        }
+        if (recording.getState() != RecordingState.RUNNING && recording.getState() != RecordingState.STOPPED) {
+            // the recording has not written any data yet
+            return createSummary(Map.of());
+        }
+
+        Path file = Files.createTempFile("profiling", ".jfr");
+        try {
+            recording.dump(file);
+            return createSummary(summarise(file, top));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private ProfilingSummary createSummary(Map<String, List<CommitCost>> repositories) {
+        ProfilingSummary.State state = (recording.getState() == RecordingState.RUNNING) ? ProfilingSummary.State.RUNNING : ProfilingSummary.State.STOPPED;
+        return new ProfilingSummary(state, recording.getStartTime(), recording.getDuration().toSeconds(), repositories);
+    }
+
+    /**
+     * Combines the events of each commit within a recording, returning the
+     * heaviest commits of each repository
+     */
+    private static Map<String, List<CommitCost>> summarise(Path file, int top) throws IOException {
+        Map<String, Map<String, long[]>> costs = new HashMap<>();
+
+        // the recording is read one event at a time, as it may be large
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                if (!event.getEventType().getName().equals(CommitDiffEvent.NAME)) {
+                    continue;
+                }
+
+                String repository = String.valueOf(event.getString("repository"));
+                long[] cost = costs.computeIfAbsent(repository, key -> new HashMap<>())
+                        .computeIfAbsent(event.getString("commitHash"), key -> new long[4]);
+                cost[0] += event.getDuration().toNanos();
+                cost[1]++;
+                cost[2] += event.getInt("changes");
+                cost[3] += event.getLong("entriesVisited");
+            }
+        }
+
+        Map<String, List<CommitCost>> summary = new TreeMap<>();
+        costs.forEach((repository, commits) -> summary.put(repository, commits.entrySet().stream()
+                .map(commit -> new CommitCost(commit.getKey(), commit.getValue()[0] / 1e6, (int) commit.getValue()[1], commit.getValue()[2], commit.getValue()[3]))
+                .sorted(Comparator.comparingDouble(CommitCost::getDurationMillis).reversed())
+                .limit(Math.max(top, 0))
+                .toList()));
+        return summary;
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service to repack cloned repositories in the background. Fetches leave the
+ * new commits in loose objects or small packs, which makes every history walk
+ * slower, so after a clone or fetch the repository is garbage collected into a
+ * single pack with reachability bitmaps.
+ * <p>
+ * Maintenance runs one repository at a time on a single low priority thread, and
+ * each repository is maintained at most once per configured interval, so it does
+ * not compete with requests
+ */
+@Service
+@Slf4j
+public class RepositoryMaintenanceService {
+
+    private final ExecutorService maintenanceExecutor;
+
+    private final long maintenanceInterval;
+
+    /**
+     * The time each repository was last maintained, keyed by git directory
+     */
+    private final ConcurrentHashMap<File, Long> lastMaintenance = new ConcurrentHashMap<>();
+
+    private final Set<File> scheduled = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public RepositoryMaintenanceService(AppProperties properties) {
+        this.maintenanceInterval = TimeUnit.MINUTES.toMillis(properties.getMaintenanceIntervalMinutes());
+
+        maintenanceExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "repository-maintenance");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenanceExecutor.shutdownNow();
+    }
+
+    /**
+     * Used to queue a repository for maintenance, unless it is already queued or
+     * was maintained within the configured interval
+     *
+     * @param git The repository
+     */
+    public void scheduleMaintenance(Git git) {
+        File directory = git.getRepository().getDirectory();
+        Long last = lastMaintenance.get(directory);
+        if (last != null && System.currentTimeMillis() - last < maintenanceInterval) {
+            return;
+        }
+        if (!scheduled.add(directory)) {
+            return;
+        }
+
+        maintenanceExecutor.execute(() -> {
+            try {
+                maintain(git);
+            } catch (GitAPIException | RuntimeException e) {
+                log.warn("Unable to maintain repository {}", directory, e);
+            } finally {
+                lastMaintenance.put(directory, System.currentTimeMillis());
+                scheduled.remove(directory);
+            }
+        });
+    }
+
+    /**
+     * Used to repack a repository with reachability bitmaps. The effect on
+     * history walks is measured by the RepositoryMaintenanceBenchmark rather
+     * than on every run, as timing a walk means walking the whole history
+     *
+     * @param git The repository
+     * @return The statistics of the repository after maintenance
+     * @throws GitAPIException Thrown if the repository cannot be repacked
+     */
+    public Properties maintain(Git git) throws GitAPIException {
+        var repo = git.getRepository();
+        repo.getConfig().setBoolean(ConfigConstants.CONFIG_PACK_SECTION, null, ConfigConstants.CONFIG_KEY_BUILD_BITMAPS, true);
+
+        long start = System.nanoTime();
+        Properties statistics = git.gc().setAggressive(false).call();
+
+        log.info("Maintained {} in {}ms, statistics {}", repo.getDirectory(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), statistics);
+        return statistics;
+    }
+
+}
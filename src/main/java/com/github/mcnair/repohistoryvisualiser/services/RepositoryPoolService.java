@@ -0,0 +1,188 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.repository.RepositoryPoolStatistics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service to keep the repositories which are being visualised open, so the
+ * config, refs and pack files of a repository are only loaded once rather than
+ * on every request. Repositories are closed once they have not been used for
+ * the configured idle time, or when the pool is full and they are the least
+ * recently used.
+ * <p>
+ * Handles are shared and are never closed by callers. A handle which is closed
+ * while a request is still using it remains usable, as JGit reopens the pack
+ * files of a closed repository on demand
+ */
+@Service
+@Slf4j
+public class RepositoryPoolService {
+
+    private final int maxRepositories;
+
+    private final long idleTimeout;
+
+    private final ScheduledExecutorService sweeper;
+
+    private final LinkedHashMap<File, PooledRepository> repositories = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static class PooledRepository {
+
+        private final Git git;
+
+        private volatile long lastAccess;
+
+        PooledRepository(Git git) {
+            this.git = git;
+            this.lastAccess = System.currentTimeMillis();
+        }
+
+    }
+
+    @Autowired
+    public RepositoryPoolService(AppProperties properties) {
+        this.maxRepositories = Math.max(1, properties.getRepositoryPoolSize());
+        this.idleTimeout = TimeUnit.SECONDS.toMillis(properties.getRepositoryIdleSeconds());
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "repository-pool-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (idleTimeout > 0) {
+            long period = Math.min(idleTimeout, TimeUnit.MINUTES.toMillis(1));
+            sweeper.scheduleWithFixedDelay(this::closeIdleRepositories, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        synchronized (repositories) {
+            repositories.values().forEach(repository -> repository.git.close());
+            repositories.clear();
+        }
+    }
+
+    /**
+     * Used to get the open repository within a folder, opening it if it is not
+     * within the pool
+     *
+     * @param folder The folder of the repository
+     * @return The repository
+     * @throws IOException Thrown if the folder does not contain a repository
+     */
+    public Git getRepository(File folder) throws IOException {
+        File key = folder.getAbsoluteFile();
+        synchronized (repositories) {
+            PooledRepository pooled = repositories.get(key);
+            if (pooled != null) {
+                hits.incrementAndGet();
+                pooled.lastAccess = System.currentTimeMillis();
+                return pooled.git;
+            }
+        }
+
+        misses.incrementAndGet();
+        return addRepository(key, Git.open(key));
+    }
+
+    /**
+     * Used to add a repository which has been opened elsewhere, such as by a
+     * clone, to the pool. If the folder is already within the pool, the provided
+     * repository is closed and the pooled repository is returned instead
+     *
+     * @param folder The folder of the repository
+     * @param git    The repository
+     * @return The pooled repository
+     */
+    public Git addRepository(File folder, Git git) {
+        File key = folder.getAbsoluteFile();
+        List<PooledRepository> evicted = new ArrayList<>();
+        Git pooledGit;
+
+        synchronized (repositories) {
+            PooledRepository existing = repositories.get(key);
+            if (existing != null) {
+                pooledGit = existing.git;
+            } else {
+                pooledGit = git;
+                repositories.put(key, new PooledRepository(git));
+
+                Iterator<PooledRepository> iterator = repositories.values().iterator();
+                while (repositories.size() > maxRepositories) {
+                    evicted.add(iterator.next());
+                    iterator.remove();
+                }
+            }
+        }
+
+        if (pooledGit != git) {
+            git.close();
+        }
+        close(evicted);
+        return pooledGit;
+    }
+
+    /**
+     * @return The current usage statistics of the pool
+     */
+    public RepositoryPoolStatistics getStatistics() {
+        int open;
+        synchronized (repositories) {
+            open = repositories.size();
+        }
+        return new RepositoryPoolStatistics(open, hits.get(), misses.get(), evictions.get());
+    }
+
+    private void closeIdleRepositories() {
+        long expiry = System.currentTimeMillis() - idleTimeout;
+        List<PooledRepository> evicted = new ArrayList<>();
+
+        synchronized (repositories) {
+            // the map is in access order, so the idle repositories are at the start
+            Iterator<PooledRepository> iterator = repositories.values().iterator();
+            while (iterator.hasNext()) {
+                PooledRepository pooled = iterator.next();
+                if (pooled.lastAccess >= expiry) {
+                    break;
+                }
+                evicted.add(pooled);
+                iterator.remove();
+            }
+        }
+
+        close(evicted);
+    }
+
+    private void close(List<PooledRepository> evicted) {
+        for (PooledRepository pooled : evicted) {
+            log.debug("Closing pooled repository {}", pooled.git.getRepository().getDirectory());
+            evictions.incrementAndGet();
+            pooled.git.close();
+        }
+    }
+
+}
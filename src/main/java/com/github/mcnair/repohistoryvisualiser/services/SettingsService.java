@@ -1,5 +1,6 @@
 package com.github.mcnair.repohistoryvisualiser.services;
 
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
 import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
 import com.github.mcnair.repohistoryvisualiser.repository.Settings;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,7 +10,13 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class SettingsService {
@@ -17,21 +24,104 @@ public class SettingsService {
     private YAMLService YAMLService;
     private GitCloneService gitCloneService;
     private JSONService JSONService;
+    private URLService urlService;
+    private MetricsService metricsService;
+
+    /**
+     * The folder the fetched settings documents are kept in, so they can be
+     * revalidated rather than fetched again
+     */
+    private final File documentFolder;
+
+    private final int maxCachedSettings;
+
+    private final long revalidateNanos;
+
+    /**
+     * The settings which have been stored for each repository, in access order so
+     * the least recently used settings are removed first. Settings only change when
+     * a repository is prepared, so every commit page would otherwise reread the
+     * same file
+     */
+    private final LinkedHashMap<SettingsKey, CachedSettings> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private record SettingsKey(String cloneURL, String settingsURL) {
+    }
+
+    /**
+     * @param file         The file the settings were read from or written to
+     * @param lastModified The last modified time of the file when it was read or written
+     * @param length       The length of the file when it was read or written
+     * @param settings     The settings
+     * @param validatedAt  The {@link System#nanoTime()} the file was last checked for changes
+     */
+    private record CachedSettings(File file, long lastModified, long length, Settings settings, long validatedAt) {
+
+        CachedSettings(File file, long lastModified, long length, Settings settings) {
+            this(file, lastModified, length, settings, System.nanoTime());
+        }
+
+        CachedSettings(File file, Settings settings) {
+            this(file, file.lastModified(), file.length(), settings);
+        }
+
+        CachedSettings revalidated() {
+            return new CachedSettings(file, lastModified, length, settings);
+        }
+
+        /**
+         * @return If the file has not been changed since the settings were cached
+         */
+        boolean isCurrent() {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+
+    }
 
     @Autowired
-    public SettingsService(YAMLService YAMLService, GitCloneService gitCloneService, JSONService jsonService) {
+    public SettingsService(YAMLService YAMLService, GitCloneService gitCloneService, JSONService jsonService, URLService urlService, MetricsService metricsService, AppProperties properties) {
         this.YAMLService = YAMLService;
         this.gitCloneService = gitCloneService;
         this.JSONService = jsonService;
+        this.urlService = urlService;
+        this.metricsService = metricsService;
+        this.documentFolder = new File(String.valueOf(properties.getCloneFolder()), ".settings");
+        this.maxCachedSettings = Math.max(1, properties.getSettingsCacheSize());
+        this.revalidateNanos = TimeUnit.SECONDS.toNanos(Math.max(0, properties.getSettingsRevalidateSeconds()));
     }
 
+    /**
+     * Used to read the settings at a URL. Settings served over http are kept
+     * locally and revalidated, so they are only transferred again once changed
+     *
+     * @param url The settings URL
+     * @return The settings
+     * @throws IllegalURLException Thrown if the settings cannot be read
+     */
     public Settings manageSettings(String url) throws IllegalURLException {
-
+        long start = System.nanoTime();
         try {
-            Settings settings = YAMLService.readYaml(new URL(url), Settings.class);
+            URL settingsURL = new URL(url);
+            if (settingsURL.getProtocol().equals("http") || settingsURL.getProtocol().equals("https")) {
+                File document = urlService.fetchDocument(url, getDocumentFile(url));
+                return YAMLService.readYaml(document, Settings.class);
+            }
+
+            Settings settings = YAMLService.readYaml(settingsURL, Settings.class);
             return settings;
         } catch (IOException e) {
             throw new IllegalURLException(url, e);
+        } finally {
+            metricsService.recordSettingsFetch(System.nanoTime() - start);
+        }
+    }
+
+    private File getDocumentFile(String url) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return new File(documentFolder, HexFormat.of().formatHex(hash) + ".yaml");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
         }
     }
 
@@ -60,13 +150,69 @@ public class SettingsService {
         File settingsFile = getSettingsFile(cloneURL, settingsURL);
         JSONService.writeJSON(settingsFile, settings);
 
+        cacheSettings(new SettingsKey(cloneURL, settingsURL), new CachedSettings(settingsFile, settings));
     }
 
+    /**
+     * Used to load the settings stored for a repository. Settings are held in
+     * memory once loaded, and as {@link #saveSettings(String, String, Settings)}
+     * writes through the file is only checked for other changes once the
+     * revalidation interval has passed. The returned settings are shared, so
+     * must not be modified
+     *
+     * @param cloneURL    The repository clone URL
+     * @param settingsURL The settings URL
+     * @return The settings
+     * @throws IOException         Thrown if the settings cannot be read
+     * @throws IllegalURLException Thrown if the settings URL is invalid
+     */
     public Settings loadSettings(String cloneURL, String settingsURL) throws IOException, IllegalURLException {
+        long start = System.nanoTime();
+        try {
+            return loadSettings(new SettingsKey(cloneURL, settingsURL));
+        } finally {
+            metricsService.recordSettingsLoad(metricsService.getRepositoryTag(cloneURL), System.nanoTime() - start);
+        }
+    }
 
-        File settingsFile = getSettingsFile(cloneURL, settingsURL);
-        return JSONService.readJSON(settingsFile, Settings.class);
+    private Settings loadSettings(SettingsKey key) throws IOException, IllegalURLException {
+        CachedSettings cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            if (System.nanoTime() - cached.validatedAt() < revalidateNanos) {
+                return cached.settings();
+            }
+            if (cached.isCurrent()) {
+                synchronized (cache) {
+                    // the settings may have been saved again while the file was checked
+                    cache.replace(key, cached, cached.revalidated());
+                }
+                return cached.settings();
+            }
+        }
+
+        File settingsFile = getSettingsFile(key.cloneURL(), key.settingsURL());
+        // the fingerprint is taken before reading, so a write during the read causes another read next time
+        long lastModified = settingsFile.lastModified();
+        long length = settingsFile.length();
+        Settings settings = JSONService.readJSON(settingsFile, Settings.class);
 
+        cacheSettings(key, new CachedSettings(settingsFile, lastModified, length, settings));
+        return settings;
+    }
+
+    private void cacheSettings(SettingsKey key, CachedSettings settings) {
+        synchronized (cache) {
+            cache.put(key, settings);
+
+            var iterator = cache.entrySet().iterator();
+            while (cache.size() > maxCachedSettings) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
     }
 
 }
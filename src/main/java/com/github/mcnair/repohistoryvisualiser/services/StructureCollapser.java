@@ -0,0 +1,143 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange.FileChangeType;
+import com.github.mcnair.repohistoryvisualiser.repository.Structure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces the changes within collapsed structures with a single change to the
+ * structure. The structure folders are held in a trie of path segments, so each
+ * change is matched by walking its own path once, and a folder only matches
+ * paths within it ({@code src/foo} matches {@code src/foo/a.txt} but not
+ * {@code src/foobar/a.txt}).
+ * <p>
+ * If collapsed structures are nested, the outermost structure is used as the
+ * inner structure is hidden within it. A rename into, out of or between
+ * collapsed structures is split into the deletion of the old path and the
+ * addition of the new path, and a rename within a single collapsed structure
+ * is a modification of the structure
+ */
+public class StructureCollapser {
+
+    private final Node root = new Node();
+
+    private final boolean empty;
+
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+
+        private Structure structure;
+
+    }
+
+    /**
+     * @param structures The collapsed structures
+     */
+    public StructureCollapser(Collection<Structure> structures) {
+        boolean empty = true;
+        for (Structure structure : structures) {
+            if (structure.folder == null) {
+                continue;
+            }
+
+            Node node = root;
+            for (String segment : structure.folder.split("/")) {
+                if (!segment.isEmpty()) {
+                    node = node.children.computeIfAbsent(segment, key -> new Node());
+                }
+            }
+            if (node.structure == null) {
+                node.structure = structure;
+            }
+            empty = false;
+        }
+        this.empty = empty;
+    }
+
+    /**
+     * Used to collapse the changes of a commit. The first change within each
+     * structure is kept and moved to the structure, any other changes within the
+     * structure are removed
+     *
+     * @param changes The changes of the commit
+     * @return The collapsed changes
+     */
+    public List<FileChange> collapse(List<FileChange> changes) {
+        if (empty) {
+            return changes;
+        }
+
+        List<FileChange> collapsed = new ArrayList<>(changes.size());
+        Set<Structure> seen = new HashSet<>();
+
+        for (FileChange change : changes) {
+            Structure structure = findStructure(change.getFile());
+            if (change.getType() == FileChangeType.R) {
+                Structure oldStructure = findStructure(change.getOldFile());
+                if (structure == null && oldStructure == null) {
+                    collapsed.add(change);
+                } else if (structure == oldStructure) {
+                    collapse(new FileChange(FileChangeType.M, change.getFile()), structure, collapsed, seen);
+                } else {
+                    collapse(new FileChange(FileChangeType.D, change.getOldFile()), oldStructure, collapsed, seen);
+                    collapse(new FileChange(FileChangeType.A, change.getFile()), structure, collapsed, seen);
+                }
+            } else {
+                collapse(change, structure, collapsed, seen);
+            }
+        }
+        return collapsed;
+    }
+
+    private void collapse(FileChange change, Structure structure, List<FileChange> collapsed, Set<Structure> seen) {
+        if (structure == null) {
+            collapsed.add(change);
+        } else if (seen.add(structure)) {
+            change.setFile(structure.folder + "/" + structure.label);
+            change.setCollapsed(true);
+            collapsed.add(change);
+        }
+    }
+
+    /**
+     * @return If there are no structures to collapse, in which case changes are
+     *         returned unchanged
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Gets the outermost structure containing a path
+     *
+     * @param path The path
+     * @return The structure, or null if the path is not within a structure
+     */
+    private Structure findStructure(String path) {
+        Node node = root;
+        int start = 0;
+        while (node.structure == null) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                // the final segment is a file name, which cannot be a structure folder
+                return null;
+            }
+            node = node.children.get(path.substring(start, end));
+            if (node == null) {
+                return null;
+            }
+            start = end + 1;
+        }
+        return node.structure;
+    }
+
+}
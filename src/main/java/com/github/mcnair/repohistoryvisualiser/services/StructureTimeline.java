@@ -0,0 +1,107 @@
+package com.github.mcnair.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.exception.IllegalStructureState;
+import com.github.mcnair.repohistoryvisualiser.repository.Structure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The collapsed structures of a repository compiled into a timeline of the
+ * commits at which each structure starts and ends, so the active structures can
+ * be tracked while walking commits without checking every structure at every
+ * commit.
+ * <p>
+ * A structure is active at the commits where {@link Structure#isActive(int)} is
+ * true, and is validated once when the timeline is created
+ */
+public class StructureTimeline {
+
+    private final List<Structure> structures = new ArrayList<>();
+
+    private final Map<Integer, List<Structure>> starting = new HashMap<>();
+
+    private final Map<Integer, List<Structure>> ending = new HashMap<>();
+
+    /**
+     * @param structures The structures configured for the repository, may be null
+     * @throws IllegalStructureState Thrown if a structure commit hash has not been resolved to a commit ID
+     */
+    public StructureTimeline(Collection<Structure> structures) {
+        if (structures == null) {
+            return;
+        }
+
+        for (Structure structure : structures) {
+            if ((structure.startCommitHash != null && structure.startCommitID == null) || (structure.endCommitHash != null && structure.endCommitID == null)) {
+                throw new IllegalStructureState(structure);
+            }
+            if (!structure.collapse) {
+                continue;
+            }
+
+            // a structure becomes active the commit before its start commit, see Structure#isActive
+            Integer start = (structure.startCommitID == null) ? null : structure.startCommitID - 1;
+            Integer end = structure.endCommitID;
+            if (start != null && end != null && start >= end) {
+                // the structure is never active
+                continue;
+            }
+
+            this.structures.add(structure);
+            if (start != null) {
+                starting.computeIfAbsent(start, key -> new ArrayList<>()).add(structure);
+            }
+            if (end != null) {
+                ending.computeIfAbsent(end, key -> new ArrayList<>()).add(structure);
+            }
+        }
+    }
+
+    /**
+     * Used to get the structures which are active at a commit
+     *
+     * @param commitID The commit ID
+     * @return The active structures
+     */
+    public Set<Structure> getActiveStructures(int commitID) {
+        Set<Structure> active = new LinkedHashSet<>();
+        for (Structure structure : structures) {
+            boolean hasStarted = structure.startCommitID == null || structure.startCommitID - 1 <= commitID;
+            boolean hasEnded = structure.endCommitID != null && structure.endCommitID <= commitID;
+            if (hasStarted && !hasEnded) {
+                active.add(structure);
+            }
+        }
+        return active;
+    }
+
+    /**
+     * @param commitID The commit ID
+     * @return The structures which become active at the commit
+     */
+    public List<Structure> getStartingStructures(int commitID) {
+        return starting.getOrDefault(commitID, List.of());
+    }
+
+    /**
+     * @param commitID The commit ID
+     * @return The structures which stop being active at the commit
+     */
+    public List<Structure> getEndingStructures(int commitID) {
+        return ending.getOrDefault(commitID, List.of());
+    }
+
+    /**
+     * @return If the timeline contains no collapsed structures
+     */
+    public boolean isEmpty() {
+        return structures.isEmpty();
+    }
+
+}
@@ -1,24 +1,57 @@
 package com.github.mcnair.repohistoryvisualiser.services;
 
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
 import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
 
 @Service
 @Slf4j
 public class URLService {
 
+    private static final String ETAG = "etag";
+
+    private static final String LAST_MODIFIED = "lastModified";
+
+    /**
+     * Shared so connections to the same host are reused between requests
+     */
+    private final HttpClient httpClient;
+
+    private final Duration timeout;
+
+    @Autowired
+    public URLService(AppProperties properties) {
+        this.timeout = Duration.ofSeconds(Math.max(1, properties.getHttpTimeoutSeconds()));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
 
     public String decodeURL(String url) throws IllegalURLException {
         try {
@@ -64,4 +97,75 @@ public class URLService {
         return (HttpURLConnection) url.openConnection();
     }
 
+    /**
+     * Used to fetch a document into a local copy. If the document has been
+     * fetched into the copy before, the request is made conditional on the
+     * validators returned with it, so an unchanged document is not transferred
+     * again
+     *
+     * @param urlStr The URL of the document, must be http or https
+     * @param copy   The file the document is kept in, its validators are kept in a
+     *               properties file alongside it
+     * @return The local copy of the document
+     * @throws IllegalURLException Thrown if the document cannot be fetched
+     */
+    public File fetchDocument(String urlStr, File copy) throws IllegalURLException {
+        File validatorsFile = new File(copy.getPath() + ".properties");
+        Properties validators = new Properties();
+        if (copy.exists() && validatorsFile.exists()) {
+            try (var in = new FileInputStream(validatorsFile)) {
+                validators.load(in);
+            } catch (IOException e) {
+                log.warn("Unable to read validators of {}, fetching it again", urlStr, e);
+                validators.clear();
+            }
+        }
+
+        Path temp = null;
+        try {
+            var request = HttpRequest.newBuilder(URI.create(urlStr)).timeout(timeout).GET();
+            if (validators.getProperty(ETAG) != null) {
+                request.header("If-None-Match", validators.getProperty(ETAG));
+            }
+            if (validators.getProperty(LAST_MODIFIED) != null) {
+                request.header("If-Modified-Since", validators.getProperty(LAST_MODIFIED));
+            }
+
+            Files.createDirectories(copy.getAbsoluteFile().getParentFile().toPath());
+            temp = Files.createTempFile(copy.getAbsoluteFile().getParentFile().toPath(), copy.getName(), ".tmp");
+            HttpResponse<Path> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofFile(temp));
+
+            if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED && copy.exists()) {
+                log.debug("{} has not been modified", urlStr);
+                return copy;
+            }
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                throw new IllegalURLException(urlStr);
+            }
+
+            Files.move(temp, copy.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Properties received = new Properties();
+            response.headers().firstValue("ETag").ifPresent(value -> received.setProperty(ETAG, value));
+            response.headers().firstValue("Last-Modified").ifPresent(value -> received.setProperty(LAST_MODIFIED, value));
+            try (var out = new FileOutputStream(validatorsFile)) {
+                received.store(out, urlStr);
+            }
+            return copy;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalURLException(urlStr, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalURLException(urlStr, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    log.debug("Unable to delete {}", temp, e);
+                }
+            }
+        }
+    }
+
 }
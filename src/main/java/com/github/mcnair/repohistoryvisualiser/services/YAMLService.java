@@ -1,15 +1,27 @@
 package com.github.mcnair.repohistoryvisualiser.services;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class YAMLService {
 
+    /**
+     * A mapper is thread-safe once configured, so a single mapper is shared to
+     * keep its deserializer caches between calls
+     */
+    private final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+
+    private final ConcurrentHashMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
     /**
      * Used to stream YAML data from a web-page into an object
      * @param url The url to stream data from
@@ -20,13 +32,39 @@ public class YAMLService {
      */
     public <T> T readYaml(URL url, Class<T> classType) throws IOException {
 
-        var mapper = createMapper();
-        return mapper.readValue(url, classType);
+        try (InputStream in = url.openStream()) {
+            return getReader(classType).readValue(in);
+        }
+
+    }
+
+    /**
+     * Used to stream YAML data from a file into an object
+     * @param file The file to stream data from
+     * @param classType The class type
+     * @param <T> The type of the returned object
+     * @return The object the data has been streamed into
+     * @throws IOException Thrown if errors occur while reading the YAML data
+     */
+    public <T> T readYaml(File file, Class<T> classType) throws IOException {
+
+        return getReader(classType).readValue(file);
+
+    }
 
+    /**
+     * @return The shared mapper, which must not be reconfigured
+     */
+    public ObjectMapper getMapper() {
+        return mapper;
     }
 
-    public ObjectMapper createMapper() {
-        return new ObjectMapper(new YAMLFactory());
+    /**
+     * @param classType The type to read
+     * @return The shared reader for the type
+     */
+    public ObjectReader getReader(Class<?> classType) {
+        return readers.computeIfAbsent(classType, mapper::readerFor);
     }
 
 }
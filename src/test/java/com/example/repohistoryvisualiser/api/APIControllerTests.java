@@ -6,11 +6,21 @@ import com.github.mcnair.repohistoryvisualiser.exception.IllegalBranchException;
 import com.github.mcnair.repohistoryvisualiser.exception.IllegalCloneException;
 import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
 import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
+import com.github.mcnair.repohistoryvisualiser.repository.Commit;
+import com.github.mcnair.repohistoryvisualiser.repository.CommitIndex;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.PrevisJob;
+import com.github.mcnair.repohistoryvisualiser.repository.PrevisJob.JobStatus;
+import com.github.mcnair.repohistoryvisualiser.repository.RepositoryMetadata;
+import com.github.mcnair.repohistoryvisualiser.services.CommitPageCacheService;
 import com.github.mcnair.repohistoryvisualiser.services.GitCloneService;
 import com.github.mcnair.repohistoryvisualiser.services.GitService;
+import com.github.mcnair.repohistoryvisualiser.services.JSONService;
+import com.github.mcnair.repohistoryvisualiser.services.PrevisJobService;
 import com.github.mcnair.repohistoryvisualiser.services.SettingsService;
 import com.github.mcnair.repohistoryvisualiser.services.URLService;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -21,8 +31,22 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBodyReturnValueHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @SpringBootTest
 @ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
@@ -41,11 +65,20 @@ public class APIControllerTests {
     @Mock
     private SettingsService settingsService;
 
+    @Mock
+    private CommitPageCacheService commitPageCacheService;
+
+    @Mock
+    private PrevisJobService previsJobService;
+
     private APIController controller;
 
+    private final CommitIndex index = new CommitIndex(null, "master", ObjectId.fromString("0123456789012345678901234567890123456789"), 2);
+
     @BeforeEach
-    public void beforeEach() {
-        controller = new APIController(gitCloneService, urlService, gitService, settingsService);
+    public void beforeEach() throws RepositoryTraverseException, IllegalBranchException {
+        controller = new APIController(gitCloneService, urlService, gitService, settingsService, new JSONService(), commitPageCacheService, previsJobService);
+        Mockito.lenient().when(gitService.getBranchIndex(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(index);
     }
 
     @AfterEach
@@ -61,53 +94,65 @@ public class APIControllerTests {
         Assertions.assertNotNull(controller);
     }
 
+    private PrevisJob createFinishedJob(JobStatus status) {
+        var job = new PrevisJob("id", "valid", "master", null);
+        job.setStatus(status);
+        return job;
+    }
+
     @Test
-    public void testPrevisInvalidURL() throws IllegalCloneException {
-        Mockito.when(gitCloneService.getUpToDateRepositoryOrClone(ArgumentMatchers.any())).thenThrow(new IllegalCloneException());
+    public void testPrevisFailedJob() {
+        var job = createFinishedJob(JobStatus.FAILED);
+        job.setError("Invalid repository clone URL");
+        Mockito.when(previsJobService.runJobAndWait("invalid", "master", null)).thenReturn(job);
 
-        var response = controller.prepareVisualisation("invalid", "master", null);
+        var response = controller.prepareVisualisation("invalid", "master", null, null);
 
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        Assertions.assertEquals("Invalid repository clone URL", response.getBody());
     }
 
     @Test
-    public void testPrevisTraverseException() throws RepositoryTraverseException, IllegalBranchException {
-        Mockito.when(
-                        gitService.getRepositoryMetadata(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
-                .thenThrow(new RepositoryTraverseException());
+    public void testPrevis() {
+        var job = createFinishedJob(JobStatus.COMPLETE);
+        var metadata = new RepositoryMetadata("valid", "master", 10, null, null, null);
+        job.setMetadata(metadata);
+        Mockito.when(previsJobService.runJobAndWait("valid", "master", "settingsurl")).thenReturn(job);
 
-        var response = controller.prepareVisualisation("valid", "master", null);
+        var response = controller.prepareVisualisation("valid", "master", "settingsurl", null);
 
-        Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertSame(metadata, response.getBody());
     }
 
     @Test
-    public void testPrevisIllegalBranch() throws RepositoryTraverseException, IllegalBranchException {
-        Mockito.when(
-                        gitService.getRepositoryMetadata(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
-                .thenThrow(new IllegalBranchException(""));
+    public void testAsyncPrevis() throws IllegalCloneException {
+        var job = new PrevisJob("id", "valid", "master", null);
+        Mockito.when(previsJobService.startJob("valid", "master", null)).thenReturn(job);
 
-        var response = controller.prepareVisualisation("valid", "master", null);
+        var response = controller.prepareVisualisation("valid", "master", null, true);
 
-        Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        Assertions.assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        Assertions.assertEquals(job, response.getBody());
+        Mockito.verify(gitCloneService, Mockito.never()).getUpToDateRepositoryOrClone(ArgumentMatchers.any(), ArgumentMatchers.any());
     }
 
     @Test
-    public void testPrevisIllegalSettings() throws IllegalURLException {
-        Mockito.when(
-                        settingsService.manageSettings(ArgumentMatchers.any()))
-                .thenThrow(new IllegalURLException(""));
+    public void testPrevisStatus() {
+        var job = new PrevisJob("id", "valid", "master", null);
+        Mockito.when(previsJobService.getJob("id")).thenReturn(job);
 
-        var response = controller.prepareVisualisation("valid", "master", "settingsurl");
+        var response = controller.previsStatus("id");
 
-        Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals(job, response.getBody());
     }
 
     @Test
-    public void testPrevis() {
-        var response = controller.prepareVisualisation("valid", "master", "settingsurl");
+    public void testPrevisStatusUnknownJob() {
+        var response = controller.previsStatus("unknown");
 
-        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
 
     @Test
@@ -116,7 +161,7 @@ public class APIControllerTests {
         Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
                 .thenThrow(new IllegalURLException(""));
 
-        var response = controller.commitData("invalid", "master", null, null, null);
+        var response = controller.commitData("invalid", "master", null, null, null, null, null, null, null, null, null);
 
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
@@ -127,9 +172,18 @@ public class APIControllerTests {
         Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
                 .thenReturn(null);
 
-        var response = controller.commitData("valid", "master", null, null, null);
+        var response = controller.commitData("valid", "master", null, null, null, null, null, null, null, null, null);
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void testCommitDataNegativeStartCommit() {
+
+        var response = controller.commitData("valid", "master", null, -1, null, null, null, null, null, null, null);
 
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        Mockito.verifyNoInteractions(gitCloneService);
     }
 
     @Test
@@ -139,10 +193,10 @@ public class APIControllerTests {
         Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
                 .thenReturn(git);
 
-        Mockito.when(gitService.loadCommitData(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
+        Mockito.when(commitPageCacheService.getCommitPage(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
                 .thenThrow(new RepositoryTraverseException());
 
-        var response = controller.commitData("valid", "master", null, null, null);
+        var response = controller.commitData("valid", "master", null, null, null, null, null, null, null, null, null);
 
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
@@ -154,10 +208,10 @@ public class APIControllerTests {
         Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
                 .thenReturn(git);
 
-        Mockito.when(gitService.loadCommitData(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
+        Mockito.when(gitService.getBranchIndex(ArgumentMatchers.any(), ArgumentMatchers.any()))
                 .thenThrow(new IllegalBranchException(""));
 
-        var response = controller.commitData("valid", "master", null, null, null);
+        var response = controller.commitData("valid", "master", null, null, null, null, null, null, null, null, null);
 
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
@@ -169,7 +223,7 @@ public class APIControllerTests {
         Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
                 .thenReturn(git);
 
-        var response = controller.commitData("valid", "master", null,null, null);
+        var response = controller.commitData("valid", "master", null,null, null, null, null, null, null, null, null);
 
         Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
     }
@@ -181,8 +235,279 @@ public class APIControllerTests {
         Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
                 .thenReturn(git);
 
-        var response = controller.commitData("valid", "master", "settings",null, null);
+        var response = controller.commitData("valid", "master", "settings",null, null, null, null, null, null, null, null);
+
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
+    @Test
+    public void testStreamCommitDataNoPrevis() throws IllegalURLException {
+
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(null);
+
+        var response = controller.streamCommitData("valid", "master", null, null, null, null, null, null, null, null);
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void testStreamCommitDataNegativeStartCommit() {
+
+        var response = controller.streamCommitData("valid", "master", null, -1, null, null, null, null, null, null);
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        Mockito.verifyNoInteractions(gitCloneService);
+    }
+
+    @Test
+    public void testStreamCommitDataIllegalBranch() throws RepositoryTraverseException, IllegalBranchException, IllegalURLException {
+
+        var git = Mockito.mock(Git.class);
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(git);
+
+        Mockito.when(gitService.getBranchIndex(ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenThrow(new IllegalBranchException(""));
+
+        var response = controller.streamCommitData("valid", "master", null, null, null, null, null, null, null, null);
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void testStreamCommitDataIsHandledAsStream() {
+        // Spring only streams the body if the declared return type names StreamingResponseBody
+        var method = Arrays.stream(APIController.class.getMethods()).filter(m -> m.getName().equals("streamCommitData")).findFirst().orElseThrow();
+
+        Assertions.assertTrue(new StreamingResponseBodyReturnValueHandler().supportsReturnType(new MethodParameter(method, -1)));
+    }
+
+    @Test
+    public void testStreamCommitData() throws IllegalURLException, RepositoryTraverseException, IOException {
+
+        var git = Mockito.mock(Git.class);
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(git);
+
+        Mockito.when(commitPageCacheService.getCachedPage(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
+                .thenReturn(null);
+
+        Mockito.doAnswer(invocation -> {
+            Consumer<Commit> consumer = invocation.getArgument(5);
+            consumer.accept(new Commit(1, new ArrayList<>(), "author", "hash0", 0));
+            consumer.accept(new Commit(2, new ArrayList<>(), "author", "hash1", 1));
+            return null;
+        }).when(gitService).streamCommitData(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+
+        var response = controller.streamCommitData("valid", "master", null, null, null, null, null, null, null, null);
+
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+
+        var out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        var lines = out.toString(StandardCharsets.UTF_8).split("\n");
+
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[0].contains("\"commitHash\":\"hash0\""));
+        Assertions.assertTrue(lines[1].contains("\"commitHash\":\"hash1\""));
+    }
+
+    @Test
+    public void testStreamCommitDataAbortsOnTraverseException() throws IllegalURLException, RepositoryTraverseException {
+
+        var git = Mockito.mock(Git.class);
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(git);
+
+        Mockito.when(commitPageCacheService.getCachedPage(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
+                .thenReturn(null);
+
+        Mockito.doAnswer(invocation -> {
+            Consumer<Commit> consumer = invocation.getArgument(5);
+            consumer.accept(new Commit(1, new ArrayList<>(), "author", "hash0", 0));
+            throw new RepositoryTraverseException();
+        }).when(gitService).streamCommitData(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+
+        var response = controller.streamCommitData("valid", "master", null, null, null, null, null, null, null, null);
 
         Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+
+        // the page must not appear complete, so the stream fails rather than ending early
+        Assertions.assertThrows(IOException.class, () -> response.getBody().writeTo(new ByteArrayOutputStream()));
+        Mockito.verify(commitPageCacheService, Mockito.never()).addPage(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void testStreamCachedCommitData() throws IllegalURLException, RepositoryTraverseException, IOException {
+
+        var git = Mockito.mock(Git.class);
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(git);
+
+        Mockito.when(commitPageCacheService.getCachedPage(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
+                .thenReturn(Map.of(
+                        1, new Commit(2, new ArrayList<>(), "author", "hash1", 1),
+                        0, new Commit(1, new ArrayList<>(), "author", "hash0", 0)
+                ));
+
+        var response = controller.streamCommitData("valid", "master", null, null, null, null, null, null, null, null);
+
+        var out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        var lines = out.toString(StandardCharsets.UTF_8).split("\n");
+
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[0].contains("\"commitHash\":\"hash0\""));
+        Assertions.assertTrue(lines[1].contains("\"commitHash\":\"hash1\""));
+        Mockito.verify(gitService, Mockito.never()).streamCommitData(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void testStreamCompactCommitData() throws IllegalURLException, RepositoryTraverseException, IOException {
+
+        var git = Mockito.mock(Git.class);
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(git);
+
+        Mockito.when(commitPageCacheService.getCachedPage(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
+                .thenReturn(Map.of(
+                        0, new Commit(1, List.of(new FileChange(FileChange.FileChangeType.A, "src/a.txt")), "author", "hash0", 0),
+                        1, new Commit(2, List.of(new FileChange(FileChange.FileChangeType.M, "src/a.txt")), "author", "hash1", 1)
+                ));
+
+        var response = controller.streamCommitData("valid", "master", null, null, null, null, true, null, null, null);
+
+        var out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+        var lines = out.toString(StandardCharsets.UTF_8).split("\n");
+
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[0].contains("\"changes\":[[\"A\",1]]"));
+        Assertions.assertTrue(lines[0].contains("\"paths\":[[-1,\"src\"],[0,\"a.txt\"]]"));
+        Assertions.assertTrue(lines[0].contains("\"authors\":[\"author\"]"));
+        // the second commit only refers to the entries of the first commit
+        Assertions.assertTrue(lines[1].contains("\"changes\":[[\"M\",1]]"));
+        Assertions.assertFalse(lines[1].contains("\"paths\""));
+        Assertions.assertFalse(lines[1].contains("\"authors\""));
+    }
+
+    @Test
+    public void testCommitChanges() throws IllegalURLException, RepositoryTraverseException {
+
+        var git = Mockito.mock(Git.class);
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(git);
+        var changes = List.of(new FileChange(FileChange.FileChangeType.A, "src/a.txt"), new FileChange(FileChange.FileChangeType.A, "src/b.txt"));
+        Mockito.when(gitService.getFullCommitChanges(ArgumentMatchers.eq(git), ArgumentMatchers.eq(index), ArgumentMatchers.any(), ArgumentMatchers.eq(1)))
+                .thenReturn(changes);
+
+        var response = controller.commitChanges("valid", "master", null, 1);
+
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals(changes, response.getBody());
+    }
+
+    @Test
+    public void testCommitChangesMissingCommit() throws IllegalURLException, RepositoryTraverseException {
+
+        var git = Mockito.mock(Git.class);
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(git);
+        Mockito.when(gitService.getFullCommitChanges(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenReturn(null);
+
+        var response = controller.commitChanges("valid", "master", null, 5);
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void testCommitDataCaching() throws IllegalURLException, RepositoryTraverseException {
+
+        var git = Mockito.mock(Git.class);
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(git);
+
+        var response = controller.commitData("valid", "master", null, null, null, null, null, null, null, null, null);
+        var eTag = response.getHeaders().getETag();
+
+        Assertions.assertNotNull(eTag);
+        // Tomcat only compresses responses with weak ETags
+        Assertions.assertTrue(eTag.startsWith("W/"));
+        Assertions.assertEquals("no-cache, public", response.getHeaders().getCacheControl());
+
+        // a matching request does not compute the page again
+        var notModified = controller.commitData("valid", "master", null, null, null, null, null, null, null, eTag, null);
+
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        Assertions.assertEquals(eTag, notModified.getHeaders().getETag());
+        Mockito.verify(commitPageCacheService, Mockito.times(1)).getCommitPage(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt());
+
+        // a different page or format has a different ETag
+        Assertions.assertNotEquals(eTag, controller.commitData("valid", "master", null, 50, null, null, null, null, null, eTag, null).getHeaders().getETag());
+        Assertions.assertNotEquals(eTag, controller.commitData("valid", "master", null, null, null, null, true, null, null, eTag, null).getHeaders().getETag());
+
+        // as does a page computed with different change options
+        Mockito.when(gitService.getChangeOptions()).thenReturn("renames=-1");
+        Assertions.assertNotEquals(eTag, controller.commitData("valid", "master", null, null, null, null, null, null, null, eTag, null).getHeaders().getETag());
+    }
+
+    @Test
+    public void testCommitDataNegotiatedFormat() throws IllegalURLException {
+
+        var git = Mockito.mock(Git.class);
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(git);
+
+        var json = controller.commitData("valid", "master", null, null, null, null, null, null, null, null, "*/*");
+        var cbor = controller.commitData("valid", "master", null, null, null, null, null, null, null, null, "application/cbor");
+        var preferred = controller.commitData("valid", "master", null, null, null, null, null, null, null, null, "application/json;q=0.5, application/cbor");
+
+        Assertions.assertEquals(MediaType.APPLICATION_JSON, json.getHeaders().getContentType());
+        Assertions.assertEquals(MediaType.APPLICATION_CBOR, cbor.getHeaders().getContentType());
+        Assertions.assertEquals(MediaType.APPLICATION_CBOR, preferred.getHeaders().getContentType());
+        // shared caches must not answer a CBOR request with a JSON page
+        Assertions.assertEquals(List.of(HttpHeaders.ACCEPT), json.getHeaders().getVary());
+        Assertions.assertNotEquals(json.getHeaders().getETag(), cbor.getHeaders().getETag());
+
+        var notModified = controller.commitData("valid", "master", null, null, null, null, null, null, null, json.getHeaders().getETag(), "application/cbor");
+        Assertions.assertEquals(HttpStatus.OK, notModified.getStatusCode());
+    }
+
+    @Test
+    public void testCommitDataPinnedTip() throws IllegalURLException {
+
+        var git = Mockito.mock(Git.class);
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(git);
+
+        Mockito.when(gitService.getPageVersion(ArgumentMatchers.any())).thenReturn("version");
+
+        var pinned = controller.commitData("valid", "master", null, null, null, null, null, index.getTip().name(), "version", null, null);
+        var moved = controller.commitData("valid", "master", null, null, null, null, null, "9876543210987654321098765432109876543210", "version", null, null);
+        var unversioned = controller.commitData("valid", "master", null, null, null, null, null, index.getTip().name(), null, null, null);
+        // the settings or change options have changed since the version was given out
+        var changed = controller.commitData("valid", "master", null, null, null, null, null, index.getTip().name(), "previous", null, null);
+
+        Assertions.assertEquals("max-age=31536000, public, immutable", pinned.getHeaders().getCacheControl());
+        Assertions.assertEquals("no-cache, public", moved.getHeaders().getCacheControl());
+        Assertions.assertEquals("no-cache, public", unversioned.getHeaders().getCacheControl());
+        Assertions.assertEquals("no-cache, public", changed.getHeaders().getCacheControl());
+    }
+
+    @Test
+    public void testStreamCommitDataNotModified() throws IllegalURLException {
+
+        var git = Mockito.mock(Git.class);
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any()))
+                .thenReturn(git);
+
+        var eTag = controller.streamCommitData("valid", "master", null, null, null, null, null, null, null, null).getHeaders().getETag();
+        // the weak prefix may have been removed by a proxy
+        var response = controller.streamCommitData("valid", "master", null, null, null, null, null, null, null, eTag.substring(2));
+
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        Assertions.assertNull(response.getBody());
     }
 }
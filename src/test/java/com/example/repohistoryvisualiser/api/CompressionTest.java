@@ -0,0 +1,89 @@
+package com.example.repohistoryvisualiser.api;
+
+import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.exception.IllegalBranchException;
+import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
+import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
+import com.github.mcnair.repohistoryvisualiser.repository.Commit;
+import com.github.mcnair.repohistoryvisualiser.repository.CommitIndex;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange.FileChangeType;
+import com.github.mcnair.repohistoryvisualiser.services.CommitPageCacheService;
+import com.github.mcnair.repohistoryvisualiser.services.GitCloneService;
+import com.github.mcnair.repohistoryvisualiser.services.GitService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Checks the commit pages served by Tomcat are compressed, which depends on the
+ * headers set by the controller as well as the server configuration
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "management.server.port=0")
+@ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
+public class CompressionTest {
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private GitCloneService gitCloneService;
+
+    @MockBean
+    private GitService gitService;
+
+    @MockBean
+    private CommitPageCacheService commitPageCacheService;
+
+    @BeforeEach
+    public void beforeEach() throws IllegalURLException, RepositoryTraverseException, IllegalBranchException {
+        Mockito.when(gitCloneService.getExistingRepositoryOrNull(ArgumentMatchers.any())).thenReturn(Mockito.mock(Git.class));
+        var index = new CommitIndex(null, "master", ObjectId.fromString("0123456789012345678901234567890123456789"), 100);
+        Mockito.when(gitService.getBranchIndex(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(index);
+
+        // a page large enough to be over the minimum compressed size
+        Map<Integer, Commit> page = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            page.put(i, new Commit(i, List.of(new FileChange(FileChangeType.M, "src/main/File" + i + ".java")), "author", "hash" + i, i));
+        }
+        Mockito.when(commitPageCacheService.getCommitPage(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
+                .thenReturn(page);
+    }
+
+    @Test
+    public void testCompressingCommitData() throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/commitdata?repo=https://github.com/booksaw/repo.git&branch=master"))
+                .header("Accept-Encoding", "gzip")
+                .build();
+
+        HttpResponse<InputStream> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+        Assertions.assertTrue(response.headers().firstValue("ETag").orElseThrow().startsWith("W/"));
+        try (var body = new GZIPInputStream(response.body())) {
+            Assertions.assertTrue(new String(body.readAllBytes(), StandardCharsets.UTF_8).contains("\"commitHash\":\"hash0\""));
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.example.repohistoryvisualiser.api;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.api.ResponseMetricsFilter;
+import com.github.mcnair.repohistoryvisualiser.services.GitCloneService;
+import com.github.mcnair.repohistoryvisualiser.services.MetricsService;
+import com.github.mcnair.repohistoryvisualiser.services.RepositoryPoolService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponseMetricsFilterTest {
+
+    private static final String CLONED = "https://github.com/booksaw/cloned.git";
+
+    private SimpleMeterRegistry registry;
+
+    private ResponseMetricsFilter filter;
+
+    @BeforeEach
+    public void beforeEach() {
+        var properties = Mockito.mock(AppProperties.class);
+        Mockito.when(properties.getMetricsMaxRepositories()).thenReturn(100);
+        var gitCloneService = Mockito.mock(GitCloneService.class);
+        Mockito.when(gitCloneService.isCloned(CLONED)).thenReturn(true);
+
+        registry = new SimpleMeterRegistry();
+        filter = new ResponseMetricsFilter(new MetricsService(registry, properties, Mockito.mock(RepositoryPoolService.class)), gitCloneService);
+    }
+
+    private void performRequest(String uri, String repo, String pattern) throws ServletException, IOException {
+        var request = new MockHttpServletRequest("GET", uri);
+        request.setParameter("repo", repo);
+        var chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                if (pattern != null) {
+                    req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+                }
+                resp.getOutputStream().write("body".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+    }
+
+    @Test
+    public void testTaggingClonedRepository() throws ServletException, IOException {
+        performRequest("/api/commitdata", CLONED, "/api/commitdata");
+
+        assertThat(registry.get(MetricsService.RESPONSE_BYTES).tag("repository", "github.com/booksaw/cloned").tag("endpoint", "/api/commitdata").summary().totalAmount()).isEqualTo(4);
+    }
+
+    @Test
+    public void testTaggingUnknownRepositoryAndEndpoint() throws ServletException, IOException {
+        performRequest("/api/commitdata", "https://github.com/booksaw/missing.git", "/api/commitdata");
+        performRequest("/api/random/path/1", CLONED, null);
+
+        assertThat(registry.get(MetricsService.RESPONSE_BYTES).tag("repository", "unknown").tag("endpoint", "/api/commitdata").summary().count()).isEqualTo(1);
+        assertThat(registry.get(MetricsService.RESPONSE_BYTES).tag("endpoint", "unmatched").summary().count()).isEqualTo(1);
+        assertThat(registry.find(MetricsService.RESPONSE_BYTES).tag("endpoint", "/api/random/path/1").summary()).isNull();
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.example.repohistoryvisualiser.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.exception.IllegalBranchException;
+import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
+import com.github.mcnair.repohistoryvisualiser.repository.Commit;
+import com.github.mcnair.repohistoryvisualiser.services.GitService;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+@Slf4j
+@SpringBootTest
+@ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
+public class WireFormatTest {
+
+    @Autowired
+    private HttpMessageConverters converters;
+
+    @Autowired
+    private GitService gitService;
+
+    @Test
+    public void testNegotiatingWireFormats() {
+        var converterList = converters.getConverters();
+        var json = converterList.stream().filter(converter -> converter instanceof MappingJackson2HttpMessageConverter).findFirst();
+        var cbor = converterList.stream().filter(converter -> converter instanceof MappingJackson2CborHttpMessageConverter).findFirst();
+
+        Assertions.assertTrue(json.isPresent());
+        Assertions.assertTrue(cbor.isPresent());
+        // JSON remains the default for clients which accept any format
+        Assertions.assertTrue(converterList.indexOf(json.get()) < converterList.indexOf(cbor.get()));
+    }
+
+    /**
+     * Compares the size of a page of this repository's own history in JSON and
+     * CBOR. The encode and decode times are measured by WireFormatBenchmark in
+     * the benchmark profile
+     */
+    @Test
+    public void testComparingWireFormats(@TempDir File clone) throws GitAPIException, IOException, RepositoryTraverseException, IllegalBranchException {
+        Assumptions.assumeTrue(new File(".git").exists(), "The comparison requires the project to be a git repository");
+
+        try (var git = Git.cloneRepository().setURI(new File(".").toURI().toString()).setDirectory(clone).setNoCheckout(true).call()) {
+            var branch = git.getRepository().getBranch();
+            var index = gitService.getBranchIndex(git, branch);
+            Map<Integer, Commit> page = gitService.loadCommitData(git, index, null, 0, Math.min(500, index.getSize()));
+
+            var jsonMapper = new ObjectMapper();
+            var cborMapper = new CBORMapper();
+
+            byte[] json = jsonMapper.writeValueAsBytes(page);
+            byte[] cbor = cborMapper.writeValueAsBytes(page);
+
+            // the browser decodes the page into plain objects, so the formats are compared as trees
+            Assertions.assertEquals(jsonMapper.readTree(json), cborMapper.readTree(cbor));
+            Assertions.assertTrue(cbor.length < json.length, "CBOR page was " + cbor.length + " bytes, JSON page was " + json.length + " bytes");
+
+            log.info("Page of {} commits: JSON {} bytes, CBOR {} bytes", page.size(), json.length, cbor.length);
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
+import com.github.mcnair.repohistoryvisualiser.repository.CommitIndex;
+import com.github.mcnair.repohistoryvisualiser.services.CommitIndexService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@SpringBootTest
+@ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
+public class CommitIndexServiceTest {
+
+    @Autowired
+    private CommitIndexService commitIndexService;
+
+    @TempDir
+    File directory;
+
+    private Git git;
+
+    @BeforeEach
+    public void beforeEach() throws GitAPIException {
+        git = Git.init().setDirectory(directory).setInitialBranch("master").call();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        git.close();
+    }
+
+    private List<ObjectId> createCommits(int count) throws GitAPIException {
+        List<ObjectId> commits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RevCommit commit = git.commit().setMessage("commit " + i).setAllowEmpty(true).call();
+            commits.add(commit.getId());
+        }
+        return commits;
+    }
+
+    private CommitIndex getIndex() throws IOException, RepositoryTraverseException {
+        var repo = git.getRepository();
+        return commitIndexService.getUpToDateIndex(repo, "master", repo.resolve("master"));
+    }
+
+    @Test
+    public void testBuildingIndex() throws GitAPIException, IOException, RepositoryTraverseException {
+        var commits = createCommits(5);
+
+        var index = getIndex();
+
+        Assertions.assertEquals(5, index.getSize());
+        Assertions.assertEquals(commits.get(4), index.getTip());
+        Assertions.assertTrue(index.getFile().exists());
+        Assertions.assertEquals(commits, commitIndexService.readCommitIds(index, 0, 5));
+    }
+
+    @Test
+    public void testReadingPage() throws GitAPIException, IOException, RepositoryTraverseException {
+        var commits = createCommits(5);
+
+        var index = getIndex();
+
+        Assertions.assertEquals(commits.subList(3, 5), commitIndexService.readCommitIds(index, 3, 50));
+        Assertions.assertTrue(commitIndexService.readCommitIds(index, 5, 50).isEmpty());
+    }
+
+    @Test
+    public void testExtendingIndex() throws GitAPIException, IOException, RepositoryTraverseException {
+        var commits = createCommits(3);
+        getIndex();
+
+        commits.addAll(createCommits(2));
+        var index = getIndex();
+
+        Assertions.assertEquals(5, index.getSize());
+        Assertions.assertEquals(commits.get(4), index.getTip());
+        Assertions.assertEquals(commits, commitIndexService.readCommitIds(index, 0, 5));
+    }
+
+    @Test
+    public void testRebuildingRewrittenBranch() throws GitAPIException, IOException, RepositoryTraverseException {
+        var commits = createCommits(3);
+        getIndex();
+
+        git.reset().setMode(ResetCommand.ResetType.SOFT).setRef(commits.get(1).getName()).call();
+        var rewritten = createCommits(1);
+        var index = getIndex();
+
+        Assertions.assertEquals(List.of(commits.get(0), commits.get(1), rewritten.get(0)), commitIndexService.readCommitIds(index, 0, 5));
+    }
+
+    @Test
+    public void testRebuildingInvalidIndex() throws GitAPIException, IOException, RepositoryTraverseException {
+        var commits = createCommits(3);
+        var index = getIndex();
+
+        Files.write(index.getFile().toPath(), new byte[]{1, 2, 3});
+        index = getIndex();
+
+        Assertions.assertEquals(commits, commitIndexService.readCommitIds(index, 0, 3));
+    }
+
+    @Test
+    public void testFindingOrdinals() throws GitAPIException, IOException, RepositoryTraverseException {
+        var commits = createCommits(4);
+        var index = getIndex();
+        var missing = ObjectId.fromString("0123456789012345678901234567890123456789");
+
+        var ordinals = commitIndexService.findOrdinals(index, List.of(commits.get(3), commits.get(1), missing));
+
+        Assertions.assertEquals(Map.of(commits.get(3), 3, commits.get(1), 1), ordinals);
+        Assertions.assertEquals(Map.of(commits.get(0), 0), commitIndexService.findOrdinals(index, List.of(commits.get(0), missing)));
+    }
+
+}
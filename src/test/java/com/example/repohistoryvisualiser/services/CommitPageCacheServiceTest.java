@@ -0,0 +1,115 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
+import com.github.mcnair.repohistoryvisualiser.repository.Commit;
+import com.github.mcnair.repohistoryvisualiser.repository.CommitIndex;
+import com.github.mcnair.repohistoryvisualiser.services.CommitPageCacheService;
+import com.github.mcnair.repohistoryvisualiser.services.GitService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@SpringBootTest
+@ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
+@ExtendWith(MockitoExtension.class)
+public class CommitPageCacheServiceTest {
+
+    @Mock
+    private GitService gitService;
+
+    @Mock
+    private Git git;
+
+    @Autowired
+    private AppProperties properties;
+
+    private CommitPageCacheService commitPageCacheService;
+
+    private CommitIndex index;
+
+    @BeforeEach
+    public void beforeEach() {
+        commitPageCacheService = new CommitPageCacheService(gitService, properties);
+        index = new CommitIndex(new File("index"), "master", ObjectId.zeroId(), 200);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        commitPageCacheService.shutdown();
+    }
+
+    private Map<Integer, Commit> createPage(int start) {
+        return Map.of(start, new Commit(0, new ArrayList<>(), "author", "hash" + start, start));
+    }
+
+    @Test
+    public void testCachingPage() throws RepositoryTraverseException {
+        Mockito.when(gitService.loadCommitData(git, index, List.of(), 0, 50)).thenReturn(createPage(0));
+
+        var first = commitPageCacheService.getCommitPage("clone", null, git, index, List.of(), 0, 50);
+        var second = commitPageCacheService.getCommitPage("clone", null, git, index, List.of(), 0, 50);
+
+        Assertions.assertEquals(createPage(0), first);
+        Assertions.assertSame(first, second);
+        Mockito.verify(gitService, Mockito.times(1)).loadCommitData(git, index, List.of(), 0, 50);
+    }
+
+    @Test
+    public void testPrefetchingPages() throws RepositoryTraverseException {
+        Mockito.when(gitService.loadCommitData(ArgumentMatchers.eq(git), ArgumentMatchers.eq(index), ArgumentMatchers.any(), ArgumentMatchers.anyInt(), ArgumentMatchers.eq(50)))
+                .thenAnswer(invocation -> createPage(invocation.getArgument(3)));
+
+        commitPageCacheService.prefetch("clone", null, git, index, List.of(), 0, 50, 2);
+
+        Assertions.assertEquals(createPage(50), commitPageCacheService.getCachedPage("clone", null, index, 50, 50));
+        Assertions.assertEquals(createPage(100), commitPageCacheService.getCachedPage("clone", null, index, 100, 50));
+        Assertions.assertNull(commitPageCacheService.getCachedPage("clone", null, index, 150, 50));
+    }
+
+    @Test
+    public void testPrefetchingStopsAtEndOfBranch() {
+        commitPageCacheService.prefetch("clone", null, git, index, List.of(), 150, 50, 2);
+
+        Mockito.verifyNoInteractions(gitService);
+    }
+
+    @Test
+    public void testInvalidatingPages() throws RepositoryTraverseException {
+        commitPageCacheService.addPage("clone", null, index, 0, 50, createPage(0));
+        commitPageCacheService.addPage("other", null, index, 0, 50, createPage(0));
+
+        commitPageCacheService.invalidate("clone");
+
+        Assertions.assertNull(commitPageCacheService.getCachedPage("clone", null, index, 0, 50));
+        Assertions.assertEquals(createPage(0), commitPageCacheService.getCachedPage("other", null, index, 0, 50));
+    }
+
+    @Test
+    public void testFailedPageIsNotCached() throws RepositoryTraverseException {
+        Mockito.when(gitService.loadCommitData(git, index, List.of(), 0, 50))
+                .thenThrow(new RepositoryTraverseException())
+                .thenReturn(createPage(0));
+
+        Assertions.assertThrows(RepositoryTraverseException.class, () -> commitPageCacheService.getCommitPage("clone", null, git, index, List.of(), 0, 50));
+        Assertions.assertEquals(createPage(0), commitPageCacheService.getCommitPage("clone", null, git, index, List.of(), 0, 50));
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange.FileChangeType;
+import com.github.mcnair.repohistoryvisualiser.services.CommitSummariser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CommitSummariserTest {
+
+    private FileChange createSummary(FileChangeType type, String file, int count) {
+        var change = new FileChange(type, file);
+        change.setCollapsed(true);
+        change.setCount(count);
+        return change;
+    }
+
+    private List<FileChange> createChanges(FileChangeType type, String... files) {
+        List<FileChange> changes = new ArrayList<>();
+        for (String file : files) {
+            changes.add(new FileChange(type, file));
+        }
+        return changes;
+    }
+
+    @Test
+    public void testKeepingChangesWithinThreshold() {
+        var changes = createChanges(FileChangeType.A, "a/1.txt", "b/1.txt");
+
+        Assertions.assertSame(changes, new CommitSummariser(2).summarise(changes));
+        Assertions.assertSame(changes, new CommitSummariser(0).summarise(changes));
+    }
+
+    @Test
+    public void testSummarisingDeepestFolders() {
+        var changes = createChanges(FileChangeType.A, "vendor/a/1.txt", "vendor/a/2.txt", "vendor/b/1.txt", "vendor/b/c/1.txt", "src/1.txt");
+
+        var summarised = new CommitSummariser(3).summarise(changes);
+
+        Assertions.assertEquals(List.of(
+                createSummary(FileChangeType.A, "vendor/a/summary", 2),
+                createSummary(FileChangeType.A, "vendor/b/summary", 2),
+                createSummary(FileChangeType.A, "src/summary", 1)
+        ), summarised);
+    }
+
+    @Test
+    public void testSummarisingMixedChanges() {
+        var changes = createChanges(FileChangeType.D, "lib/1.txt", "lib/2.txt");
+        changes.add(new FileChange(FileChangeType.A, "lib/3.txt"));
+        changes.add(new FileChange("old/4.txt", "moved/4.txt"));
+
+        var summarised = new CommitSummariser(2).summarise(changes);
+
+        Assertions.assertEquals(List.of(
+                createSummary(FileChangeType.M, "lib/summary", 3),
+                createSummary(FileChangeType.M, "moved/summary", 1)
+        ), summarised);
+    }
+
+    @Test
+    public void testSummarisingIntoRoot() {
+        var changes = createChanges(FileChangeType.M, "a/1.txt", "b/1.txt", "2.txt");
+        var collapsed = createSummary(FileChangeType.M, "c/summary", 5);
+        changes.add(collapsed);
+
+        var summarised = new CommitSummariser(1).summarise(changes);
+
+        Assertions.assertEquals(List.of(createSummary(FileChangeType.M, "summary", 8)), summarised);
+    }
+
+    @Test
+    public void testSummarisingLargeCommit() {
+        List<FileChange> changes = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            changes.add(new FileChange(FileChangeType.A, "vendor/module" + (i % 500) + "/src/File" + i + ".java"));
+        }
+
+        var summarised = new CommitSummariser(1000).summarise(changes);
+
+        // the source folder of each module is the deepest folder within the threshold
+        Assertions.assertEquals(500, summarised.size());
+        Assertions.assertEquals("vendor/module0/src/summary", summarised.get(0).getFile());
+        Assertions.assertEquals(50_000, summarised.stream().mapToInt(FileChange::getCount).sum());
+    }
+
+}
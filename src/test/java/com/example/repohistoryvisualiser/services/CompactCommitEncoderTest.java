@@ -0,0 +1,80 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.repository.Commit;
+import com.github.mcnair.repohistoryvisualiser.repository.CompactCommit;
+import com.github.mcnair.repohistoryvisualiser.repository.CompactCommit.CompactFileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.CompactCommit.PathSegment;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange.FileChangeType;
+import com.github.mcnair.repohistoryvisualiser.services.CompactCommitEncoder;
+import com.github.mcnair.repohistoryvisualiser.services.JSONService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompactCommitEncoderTest {
+
+    @Test
+    public void testEncodingCommits() {
+        var encoder = new CompactCommitEncoder();
+        var collapsed = new FileChange(FileChangeType.M, "src/lib/library");
+        collapsed.setCollapsed(true);
+
+        var first = encoder.encode(new Commit(1, List.of(new FileChange(FileChangeType.A, "src/main/A.java"), collapsed), "alice", "hash0", 0));
+        var second = encoder.encode(new Commit(2, List.of(new FileChange(FileChangeType.M, "src/main/B.java"), new FileChange(FileChangeType.D, "src/main/A.java")), "bob", "hash1", 1));
+        var third = encoder.encode(new Commit(3, List.of(new FileChange(FileChangeType.M, "README.md")), "alice", "hash2", 2));
+
+        Assertions.assertEquals(new CompactCommit(1, List.of(new CompactFileChange(FileChangeType.A, 2, null), new CompactFileChange(FileChangeType.M, 4, true)), 0, "hash0", 0,
+                List.of(new PathSegment(-1, "src"), new PathSegment(0, "main"), new PathSegment(1, "A.java"), new PathSegment(0, "lib"), new PathSegment(3, "library")),
+                List.of("alice")), first);
+
+        // only the entries which have not been encoded before are added
+        Assertions.assertEquals(List.of(new PathSegment(1, "B.java")), second.getPaths());
+        Assertions.assertEquals(List.of("bob"), second.getAuthors());
+        Assertions.assertEquals(List.of(new CompactFileChange(FileChangeType.M, 5, null), new CompactFileChange(FileChangeType.D, 2, null)), second.getChanges());
+        Assertions.assertEquals(1, second.getAuthor());
+
+        Assertions.assertEquals(List.of(new PathSegment(-1, "README.md")), third.getPaths());
+        Assertions.assertTrue(third.getAuthors().isEmpty());
+        Assertions.assertEquals(0, third.getAuthor());
+    }
+
+    @Test
+    public void testEncodingRenames() throws Exception {
+        var encoder = new CompactCommitEncoder();
+
+        encoder.encode(new Commit(1, List.of(new FileChange(FileChangeType.A, "src/A.java")), "alice", "hash0", 0));
+        var renamed = encoder.encode(new Commit(2, List.of(new FileChange("src/A.java", "src/B.java")), "alice", "hash1", 1));
+
+        Assertions.assertEquals(List.of(new PathSegment(0, "B.java")), renamed.getPaths());
+        Assertions.assertEquals(List.of(new CompactFileChange(FileChangeType.R, 2, null, 1, null)), renamed.getChanges());
+        Assertions.assertEquals("[[\"R\",2,1]]", new JSONService().getMapper().writeValueAsString(renamed.getChanges()));
+    }
+
+    @Test
+    public void testReducingPageSize() throws Exception {
+        var mapper = new JSONService().getMapper();
+        var encoder = new CompactCommitEncoder();
+
+        List<Commit> commits = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            List<FileChange> changes = new ArrayList<>();
+            for (int j = 0; j < 20; j++) {
+                changes.add(new FileChange(FileChangeType.M, "src/main/java/com/github/mcnair/repohistoryvisualiser/services/Service" + (j % 10) + ".java"));
+            }
+            commits.add(new Commit(i, changes, "author" + (i % 3), "0123456789012345678901234567890123456789", i));
+        }
+
+        long plain = 0;
+        long compact = 0;
+        for (Commit commit : commits) {
+            plain += mapper.writeValueAsBytes(commit).length;
+            compact += mapper.writeValueAsBytes(encoder.encode(commit)).length;
+        }
+
+        Assertions.assertTrue(compact * 5 < plain, "Compact page was " + compact + " bytes, plain page was " + plain + " bytes");
+    }
+
+}
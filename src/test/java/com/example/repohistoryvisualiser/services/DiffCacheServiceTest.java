@@ -0,0 +1,175 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange.FileChangeType;
+import com.github.mcnair.repohistoryvisualiser.services.DiffCacheService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+@SpringBootTest
+@ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
+public class DiffCacheServiceTest {
+
+    private static final ObjectId COMMIT_1 = ObjectId.fromString("1111111111111111111111111111111111111111");
+
+    private static final ObjectId COMMIT_2 = ObjectId.fromString("2222222222222222222222222222222222222222");
+
+    private static final List<FileChange> CHANGES_1 = List.of(
+            new FileChange(FileChangeType.A, "src/a.txt"),
+            new FileChange(FileChangeType.M, "src/b.txt")
+    );
+
+    private static final List<FileChange> CHANGES_2 = List.of(
+            new FileChange(FileChangeType.D, "src/a.txt"),
+            new FileChange(FileChangeType.A, "src/c.txt"),
+            new FileChange("src/b.txt", "src/d.txt")
+    );
+
+    @TempDir
+    File directory;
+
+    private Git git;
+
+    private DiffCacheService diffCacheService;
+
+    @BeforeEach
+    public void beforeEach() throws GitAPIException {
+        git = Git.init().setDirectory(directory).call();
+        diffCacheService = new DiffCacheService(new AppProperties());
+    }
+
+    @AfterEach
+    public void afterEach() {
+        git.close();
+    }
+
+    @Test
+    public void testReadingUncachedCommit() {
+        Assertions.assertNull(diffCacheService.getChanges(git.getRepository(), COMMIT_1));
+    }
+
+    @Test
+    public void testReadingCachedCommit() {
+        diffCacheService.storeChanges(git.getRepository(), COMMIT_1, CHANGES_1);
+        diffCacheService.storeChanges(git.getRepository(), COMMIT_2, CHANGES_2);
+
+        Assertions.assertEquals(CHANGES_1, diffCacheService.getChanges(git.getRepository(), COMMIT_1));
+        Assertions.assertEquals(CHANGES_2, diffCacheService.getChanges(git.getRepository(), COMMIT_2));
+    }
+
+    @Test
+    public void testReadingPersistedCache() {
+        diffCacheService.storeChanges(git.getRepository(), COMMIT_1, CHANGES_1);
+        diffCacheService.storeChanges(git.getRepository(), COMMIT_2, CHANGES_2);
+
+        var reopened = new DiffCacheService(new AppProperties());
+
+        Assertions.assertEquals(CHANGES_1, reopened.getChanges(git.getRepository(), COMMIT_1));
+        Assertions.assertEquals(CHANGES_2, reopened.getChanges(git.getRepository(), COMMIT_2));
+    }
+
+    @Test
+    public void testDiscardingCorruptRecords() throws IOException {
+        diffCacheService.storeChanges(git.getRepository(), COMMIT_1, CHANGES_1);
+        diffCacheService.storeChanges(git.getRepository(), COMMIT_2, CHANGES_2);
+
+        // corrupting the final byte of the last record
+        var changesFile = new File(diffCacheService.getCacheFolder(git.getRepository()), "changes.dat").toPath();
+        byte[] bytes = Files.readAllBytes(changesFile);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(changesFile, bytes);
+
+        var reopened = new DiffCacheService(new AppProperties());
+
+        Assertions.assertEquals(CHANGES_1, reopened.getChanges(git.getRepository(), COMMIT_1));
+        Assertions.assertNull(reopened.getChanges(git.getRepository(), COMMIT_2));
+
+        reopened.storeChanges(git.getRepository(), COMMIT_2, CHANGES_2);
+        Assertions.assertEquals(CHANGES_2, new DiffCacheService(new AppProperties()).getChanges(git.getRepository(), COMMIT_2));
+    }
+
+    @Test
+    public void testDiscardingRecordsWithOverflowingCounts() throws IOException {
+        diffCacheService.storeChanges(git.getRepository(), COMMIT_1, CHANGES_1);
+        diffCacheService.storeChanges(git.getRepository(), COMMIT_2, CHANGES_2);
+
+        // the change count directly follows the commit ID of the record
+        var changesFile = new File(diffCacheService.getCacheFolder(git.getRepository()), "changes.dat").toPath();
+        byte[] bytes = Files.readAllBytes(changesFile);
+        byte[] commit = new byte[Constants.OBJECT_ID_LENGTH];
+        COMMIT_2.copyRawTo(commit, 0);
+        int position = indexOf(bytes, commit) + commit.length;
+        ByteBuffer.wrap(bytes).putInt(position, Integer.MAX_VALUE);
+        Files.write(changesFile, bytes);
+
+        var reopened = new DiffCacheService(new AppProperties());
+
+        Assertions.assertEquals(CHANGES_1, reopened.getChanges(git.getRepository(), COMMIT_1));
+        Assertions.assertNull(reopened.getChanges(git.getRepository(), COMMIT_2));
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target) {
+        for (int i = 0; i + target.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + target.length, target, 0, target.length)) {
+                return i;
+            }
+        }
+        throw new AssertionError("Target not found");
+    }
+
+    @Test
+    public void testRebuildingInvalidCache() throws IOException {
+        diffCacheService.storeChanges(git.getRepository(), COMMIT_1, CHANGES_1);
+
+        var pathsFile = new File(diffCacheService.getCacheFolder(git.getRepository()), "paths.dat").toPath();
+        Files.write(pathsFile, new byte[]{1, 2, 3}, StandardOpenOption.TRUNCATE_EXISTING);
+
+        var reopened = new DiffCacheService(new AppProperties());
+
+        Assertions.assertNull(reopened.getChanges(git.getRepository(), COMMIT_1));
+        reopened.storeChanges(git.getRepository(), COMMIT_1, CHANGES_1);
+        Assertions.assertEquals(CHANGES_1, reopened.getChanges(git.getRepository(), COMMIT_1));
+    }
+
+    @Test
+    public void testRebuild() throws IOException {
+        diffCacheService.storeChanges(git.getRepository(), COMMIT_1, CHANGES_1);
+
+        diffCacheService.rebuild(git.getRepository());
+
+        Assertions.assertNull(diffCacheService.getChanges(git.getRepository(), COMMIT_1));
+    }
+
+    @Test
+    public void testRebuildingWithChangedRenameOptions() {
+        diffCacheService.storeChanges(git.getRepository(), COMMIT_1, CHANGES_1);
+
+        var properties = Mockito.mock(AppProperties.class);
+        Mockito.when(properties.isRenameDetection()).thenReturn(true);
+        Mockito.when(properties.getRenameLimit()).thenReturn(100);
+        var reopened = new DiffCacheService(properties);
+
+        Assertions.assertNull(reopened.getChanges(git.getRepository(), COMMIT_1));
+    }
+
+}
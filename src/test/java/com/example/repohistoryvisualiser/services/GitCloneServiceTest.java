@@ -6,6 +6,8 @@ import com.github.mcnair.repohistoryvisualiser.exception.IllegalCloneException;
 import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
 import com.github.mcnair.repohistoryvisualiser.services.GitCloneService;
 import com.github.mcnair.repohistoryvisualiser.services.GitService;
+import com.github.mcnair.repohistoryvisualiser.services.MetricsService;
+import com.github.mcnair.repohistoryvisualiser.services.RepositoryMaintenanceService;
 import jakarta.annotation.Resource;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
@@ -25,6 +27,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ContextConfiguration;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -39,6 +44,12 @@ public class GitCloneServiceTest {
     @Mock
     private GitService gitService;
 
+    @Mock
+    private RepositoryMaintenanceService repositoryMaintenanceService;
+
+    @Mock
+    private MetricsService metricsService;
+
     @Autowired
     private AppProperties properties;
 
@@ -46,7 +57,7 @@ public class GitCloneServiceTest {
 
     @BeforeEach
     public void beforeEach() {
-        gitCloneService = new GitCloneService(gitService, properties);
+        gitCloneService = new GitCloneService(gitService, repositoryMaintenanceService, metricsService, properties);
     }
 
     @AfterEach
@@ -95,7 +106,7 @@ public class GitCloneServiceTest {
         Mockito.doThrow(new IOException()).when(gitService).getLocalRepository(ArgumentMatchers.any());
 
         Assertions.assertThrows(IllegalCloneException.class, () -> {
-            gitCloneService.getUpToDateRepositoryOrClone("test");
+            gitCloneService.getUpToDateRepositoryOrClone("test", "master");
         });
     }
 
@@ -103,7 +114,7 @@ public class GitCloneServiceTest {
     public void testGetUpToDateRepositoryOrCloneExistingRepo() throws IOException, IllegalCloneException {
         Mockito.doReturn(git).when(gitService).getLocalRepository(ArgumentMatchers.any());
 
-        var gitRepo = gitCloneService.getUpToDateRepositoryOrClone("https://github.com");
+        var gitRepo = gitCloneService.getUpToDateRepositoryOrClone("https://github.com", "master");
 
         Assertions.assertEquals(gitRepo, git);
 
@@ -112,9 +123,9 @@ public class GitCloneServiceTest {
     @Test
     public void testGetUpToDateRepositoryOrCloneCloneRepo() throws IOException, IllegalCloneException, GitAPIException {
         Mockito.doReturn(null).when(gitService).getLocalRepository(ArgumentMatchers.any());
-        Mockito.doReturn(git).when(gitService).cloneRepositoryToDirectory(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyBoolean());
+        Mockito.doReturn(git).when(gitService).cloneRepositoryToDirectory(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyBoolean(), ArgumentMatchers.any());
 
-        var gitRepo = gitCloneService.getUpToDateRepositoryOrClone("https://github.com.git");
+        var gitRepo = gitCloneService.getUpToDateRepositoryOrClone("https://github.com.git", "master");
 
         Assertions.assertEquals(gitRepo, git);
     }
@@ -126,7 +137,8 @@ public class GitCloneServiceTest {
                 .cloneRepositoryToDirectory(
                         ArgumentMatchers.any(),
                         ArgumentMatchers.any(),
-                        ArgumentMatchers.anyBoolean()
+                        ArgumentMatchers.anyBoolean(),
+                        ArgumentMatchers.any()
                 );
 
         Assertions.assertThrows(IllegalCloneException.class, () -> {
@@ -135,4 +147,96 @@ public class GitCloneServiceTest {
 
     }
 
+    @Test
+    public void testConcurrentClonesShareResult() throws Exception {
+        Mockito.doReturn(null).when(gitService).getLocalRepository(ArgumentMatchers.any());
+
+        var waiter = new FutureTask<>(() -> gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/repo.git", "master"));
+        Mockito.doAnswer(invocation -> {
+            // the second caller is started while the clone is running and must wait for it
+            var thread = new Thread(waiter);
+            thread.start();
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            return git;
+        }).when(gitService).cloneRepositoryToDirectory(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyBoolean(), ArgumentMatchers.any());
+
+        var first = gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/repo", "master");
+        var second = waiter.get(5, TimeUnit.SECONDS);
+
+        Assertions.assertSame(git, first);
+        Assertions.assertSame(git, second);
+        Mockito.verify(gitService, Mockito.times(1)).cloneRepositoryToDirectory(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyBoolean(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void testConcurrentClonesShareFailure() throws Exception {
+        Mockito.doReturn(null).when(gitService).getLocalRepository(ArgumentMatchers.any());
+
+        var waiter = new FutureTask<>(() -> gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/repo", "master"));
+        Mockito.doAnswer(invocation -> {
+            var thread = new Thread(waiter);
+            thread.start();
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            throw new TransportException("");
+        }).when(gitService).cloneRepositoryToDirectory(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyBoolean(), ArgumentMatchers.any());
+
+        Assertions.assertThrows(IllegalCloneException.class, () -> gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/repo", "master"));
+        var exception = Assertions.assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(IllegalCloneException.class, exception.getCause());
+    }
+
+    @Test
+    public void testFetchingIsRateLimited() throws IOException, IllegalCloneException, GitAPIException {
+        Mockito.doReturn(git).when(gitService).getLocalRepository(ArgumentMatchers.any());
+        Mockito.doReturn(true).when(gitService).hasLocalBranch(git, "master");
+
+        gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/fetch", "master");
+        gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/fetch", "master");
+        gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/fetch", "develop");
+
+        Mockito.verify(gitService, Mockito.times(1)).fetchBranch(ArgumentMatchers.eq(git), ArgumentMatchers.eq("master"), ArgumentMatchers.any());
+        Mockito.verify(gitService, Mockito.times(1)).fetchBranch(ArgumentMatchers.eq(git), ArgumentMatchers.eq("develop"), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void testFetchingMissingBranchAfterClone() throws IOException, IllegalCloneException, GitAPIException {
+        Mockito.doReturn(null).when(gitService).getLocalRepository(ArgumentMatchers.any());
+        Mockito.doReturn(git).when(gitService).cloneRepositoryToDirectory(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyBoolean(), ArgumentMatchers.any());
+        Mockito.doReturn(true).when(gitService).hasLocalBranch(git, "master");
+
+        gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/clone", "master");
+        gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/clone", "develop");
+
+        Mockito.verify(gitService, Mockito.never()).fetchBranch(ArgumentMatchers.eq(git), ArgumentMatchers.eq("master"), ArgumentMatchers.any());
+        Mockito.verify(gitService, Mockito.times(1)).fetchBranch(ArgumentMatchers.eq(git), ArgumentMatchers.eq("develop"), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void testMaintenanceScheduledAfterClone() throws IOException, IllegalCloneException, GitAPIException {
+        Mockito.doReturn(null).when(gitService).getLocalRepository(ArgumentMatchers.any());
+        Mockito.doReturn(git).when(gitService).cloneRepositoryToDirectory(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyBoolean(), ArgumentMatchers.any());
+        Mockito.doReturn(true).when(gitService).hasLocalBranch(git, "master");
+
+        gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/maintain", "master");
+
+        Mockito.verify(repositoryMaintenanceService).scheduleMaintenance(git);
+    }
+
+    @Test
+    public void testMaintenanceScheduledAfterFetchMovesBranch() throws IOException, IllegalCloneException, GitAPIException {
+        Mockito.doReturn(git).when(gitService).getLocalRepository(ArgumentMatchers.any());
+        Mockito.doReturn(false).when(gitService).fetchBranch(ArgumentMatchers.eq(git), ArgumentMatchers.eq("master"), ArgumentMatchers.any());
+        Mockito.doReturn(true).when(gitService).fetchBranch(ArgumentMatchers.eq(git), ArgumentMatchers.eq("develop"), ArgumentMatchers.any());
+
+        gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/maintain", "master");
+        Mockito.verify(repositoryMaintenanceService, Mockito.never()).scheduleMaintenance(git);
+
+        gitCloneService.getUpToDateRepositoryOrClone("https://github.com/test/maintain", "develop");
+        Mockito.verify(repositoryMaintenanceService).scheduleMaintenance(git);
+    }
+
 }
@@ -8,18 +8,24 @@ import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
 import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
 import com.github.mcnair.repohistoryvisualiser.repository.Commit;
 import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.Milestone;
 import com.github.mcnair.repohistoryvisualiser.repository.RepositoryMetadata;
+import com.github.mcnair.repohistoryvisualiser.repository.Settings;
 import com.github.mcnair.repohistoryvisualiser.repository.Structure;
 import com.github.mcnair.repohistoryvisualiser.services.*;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
 import org.hibernate.validator.internal.IgnoreForbiddenApisErrors;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -29,7 +35,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ContextConfiguration;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +56,9 @@ public class GitServiceTest {
     @Autowired
     private GitCloneService gitCloneService;
 
+    @Autowired
+    private MetricsService metricsService;
+
     @Test
     public void testGettingFileChangeA() {
         var changeType = GitService.getFileChangeType(DiffEntry.ChangeType.ADD);
@@ -66,6 +77,12 @@ public class GitServiceTest {
         Assertions.assertEquals(changeType, FileChange.FileChangeType.D);
     }
 
+    @Test
+    public void testGettingFileChangeR() {
+        var changeType = GitService.getFileChangeType(DiffEntry.ChangeType.RENAME);
+        Assertions.assertEquals(changeType, FileChange.FileChangeType.R);
+    }
+
     @Test
     public void testGettingFileChangeNull() {
         var changeType = GitService.getFileChangeType(null);
@@ -75,7 +92,7 @@ public class GitServiceTest {
     @Test
     @Disabled("Disabled as test cannot run on GitHub actions")
     public void testLoadCommitData() throws IOException, RepositoryTraverseException, IllegalBranchException, GitAPIException, IllegalCloneException {
-        var git = gitCloneService.getUpToDateRepositoryOrClone("https://github.com/booksaw/betterteams");
+        var git = gitCloneService.getUpToDateRepositoryOrClone("https://github.com/booksaw/betterteams", "master");
 
         List<Structure> structures = new ArrayList<>();
         Structure s1 = new Structure();
@@ -122,11 +139,339 @@ public class GitServiceTest {
         });
     }
 
+    @Test
+    public void testLoadCommitDataLocalRepository(@TempDir File directory) throws GitAPIException, IOException, RepositoryTraverseException, IllegalBranchException {
+        try (var localGit = Git.init().setDirectory(directory).setInitialBranch("master").call()) {
+            Files.writeString(directory.toPath().resolve("a.txt"), "a");
+            localGit.add().addFilepattern(".").call();
+            var first = localGit.commit().setMessage("first").setAuthor("author", "author@example.com").call();
+
+            Files.writeString(directory.toPath().resolve("a.txt"), "b");
+            Files.writeString(directory.toPath().resolve("b.txt"), "b");
+            localGit.add().addFilepattern(".").call();
+            localGit.commit().setMessage("second").setAuthor("author", "author@example.com").call();
+
+            Map<Integer, Commit> result = gitService.loadCommitData("https://github.com", localGit, "master", null, 0, 5);
+
+            Assertions.assertEquals(2, result.size());
+            Assertions.assertEquals(first.getId().getName(), result.get(0).getCommitHash());
+            Assertions.assertEquals("author", result.get(0).getAuthor());
+            Assertions.assertEquals(List.of(new FileChange(FileChange.FileChangeType.A, "a.txt")), result.get(0).getChanges());
+            Assertions.assertEquals(List.of(
+                    new FileChange(FileChange.FileChangeType.M, "a.txt"),
+                    new FileChange(FileChange.FileChangeType.A, "b.txt")
+            ), result.get(1).getChanges());
+
+            Map<Integer, Commit> page = gitService.loadCommitData("https://github.com", localGit, "master", null, 1, 5);
+            Assertions.assertEquals(1, page.size());
+            Assertions.assertEquals(1, page.get(1).getCommitId());
+        }
+    }
+
+    @Test
+    public void testLoadCommitDataDetectsRenames(@TempDir File directory) throws GitAPIException, IOException, RepositoryTraverseException, IllegalBranchException {
+        try (var localGit = Git.init().setDirectory(directory).setInitialBranch("master").call()) {
+            String content = "line 1\nline 2\nline 3\nline 4\nline 5\nline 6\nline 7\nline 8\n";
+            Files.writeString(directory.toPath().resolve("a.txt"), content);
+            Files.writeString(directory.toPath().resolve("b.txt"), content.replace("line", "entry"));
+            localGit.add().addFilepattern(".").call();
+            localGit.commit().setMessage("first").call();
+
+            // a.txt is moved without changes, b.txt is moved with a single line changed
+            Files.createDirectory(directory.toPath().resolve("moved"));
+            Files.move(directory.toPath().resolve("a.txt"), directory.toPath().resolve("moved/a.txt"));
+            Files.delete(directory.toPath().resolve("b.txt"));
+            Files.writeString(directory.toPath().resolve("c.txt"), content.replace("line", "entry").replace("entry 8", "changed"));
+            Files.writeString(directory.toPath().resolve("d.txt"), "new file");
+            localGit.add().addFilepattern(".").setUpdate(true).call();
+            localGit.add().addFilepattern(".").call();
+            localGit.commit().setMessage("second").call();
+
+            Map<Integer, Commit> result = gitService.loadCommitData("https://github.com", localGit, "master", null, 0, 5);
+
+            var changes = result.get(1).getChanges();
+            Assertions.assertEquals(3, changes.size());
+            Assertions.assertTrue(changes.containsAll(List.of(
+                    new FileChange("a.txt", "moved/a.txt"),
+                    new FileChange("b.txt", "c.txt"),
+                    new FileChange(FileChange.FileChangeType.A, "d.txt")
+            )));
+
+            // the renames are read back from the diff cache
+            Assertions.assertEquals(changes, gitService.loadCommitData("https://github.com", localGit, "master", null, 1, 1).get(1).getChanges());
+        }
+    }
+
+    @Test
+    public void testGettingChangesWithExactRenames(@TempDir File directory) throws GitAPIException, IOException {
+        try (var localGit = Git.init().setDirectory(directory).setInitialBranch("master").call()) {
+            Files.writeString(directory.toPath().resolve("a.txt"), "unchanged");
+            Files.writeString(directory.toPath().resolve("b.txt"), "changed");
+            localGit.add().addFilepattern(".").call();
+            var first = localGit.commit().setMessage("first").call();
+
+            Files.move(directory.toPath().resolve("a.txt"), directory.toPath().resolve("c.txt"));
+            Files.delete(directory.toPath().resolve("b.txt"));
+            Files.writeString(directory.toPath().resolve("d.txt"), "changed again");
+            localGit.add().addFilepattern(".").setUpdate(true).call();
+            localGit.add().addFilepattern(".").call();
+            var second = localGit.commit().setMessage("second").call();
+
+            List<DiffEntry> diffs;
+            try (var df = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+                df.setRepository(localGit.getRepository());
+                diffs = df.scan(first.getTree(), second.getTree());
+            }
+
+            // only the file with the same contents is paired
+            var changes = GitService.getChangesWithExactRenames(diffs);
+            Assertions.assertEquals(3, changes.size());
+            Assertions.assertTrue(changes.containsAll(List.of(
+                    new FileChange("a.txt", "c.txt"),
+                    new FileChange(FileChange.FileChangeType.D, "b.txt"),
+                    new FileChange(FileChange.FileChangeType.A, "d.txt")
+            )));
+        }
+    }
+
+    @Test
+    public void testLoadCommitDataWithRenameTimeout(@TempDir File directory) throws GitAPIException, IOException, RepositoryTraverseException, IllegalBranchException {
+        var properties = Mockito.mock(AppProperties.class);
+        Mockito.when(properties.isRenameDetection()).thenReturn(true);
+        Mockito.when(properties.getRenameTimeoutMillis()).thenReturn(1);
+        var diffCacheService = Mockito.mock(DiffCacheService.class);
+        Mockito.when(diffCacheService.getChanges(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(null);
+        var timingOutService = new GitService(new CommitIndexService(), diffCacheService, new RepositoryPoolService(new AppProperties()), metricsService, properties);
+
+        try (var localGit = Git.init().setDirectory(directory).setInitialBranch("master").call()) {
+            Files.writeString(directory.toPath().resolve("unchanged.txt"), "unchanged");
+            String content = "line\n".repeat(200);
+            for (int i = 0; i < 300; i++) {
+                Files.writeString(directory.toPath().resolve("old" + i + ".txt"), content + i);
+            }
+            localGit.add().addFilepattern(".").call();
+            localGit.commit().setMessage("first").call();
+
+            // far too many files with changes to be compared within the time budget
+            Files.move(directory.toPath().resolve("unchanged.txt"), directory.toPath().resolve("moved.txt"));
+            for (int i = 0; i < 300; i++) {
+                Files.delete(directory.toPath().resolve("old" + i + ".txt"));
+                Files.writeString(directory.toPath().resolve("new" + i + ".txt"), content + "changed " + i);
+            }
+            localGit.add().addFilepattern(".").setUpdate(true).call();
+            localGit.add().addFilepattern(".").call();
+            localGit.commit().setMessage("second").call();
+
+            var index = timingOutService.getBranchIndex(localGit, "master");
+            var changes = timingOutService.loadCommitData(localGit, index, null, 1, 1).get(1).getChanges();
+
+            // the exact rename is still found, the others are reported as added and deleted
+            Assertions.assertEquals(601, changes.size());
+            Assertions.assertTrue(changes.contains(new FileChange("unchanged.txt", "moved.txt")));
+            Assertions.assertEquals(1, changes.stream().filter(change -> change.getType() == FileChange.FileChangeType.R).count());
+
+            // the changes are not cached, so the renames can be found next time
+            Mockito.verify(diffCacheService, Mockito.never()).storeChanges(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any());
+        } finally {
+            timingOutService.shutdown();
+        }
+    }
+
+    @Test
+    public void testLoadCommitDataSummarisesLargeCommits(@TempDir File directory) throws GitAPIException, IOException, RepositoryTraverseException, IllegalBranchException {
+        var properties = Mockito.mock(AppProperties.class);
+        Mockito.when(properties.getCommitSummaryThreshold()).thenReturn(1);
+        var summarisingService = new GitService(new CommitIndexService(), new DiffCacheService(new AppProperties()), new RepositoryPoolService(new AppProperties()), metricsService, properties);
+
+        try (var localGit = Git.init().setDirectory(directory).setInitialBranch("master").call()) {
+            Files.createDirectories(directory.toPath().resolve("vendor/lib"));
+            Files.writeString(directory.toPath().resolve("vendor/lib/a.txt"), "a");
+            Files.writeString(directory.toPath().resolve("vendor/lib/b.txt"), "b");
+            Files.writeString(directory.toPath().resolve("vendor/c.txt"), "c");
+            localGit.add().addFilepattern(".").call();
+            localGit.commit().setMessage("vendor drop").call();
+
+            var index = summarisingService.getBranchIndex(localGit, "master");
+            var commit = summarisingService.loadCommitData(localGit, index, null, 0, 1).get(0);
+
+            var summary = new FileChange(FileChange.FileChangeType.A, "vendor/summary");
+            summary.setCollapsed(true);
+            summary.setCount(3);
+            Assertions.assertEquals(List.of(summary), commit.getChanges());
+            Assertions.assertTrue(commit.getSummarised());
+
+            Assertions.assertEquals(3, summarisingService.getFullCommitChanges(localGit, index, null, 0).size());
+            Assertions.assertNull(summarisingService.getFullCommitChanges(localGit, index, null, 1));
+        } finally {
+            summarisingService.shutdown();
+        }
+    }
+
+    @Test
+    public void testLoadCommitDataSummarisesExpandedStructures(@TempDir File directory) throws GitAPIException, IOException, RepositoryTraverseException, IllegalBranchException {
+        var properties = Mockito.mock(AppProperties.class);
+        Mockito.when(properties.getCommitSummaryThreshold()).thenReturn(2);
+        var summarisingService = new GitService(new CommitIndexService(), new DiffCacheService(new AppProperties()), new RepositoryPoolService(new AppProperties()), metricsService, properties);
+
+        try (var localGit = Git.init().setDirectory(directory).setInitialBranch("master").call()) {
+            Files.createDirectories(directory.toPath().resolve("lib"));
+            Files.writeString(directory.toPath().resolve("lib/a.txt"), "a");
+            Files.writeString(directory.toPath().resolve("lib/b.txt"), "b");
+            Files.writeString(directory.toPath().resolve("lib/c.txt"), "c");
+            localGit.add().addFilepattern(".").call();
+            localGit.commit().setMessage("first").call();
+
+            Files.writeString(directory.toPath().resolve("d.txt"), "d");
+            localGit.add().addFilepattern(".").call();
+            var second = localGit.commit().setMessage("second").call();
+
+            Structure structure = new Structure();
+            structure.label = "library";
+            structure.folder = "lib";
+            structure.collapse = true;
+            structure.endCommitID = 1;
+            structure.endCommitHash = second.getName();
+
+            var index = summarisingService.getBranchIndex(localGit, "master");
+            var commit = summarisingService.loadCommitData(localGit, index, List.of(structure), 1, 1).get(1);
+
+            // the single change is within the threshold, but not with the files of the expanded structure
+            Assertions.assertTrue(commit.getSummarised());
+            Assertions.assertEquals(4, commit.getChanges().stream().mapToInt(FileChange::getCount).sum());
+        } finally {
+            summarisingService.shutdown();
+        }
+    }
+
+    @Test
+    public void testLoadCommitDataKeepsCommitOrder(@TempDir File directory) throws GitAPIException, IOException, RepositoryTraverseException, IllegalBranchException {
+        try (var localGit = Git.init().setDirectory(directory).setInitialBranch("master").call()) {
+            List<String> hashes = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                Files.writeString(directory.toPath().resolve("file" + i + ".txt"), "content");
+                localGit.add().addFilepattern(".").call();
+                hashes.add(localGit.commit().setMessage("commit " + i).call().getId().getName());
+            }
+
+            Map<Integer, Commit> result = gitService.loadCommitData("https://github.com", localGit, "master", null, 5, 30);
+
+            Assertions.assertEquals(30, result.size());
+            for (int i = 5; i < 35; i++) {
+                Assertions.assertEquals(hashes.get(i), result.get(i).getCommitHash());
+                Assertions.assertEquals(List.of(new FileChange(FileChange.FileChangeType.A, "file" + i + ".txt")), result.get(i).getChanges());
+            }
+        }
+    }
+
+    @Test
+    public void testGettingRepositoryMetadataLocalRepository(@TempDir File directory) throws GitAPIException, RepositoryTraverseException, IllegalBranchException {
+        try (var localGit = Git.init().setDirectory(directory).setInitialBranch("master").call()) {
+            var first = localGit.commit().setMessage("first").setAllowEmpty(true).call();
+            var second = localGit.commit().setMessage("second").setAllowEmpty(true).call();
+            localGit.commit().setMessage("third").setAllowEmpty(true).call();
+
+            var settings = new Settings();
+            settings.milestones = new ArrayList<>();
+            var milestone = new Milestone();
+            milestone.commitHash = second.getId().getName();
+            var missingMilestone = new Milestone();
+            missingMilestone.commitHash = "missing";
+            settings.milestones.add(milestone);
+            settings.milestones.add(missingMilestone);
+
+            settings.structures = new ArrayList<>();
+            var structure = new Structure();
+            structure.startCommitHash = first.getId().getName();
+            structure.endCommitHash = second.getId().getName();
+            var missingStructure = new Structure();
+            missingStructure.startCommitHash = "0123456789012345678901234567890123456789";
+            settings.structures.add(structure);
+            settings.structures.add(missingStructure);
+
+            RepositoryMetadata result = gitService.getRepositoryMetadata("https://github.com", "master", localGit, settings);
+
+            Assertions.assertEquals(3, result.totalCommits);
+            Assertions.assertEquals(gitService.getPageVersion(settings.structures), result.version);
+            Assertions.assertEquals(List.of(milestone), settings.milestones);
+            Assertions.assertEquals(2, milestone.commitID);
+            Assertions.assertEquals(List.of(structure), settings.structures);
+            Assertions.assertEquals(1, structure.startCommitID);
+            Assertions.assertEquals(2, structure.endCommitID);
+        }
+    }
+
+    @Test
+    public void testGettingPageVersion() {
+        var structure = new Structure();
+        structure.label = "library";
+        structure.folder = "lib";
+        structure.collapse = true;
+
+        String version = gitService.getPageVersion(List.of(structure));
+
+        Assertions.assertEquals(version, gitService.getPageVersion(List.of(structure)));
+        Assertions.assertEquals(gitService.getPageVersion(null), gitService.getPageVersion(List.of()));
+        Assertions.assertNotEquals(version, gitService.getPageVersion(List.of()));
+
+        // resolving the commit of a structure changes the pages computed with it
+        structure.endCommitID = 5;
+        Assertions.assertNotEquals(version, gitService.getPageVersion(List.of(structure)));
+
+        // as do different change options
+        var properties = Mockito.mock(AppProperties.class);
+        Mockito.when(properties.getCommitSummaryThreshold()).thenReturn(5);
+        var summarisingService = new GitService(new CommitIndexService(), new DiffCacheService(new AppProperties()), new RepositoryPoolService(new AppProperties()), metricsService, properties);
+        try {
+            Assertions.assertNotEquals(gitService.getPageVersion(List.of()), summarisingService.getPageVersion(List.of()));
+        } finally {
+            summarisingService.shutdown();
+        }
+    }
+
+    @Test
+    public void testFetchingBranch(@TempDir File origin, @TempDir File clone) throws GitAPIException, IOException, RepositoryTraverseException, IllegalBranchException {
+        try (var originGit = Git.init().setDirectory(origin).setInitialBranch("master").call()) {
+            originGit.commit().setMessage("first").setAllowEmpty(true).call();
+
+            try (var cloneGit = Git.cloneRepository().setURI(origin.toURI().toString()).setDirectory(clone).setNoCheckout(true).call()) {
+                Assertions.assertEquals(1, gitService.getBranchIndex(cloneGit, "master").getSize());
+
+                originGit.commit().setMessage("second").setAllowEmpty(true).call();
+                var tip = originGit.commit().setMessage("third").setAllowEmpty(true).call();
+
+                gitService.fetchBranch(cloneGit, "master", NullProgressMonitor.INSTANCE);
+
+                Assertions.assertEquals(tip.getId(), cloneGit.getRepository().resolve("master"));
+                var index = gitService.getBranchIndex(cloneGit, "master");
+                Assertions.assertEquals(3, index.getSize());
+                Assertions.assertEquals(tip.getId(), index.getTip());
+            }
+        }
+    }
+
+    @Test
+    public void testFetchingNewBranch(@TempDir File origin, @TempDir File clone) throws GitAPIException, IOException {
+        try (var originGit = Git.init().setDirectory(origin).setInitialBranch("master").call()) {
+            originGit.commit().setMessage("first").setAllowEmpty(true).call();
+
+            try (var cloneGit = Git.cloneRepository().setURI(origin.toURI().toString()).setDirectory(clone).setNoCheckout(true).call()) {
+                originGit.checkout().setCreateBranch(true).setName("develop").call();
+                var tip = originGit.commit().setMessage("second").setAllowEmpty(true).call();
+
+                Assertions.assertFalse(gitService.hasLocalBranch(cloneGit, "develop"));
+                gitService.fetchBranch(cloneGit, "develop", NullProgressMonitor.INSTANCE);
+
+                Assertions.assertTrue(gitService.hasLocalBranch(cloneGit, "develop"));
+                Assertions.assertEquals(tip.getId(), cloneGit.getRepository().resolve("develop"));
+            }
+        }
+    }
+
     @Disabled("Disabled as test cannot run on GitHub actions")
     @Test
     public void testGettingRepositoryMetadata() throws IllegalCloneException, IllegalURLException, RepositoryTraverseException, IllegalBranchException {
-        var git = gitCloneService.getUpToDateRepositoryOrClone("https://github.com/booksaw/PirateDucks");
-        SettingsService settingsService = new SettingsService(new YAMLService(), new GitCloneService(new GitService(), new AppProperties()), new JSONService());
+        var git = gitCloneService.getUpToDateRepositoryOrClone("https://github.com/booksaw/PirateDucks", "master");
+        SettingsService settingsService = new SettingsService(new YAMLService(), new GitCloneService(new GitService(new CommitIndexService(), new DiffCacheService(new AppProperties()), new RepositoryPoolService(new AppProperties()), metricsService, new AppProperties()), new RepositoryMaintenanceService(new AppProperties()), metricsService, new AppProperties()), new JSONService(), new URLService(new AppProperties()), metricsService, new AppProperties());
         var settings = settingsService.manageSettings("https://raw.githubusercontent.com/booksaw/repo-history-visualiser/master/exampleFiles/PirateDucksSettings.yaml");
 
         RepositoryMetadata result = gitService.getRepositoryMetadata("https://github.com", "main", git, settings);
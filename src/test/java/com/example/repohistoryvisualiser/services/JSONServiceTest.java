@@ -1,83 +1,56 @@
 package com.example.repohistoryvisualiser.services;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.repository.Milestone;
+import com.github.mcnair.repohistoryvisualiser.repository.Settings;
 import com.github.mcnair.repohistoryvisualiser.services.JSONService;
-import lombok.Data;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentMatchers;
-import org.mockito.Mock;
-import org.mockito.Mockito;
-import org.mockito.Spy;
-import org.mockito.junit.jupiter.MockitoExtension;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ContextConfiguration;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
+import java.util.List;
 
 @SpringBootTest
 @ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
-@ExtendWith(MockitoExtension.class)
 public class JSONServiceTest {
 
     @Autowired
-    @Spy
     private JSONService jsonService;
 
-    @Mock
-    private ObjectMapper mapper;
-
     @Test
-    public void testReadingJSON() throws IOException {
-        @Data
-        class TypeClass {
-            public final String name;
-        }
-
-        File file = new File("testfile");
-        var typeClass = new TypeClass("test");
-
-        Mockito.doReturn(typeClass).when(mapper).readValue((File) ArgumentMatchers.any(), (Class<Object>) ArgumentMatchers.any());
-        Mockito.doReturn(mapper).when(jsonService).createMapper();
-
-        TypeClass createdClass = jsonService.readJSON(file, TypeClass.class);
-
-        Assertions.assertEquals(createdClass, typeClass);
-
-        Mockito.reset(mapper);
-        Mockito.reset(jsonService);
+    public void testWritingAndReadingJSON(@TempDir File folder) throws IOException {
+        var milestone = new Milestone();
+        milestone.commitHash = "hash";
+        milestone.milestone = "release";
+        var settings = new Settings();
+        settings.milestones = List.of(milestone);
+
+        File file = new File(folder, "settings.json");
+        jsonService.writeJSON(file, settings);
+        Settings read = jsonService.readJSON(file, Settings.class);
+
+        Assertions.assertEquals(1, read.milestones.size());
+        Assertions.assertEquals("hash", read.milestones.get(0).commitHash);
+        Assertions.assertEquals("release", read.milestones.get(0).milestone);
+        Assertions.assertNull(read.structures);
     }
 
     @Test
-    public void testWritingJSON() throws IOException {
-        @Data
-        class TypeClass {
-            public final String name;
-        }
-
-        File file = new File("testfile");
-
-        Mockito.doReturn(mapper).when(jsonService).createMapper();
-
-        jsonService.writeJSON(file, TypeClass.class);
-
-        Assertions.assertNotNull(file);
-
-        Mockito.reset(mapper);
-        Mockito.reset(jsonService);
+    public void testReadingMissingJSON(@TempDir File folder) {
+        Assertions.assertThrows(IOException.class, () -> jsonService.readJSON(new File(folder, "missing.json"), Settings.class));
     }
 
     @Test
-    public void testCreatingMapper() {
-
-        var mapper = jsonService.createMapper();
-
-        Assertions.assertNotNull(mapper);
+    public void testSharingMapper() {
+        Assertions.assertNotNull(jsonService.getMapper());
+        Assertions.assertSame(jsonService.getMapper(), jsonService.getMapper());
+        Assertions.assertSame(jsonService.getReader(Settings.class), jsonService.getReader(Settings.class));
+        Assertions.assertSame(jsonService.getWriter(Settings.class), jsonService.getWriter(Settings.class));
     }
 
 }
@@ -0,0 +1,109 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.repository.RepositoryPoolStatistics;
+import com.github.mcnair.repohistoryvisualiser.services.GitCloneService;
+import com.github.mcnair.repohistoryvisualiser.services.MetricsService;
+import com.github.mcnair.repohistoryvisualiser.services.RepositoryPoolService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
+public class MetricsServiceTest {
+
+    @Autowired
+    private AppProperties properties;
+
+    @Autowired
+    private GitCloneService gitCloneService;
+
+    private SimpleMeterRegistry registry;
+
+    private RepositoryPoolService repositoryPoolService;
+
+    private MetricsService metricsService;
+
+    @BeforeEach
+    public void beforeEach() {
+        registry = new SimpleMeterRegistry();
+        repositoryPoolService = Mockito.mock(RepositoryPoolService.class);
+        metricsService = new MetricsService(registry, properties, repositoryPoolService);
+    }
+
+    @Test
+    public void testRepositoryTagOfCloneURL() {
+        assertThat(metricsService.getRepositoryTag("https://github.com/booksaw/PirateDucks.git")).isEqualTo("github.com/booksaw/PirateDucks");
+        assertThat(metricsService.getRepositoryTag("https://github.com/booksaw/PirateDucks")).isEqualTo("github.com/booksaw/PirateDucks");
+        assertThat(metricsService.getRepositoryTag("not a url")).isEqualTo("unknown");
+        assertThat(metricsService.getRepositoryTag((String) null)).isEqualTo("unknown");
+    }
+
+    @Test
+    public void testRepositoryTagOfCloneMatchesCloneURL() throws Exception {
+        String cloneURL = "file:///tmp/repositories/example.git";
+        File folder = gitCloneService.getCloneFolder(cloneURL);
+
+        Repository repo = Mockito.mock(Repository.class);
+        Mockito.when(repo.getWorkTree()).thenReturn(folder);
+
+        assertThat(metricsService.getRepositoryTag(repo)).isEqualTo("tmp/repositories/example");
+        assertThat(metricsService.getRepositoryTag(repo)).isEqualTo(metricsService.getRepositoryTag(cloneURL));
+    }
+
+    @Test
+    public void testRecordingDiff() {
+        metricsService.recordDiff("github.com/a/b", false, TimeUnit.MILLISECONDS.toNanos(5), 3);
+        metricsService.recordDiff("github.com/a/b", true, TimeUnit.MILLISECONDS.toNanos(1), 7);
+
+        assertThat(registry.get(MetricsService.DIFF).tag("repository", "github.com/a/b").tag("cached", "false").timer().count()).isEqualTo(1);
+        assertThat(registry.get(MetricsService.DIFF).tag("cached", "true").timer().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(1);
+        assertThat(registry.get(MetricsService.DIFF_CHANGES).tag("repository", "github.com/a/b").summary().totalAmount()).isEqualTo(10);
+    }
+
+    @Test
+    public void testRecordingRepositoryPool() {
+        Mockito.when(repositoryPoolService.getStatistics()).thenReturn(new RepositoryPoolStatistics(2, 5, 3, 1));
+
+        assertThat(registry.get(MetricsService.POOL_OPEN).gauge().value()).isEqualTo(2);
+        assertThat(registry.get(MetricsService.POOL_HITS).functionCounter().count()).isEqualTo(5);
+        assertThat(registry.get(MetricsService.POOL_MISSES).functionCounter().count()).isEqualTo(3);
+        assertThat(registry.get(MetricsService.POOL_EVICTIONS).functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLimitingRepositoryTags() {
+        var limitedProperties = Mockito.mock(AppProperties.class);
+        Mockito.when(limitedProperties.getMetricsMaxRepositories()).thenReturn(2);
+        var limitedRegistry = new SimpleMeterRegistry();
+        var limited = new MetricsService(limitedRegistry, limitedProperties, repositoryPoolService);
+
+        limited.recordClone("github.com/a/1", 10);
+        limited.recordClone("github.com/a/2", 10);
+        limited.recordClone("github.com/a/3", 10);
+
+        assertThat(limitedRegistry.find(MetricsService.CLONE).timers()).hasSize(2);
+    }
+
+    @Test
+    public void testRecordingWithoutRepository() {
+        metricsService.recordClone(null, 10);
+        metricsService.recordResponseBytes(null, "/api/commitdata", 100);
+
+        assertThat(registry.get(MetricsService.CLONE).tag("repository", "unknown").timer().count()).isEqualTo(1);
+        assertThat(registry.get(MetricsService.RESPONSE_BYTES).tag("endpoint", "/api/commitdata").summary().totalAmount()).isEqualTo(100);
+    }
+
+}
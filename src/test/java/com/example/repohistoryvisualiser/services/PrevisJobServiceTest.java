@@ -0,0 +1,177 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.exception.IllegalBranchException;
+import com.github.mcnair.repohistoryvisualiser.exception.IllegalCloneException;
+import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
+import com.github.mcnair.repohistoryvisualiser.exception.RepositoryTraverseException;
+import com.github.mcnair.repohistoryvisualiser.repository.PrevisJob;
+import com.github.mcnair.repohistoryvisualiser.repository.PrevisJob.JobStatus;
+import com.github.mcnair.repohistoryvisualiser.repository.RepositoryMetadata;
+import com.github.mcnair.repohistoryvisualiser.services.CommitPageCacheService;
+import com.github.mcnair.repohistoryvisualiser.services.GitCloneService;
+import com.github.mcnair.repohistoryvisualiser.services.GitService;
+import com.github.mcnair.repohistoryvisualiser.services.PrevisJobService;
+import com.github.mcnair.repohistoryvisualiser.services.SettingsService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@SpringBootTest
+@ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
+@ExtendWith(MockitoExtension.class)
+public class PrevisJobServiceTest {
+
+    @Mock
+    private GitCloneService gitCloneService;
+
+    @Mock
+    private GitService gitService;
+
+    @Mock
+    private SettingsService settingsService;
+
+    @Mock
+    private CommitPageCacheService commitPageCacheService;
+
+    @Mock
+    private Git git;
+
+    @Autowired
+    private AppProperties properties;
+
+    private PrevisJobService previsJobService;
+
+    @BeforeEach
+    public void beforeEach() {
+        previsJobService = new PrevisJobService(gitCloneService, gitService, settingsService, commitPageCacheService, properties);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        previsJobService.shutdown();
+    }
+
+    private PrevisJob awaitJob(PrevisJob job) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (job.getStatus() == JobStatus.RUNNING && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        return job;
+    }
+
+    @Test
+    public void testCompletingJob() throws IllegalCloneException, RepositoryTraverseException, IllegalBranchException, InterruptedException {
+        var metadata = new RepositoryMetadata("clone", "master", 10, null, null, null);
+        Mockito.when(gitCloneService.getUpToDateRepositoryOrClone(ArgumentMatchers.eq("clone"), ArgumentMatchers.eq("master"), ArgumentMatchers.any())).thenAnswer(invocation -> {
+            ProgressMonitor monitor = invocation.getArgument(2);
+            monitor.beginTask("Receiving objects", 4);
+            monitor.update(3);
+            return git;
+        });
+        Mockito.when(gitService.getRepositoryMetadata("clone", "master", git, null)).thenReturn(metadata);
+
+        var job = awaitJob(previsJobService.startJob("clone", "master", null));
+
+        Assertions.assertEquals(JobStatus.COMPLETE, job.getStatus());
+        Assertions.assertEquals(metadata, job.getMetadata());
+        Assertions.assertEquals(4, job.getTotal());
+        Assertions.assertSame(job, previsJobService.getJob(job.getId()));
+    }
+
+    @Test
+    public void testFailingJob() throws IllegalCloneException, InterruptedException {
+        Mockito.when(gitCloneService.getUpToDateRepositoryOrClone(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any())).thenThrow(new IllegalCloneException());
+
+        var job = awaitJob(previsJobService.startJob("invalid", "master", null));
+
+        Assertions.assertEquals(JobStatus.FAILED, job.getStatus());
+        Assertions.assertEquals("Invalid repository clone URL", job.getError());
+        Assertions.assertNull(job.getMetadata());
+    }
+
+    @Test
+    public void testFailingTraversal() throws IllegalCloneException, RepositoryTraverseException, IllegalBranchException {
+        Mockito.when(gitCloneService.getUpToDateRepositoryOrClone(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(git);
+        Mockito.when(gitService.getRepositoryMetadata(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any())).thenThrow(new RepositoryTraverseException());
+
+        var job = previsJobService.runJobAndWait("clone", "master", null);
+
+        Assertions.assertEquals(JobStatus.FAILED, job.getStatus());
+        Assertions.assertEquals("That repository cannot be visualised", job.getError());
+    }
+
+    @Test
+    public void testFailingIllegalBranch() throws IllegalCloneException, RepositoryTraverseException, IllegalBranchException {
+        Mockito.when(gitCloneService.getUpToDateRepositoryOrClone(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(git);
+        Mockito.when(gitService.getRepositoryMetadata(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any())).thenThrow(new IllegalBranchException(""));
+
+        var job = previsJobService.runJobAndWait("clone", "master", null);
+
+        Assertions.assertEquals(JobStatus.FAILED, job.getStatus());
+        Assertions.assertEquals("That branch does not exist on that repository", job.getError());
+    }
+
+    @Test
+    public void testFailingIllegalSettings() throws IllegalCloneException, IllegalURLException {
+        Mockito.when(gitCloneService.getUpToDateRepositoryOrClone(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(git);
+        Mockito.when(settingsService.manageSettings("settingsurl")).thenThrow(new IllegalURLException(""));
+
+        var job = previsJobService.runJobAndWait("clone", "master", "settingsurl");
+
+        Assertions.assertEquals(JobStatus.FAILED, job.getStatus());
+        Assertions.assertEquals("Invalid settings URL", job.getError());
+    }
+
+    @Test
+    public void testWaitingForJob() throws IllegalCloneException, RepositoryTraverseException, IllegalBranchException {
+        var metadata = new RepositoryMetadata("clone", "master", 10, null, null, null);
+        Mockito.when(gitCloneService.getUpToDateRepositoryOrClone(ArgumentMatchers.eq("clone"), ArgumentMatchers.eq("master"), ArgumentMatchers.any())).thenReturn(git);
+        Mockito.when(gitService.getRepositoryMetadata("clone", "master", git, null)).thenReturn(metadata);
+
+        var job = previsJobService.runJobAndWait("clone", "master", null);
+
+        Assertions.assertEquals(JobStatus.COMPLETE, job.getStatus());
+        Assertions.assertEquals(metadata, job.getMetadata());
+    }
+
+    @Test
+    public void testJoiningRunningJob() throws IllegalCloneException, InterruptedException {
+        var release = new CountDownLatch(1);
+        Mockito.when(gitCloneService.getUpToDateRepositoryOrClone(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            throw new IllegalCloneException();
+        });
+
+        var first = previsJobService.startJob("clone", "master", null);
+        var second = previsJobService.startJob("clone", "master", null);
+        var otherBranch = previsJobService.startJob("clone", "develop", null);
+        release.countDown();
+
+        Assertions.assertSame(first, second);
+        Assertions.assertNotEquals(first.getId(), otherBranch.getId());
+        awaitJob(first);
+        awaitJob(otherBranch);
+    }
+
+    @Test
+    public void testGettingUnknownJob() {
+        Assertions.assertNull(previsJobService.getJob("unknown"));
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.repository.ProfilingSummary;
+import com.github.mcnair.repohistoryvisualiser.repository.Structure;
+import com.github.mcnair.repohistoryvisualiser.services.GitService;
+import com.github.mcnair.repohistoryvisualiser.services.ProfilingService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+@SpringBootTest
+@ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
+public class ProfilingServiceTest {
+
+    @Autowired
+    private GitService gitService;
+
+    @Autowired
+    private AppProperties properties;
+
+    @TempDir
+    File directory;
+
+    private Git git;
+
+    private List<RevCommit> commits;
+
+    private ProfilingService profilingService;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        git = Git.init().setDirectory(directory).setInitialBranch("master").call();
+        commits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            File folder = new File(directory, "src/module" + i);
+            folder.mkdirs();
+            for (int file = 0; file <= i; file++) {
+                Files.writeString(new File(folder, "file" + file + ".txt").toPath(), "commit " + i);
+            }
+            git.add().addFilepattern(".").call();
+            commits.add(git.commit().setMessage("commit " + i).call());
+        }
+
+        profilingService = new ProfilingService(properties);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        profilingService.shutdown();
+        git.close();
+    }
+
+    @Test
+    public void testSummaryWithoutRecording() throws Exception {
+        Assertions.assertEquals(ProfilingSummary.State.NONE, profilingService.getSummary(10).getState());
+    }
+
+    @Test
+    public void testRecordingCommitDiffs() throws Exception {
+        Structure structure = new Structure();
+        structure.label = "structure";
+        structure.folder = "src";
+        structure.collapse = true;
+        structure.endCommitID = 2;
+
+        Assertions.assertEquals(ProfilingSummary.State.RUNNING, profilingService.start(60).getState());
+        gitService.loadCommitData(git, gitService.getBranchIndex(git, "master"), List.of(structure), 0, 4);
+        ProfilingSummary summary = profilingService.stop(2);
+
+        Assertions.assertEquals(ProfilingSummary.State.STOPPED, summary.getState());
+        Assertions.assertEquals(1, summary.getRepositories().size());
+
+        var heaviest = summary.getRepositories().values().iterator().next();
+        Assertions.assertEquals(2, heaviest.size());
+        Assertions.assertTrue(heaviest.get(0).getDurationMillis() >= heaviest.get(1).getDurationMillis());
+
+        // the commit the structure ends at is diffed and has the structure expanded
+        var structureCommit = profilingService.getSummary(4).getRepositories().values().iterator().next().stream()
+                .filter(cost -> cost.getCommitHash().equals(commits.get(2).getName()))
+                .findFirst().orElseThrow();
+        Assertions.assertEquals(2, structureCommit.getEvents());
+        Assertions.assertTrue(structureCommit.getEntriesVisited() > structureCommit.getChanges());
+    }
+
+    @Test
+    public void testStartingWhileRunning() {
+        profilingService.start(60);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> profilingService.start(60));
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.services.RepositoryMaintenanceService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+@SpringBootTest
+@ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
+public class RepositoryMaintenanceServiceTest {
+
+    @Autowired
+    private RepositoryMaintenanceService repositoryMaintenanceService;
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void testRepackingRepository() throws GitAPIException, IOException {
+        try (var git = Git.init().setDirectory(directory).setInitialBranch("master").call()) {
+            RevCommit tip = null;
+            for (int i = 0; i < 10; i++) {
+                Files.writeString(directory.toPath().resolve("file" + i + ".txt"), "content " + i);
+                git.add().addFilepattern(".").call();
+                tip = git.commit().setMessage("commit " + i).call();
+            }
+
+            var statistics = repositoryMaintenanceService.maintain(git);
+
+            Assertions.assertEquals("0", statistics.get("numberOfLooseObjects").toString());
+            Assertions.assertEquals("1", statistics.get("numberOfPackFiles").toString());
+            Assertions.assertTrue(Long.parseLong(statistics.get("numberOfBitmaps").toString()) > 0);
+            Assertions.assertEquals(tip.getId(), git.getRepository().resolve("master"));
+        }
+    }
+
+}
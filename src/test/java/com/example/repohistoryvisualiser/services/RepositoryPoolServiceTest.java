@@ -0,0 +1,91 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
+import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.repository.RepositoryPoolStatistics;
+import com.github.mcnair.repohistoryvisualiser.services.RepositoryPoolService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+
+@SpringBootTest
+@ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
+public class RepositoryPoolServiceTest {
+
+    @TempDir
+    File directory;
+
+    private RepositoryPoolService repositoryPoolService;
+
+    @BeforeEach
+    public void beforeEach() {
+        var properties = Mockito.mock(AppProperties.class);
+        Mockito.when(properties.getRepositoryPoolSize()).thenReturn(2);
+        repositoryPoolService = new RepositoryPoolService(properties);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        repositoryPoolService.shutdown();
+    }
+
+    private File createRepository(String name) throws GitAPIException {
+        var folder = new File(directory, name);
+        Git.init().setDirectory(folder).call().close();
+        return folder;
+    }
+
+    @Test
+    public void testReusingRepository() throws GitAPIException, IOException {
+        var folder = createRepository("repo");
+
+        var first = repositoryPoolService.getRepository(folder);
+        var second = repositoryPoolService.getRepository(folder);
+
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(new RepositoryPoolStatistics(1, 1, 1, 0), repositoryPoolService.getStatistics());
+    }
+
+    @Test
+    public void testEvictingLeastRecentlyUsed() throws GitAPIException, IOException {
+        var repo1 = createRepository("repo1");
+        var repo2 = createRepository("repo2");
+        var repo3 = createRepository("repo3");
+
+        var git1 = repositoryPoolService.getRepository(repo1);
+        var git2 = repositoryPoolService.getRepository(repo2);
+        repositoryPoolService.getRepository(repo1);
+        repositoryPoolService.getRepository(repo3);
+
+        Assertions.assertSame(git1, repositoryPoolService.getRepository(repo1));
+        Assertions.assertNotSame(git2, repositoryPoolService.getRepository(repo2));
+        Assertions.assertEquals(2, repositoryPoolService.getStatistics().getOpen());
+        Assertions.assertEquals(2, repositoryPoolService.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void testAddingOpenedRepository() throws GitAPIException, IOException {
+        var folder = createRepository("repo");
+        var pooled = repositoryPoolService.getRepository(folder);
+
+        var opened = Git.open(folder);
+        Assertions.assertSame(pooled, repositoryPoolService.addRepository(folder, opened));
+    }
+
+    @Test
+    public void testOpeningMissingRepository() {
+        Assertions.assertThrows(IOException.class, () -> repositoryPoolService.getRepository(new File(directory, "missing")));
+        Assertions.assertEquals(0, repositoryPoolService.getStatistics().getOpen());
+    }
+
+}
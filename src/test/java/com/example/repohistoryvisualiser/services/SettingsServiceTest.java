@@ -1,11 +1,17 @@
 package com.example.repohistoryvisualiser.services;
 
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
 import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
 import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
 import com.github.mcnair.repohistoryvisualiser.repository.Settings;
+import com.github.mcnair.repohistoryvisualiser.services.GitCloneService;
+import com.github.mcnair.repohistoryvisualiser.services.JSONService;
+import com.github.mcnair.repohistoryvisualiser.services.MetricsService;
 import com.github.mcnair.repohistoryvisualiser.services.SettingsService;
+import com.github.mcnair.repohistoryvisualiser.services.URLService;
 import com.github.mcnair.repohistoryvisualiser.services.YAMLService;
 import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,7 +23,11 @@ import org.springframework.test.context.ContextConfiguration;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -30,13 +40,53 @@ public class SettingsServiceTest {
     @Mock
     private YAMLService yamlService;
 
+    @Mock
+    private AppProperties properties;
+
+    @Mock
+    private URLService urlService;
+
+    @Mock
+    private MetricsService metricsService;
+
     @InjectMocks
     @Resource
     private SettingsService settingsService;
 
+    @Resource
+    private GitCloneService gitCloneService;
+
+    /**
+     * The folder of the test repository, which the settings files are written to
+     */
+    private final File repositoryFolder = new File("clonedRepositories", "testrepo");
+
+    private boolean createdRepositoryFolder;
+
+    private Set<String> existingFiles;
+
     @BeforeEach
     public void beforeAll() {
         MockitoAnnotations.openMocks(this);
+
+        createdRepositoryFolder = repositoryFolder.mkdirs();
+        existingFiles = new HashSet<>(Arrays.asList(repositoryFolder.list()));
+    }
+
+    @AfterEach
+    public void removeSettingsFiles() {
+        // only the files written by the test are removed, so an existing clone is left as it was
+        File[] files = repositoryFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!existingFiles.contains(file.getName())) {
+                    file.delete();
+                }
+            }
+        }
+        if (createdRepositoryFolder) {
+            repositoryFolder.delete();
+        }
     }
 
     @Test
@@ -50,7 +100,8 @@ public class SettingsServiceTest {
         var settings = new Settings();
         settings.structures = new ArrayList<>();
 
-        Mockito.doReturn(settings).when(yamlService).readYaml(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Mockito.doReturn(new File("settings.yaml")).when(urlService).fetchDocument(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Mockito.doReturn(settings).when(yamlService).readYaml(ArgumentMatchers.any(File.class), ArgumentMatchers.any());
 
         var result = settingsService.manageSettings("https://github.com");
 
@@ -60,12 +111,13 @@ public class SettingsServiceTest {
     }
 
     @Test
-    public void testProvidingInvalidURL() throws IOException {
+    public void testProvidingInvalidURL() throws IOException, IllegalURLException {
         var settings = new Settings();
         settings.structures = new ArrayList<>();
 
         MockitoAnnotations.openMocks(this);
-        Mockito.doThrow(new IOException()).when(yamlService).readYaml(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Mockito.doReturn(new File("settings.yaml")).when(urlService).fetchDocument(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Mockito.doThrow(new IOException()).when(yamlService).readYaml(ArgumentMatchers.any(File.class), ArgumentMatchers.any());
 
         Assertions.assertThrows(IllegalURLException.class, () -> {
             settingsService.manageSettings("https://github.com");
@@ -99,8 +151,58 @@ public class SettingsServiceTest {
 
     @Test
     public void testLoadSettings() throws IllegalURLException, IOException {
+        settingsService.saveSettings("https://testrepo", "https://settingsurl", new Settings());
 
         var settings = settingsService.loadSettings("https://testrepo", "https://settingsurl");
         Assertions.assertNotNull(settings);
     }
+
+    @Test
+    public void testCachingLoadedSettings() throws IllegalURLException, IOException {
+        settingsService.saveSettings("https://testrepo", "https://cachedsettings", new Settings());
+
+        var first = settingsService.loadSettings("https://testrepo", "https://cachedsettings");
+        var second = settingsService.loadSettings("https://testrepo", "https://cachedsettings");
+
+        Assertions.assertSame(first, second);
+    }
+
+    /**
+     * Changes the settings file without going through the service
+     */
+    private void changeSettingsFile(SettingsService service, String settingsURL) throws IllegalURLException, IOException {
+        var file = service.getSettingsFile("https://testrepo", settingsURL);
+        long lastModified = file.lastModified();
+        Files.writeString(file.toPath(), "{\"structures\":[{\"label\":\"library\",\"folder\":\"src/lib\"}]}");
+        file.setLastModified(lastModified + 2000);
+    }
+
+    @Test
+    public void testNotCheckingCachedSettingsBeforeRevalidation() throws IllegalURLException, IOException {
+        var saved = new Settings();
+        settingsService.saveSettings("https://testrepo", "https://uncheckedsettings", saved);
+
+        changeSettingsFile(settingsService, "https://uncheckedsettings");
+
+        // the file is not checked again until the revalidation interval has passed
+        Assertions.assertSame(saved, settingsService.loadSettings("https://testrepo", "https://uncheckedsettings"));
+    }
+
+    @Test
+    public void testReloadingChangedSettings() throws IllegalURLException, IOException {
+        Mockito.when(properties.getSettingsCacheSize()).thenReturn(64);
+        Mockito.when(properties.getSettingsRevalidateSeconds()).thenReturn(0);
+        var revalidatingService = new SettingsService(yamlService, gitCloneService, new JSONService(), urlService, metricsService, properties);
+
+        var saved = new Settings();
+        revalidatingService.saveSettings("https://testrepo", "https://changedsettings", saved);
+        Assertions.assertSame(saved, revalidatingService.loadSettings("https://testrepo", "https://changedsettings"));
+
+        changeSettingsFile(revalidatingService, "https://changedsettings");
+
+        var loaded = revalidatingService.loadSettings("https://testrepo", "https://changedsettings");
+
+        Assertions.assertNotSame(saved, loaded);
+        Assertions.assertEquals("library", loaded.structures.get(0).label);
+    }
 }
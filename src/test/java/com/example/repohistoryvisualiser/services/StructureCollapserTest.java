@@ -0,0 +1,126 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange;
+import com.github.mcnair.repohistoryvisualiser.repository.FileChange.FileChangeType;
+import com.github.mcnair.repohistoryvisualiser.repository.Structure;
+import com.github.mcnair.repohistoryvisualiser.services.StructureCollapser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StructureCollapserTest {
+
+    private Structure createStructure(String folder, String label) {
+        var structure = new Structure();
+        structure.folder = folder;
+        structure.label = label;
+        structure.collapse = true;
+        return structure;
+    }
+
+    private FileChange createCollapsedChange(FileChangeType type, String file) {
+        var change = new FileChange(type, file);
+        change.setCollapsed(true);
+        return change;
+    }
+
+    private List<FileChange> createChanges(String... files) {
+        List<FileChange> changes = new ArrayList<>();
+        for (String file : files) {
+            changes.add(new FileChange(FileChangeType.M, file));
+        }
+        return changes;
+    }
+
+    @Test
+    public void testCollapsingChanges() {
+        var collapser = new StructureCollapser(List.of(createStructure("src/lib", "library")));
+
+        var changes = collapser.collapse(createChanges("src/lib/a.txt", "src/main.txt", "src/lib/nested/b.txt", "README.md"));
+
+        Assertions.assertEquals(List.of(
+                createCollapsedChange(FileChangeType.M, "src/lib/library"),
+                new FileChange(FileChangeType.M, "src/main.txt"),
+                new FileChange(FileChangeType.M, "README.md")
+        ), changes);
+    }
+
+    @Test
+    public void testRespectingSegmentBoundaries() {
+        var collapser = new StructureCollapser(List.of(createStructure("src/foo", "foo")));
+
+        var changes = collapser.collapse(createChanges("src/foobar/a.txt", "src/foo.txt"));
+
+        Assertions.assertEquals(createChanges("src/foobar/a.txt", "src/foo.txt"), changes);
+    }
+
+    @Test
+    public void testCollapsingNestedStructures() {
+        var collapser = new StructureCollapser(List.of(createStructure("src/lib", "library"), createStructure("src", "source")));
+
+        var changes = collapser.collapse(createChanges("src/lib/a.txt", "src/b.txt"));
+
+        Assertions.assertEquals(List.of(createCollapsedChange(FileChangeType.M, "src/source")), changes);
+    }
+
+    @Test
+    public void testCollapsingMultipleStructures() {
+        var collapser = new StructureCollapser(List.of(createStructure("a/", "first"), createStructure("b", "second")));
+
+        var changes = collapser.collapse(createChanges("a/1.txt", "b/1.txt", "a/2.txt", "b/2.txt"));
+
+        Assertions.assertEquals(List.of(
+                createCollapsedChange(FileChangeType.M, "a//first"),
+                createCollapsedChange(FileChangeType.M, "b/second")
+        ), changes);
+    }
+
+    @Test
+    public void testCollapsingRenames() {
+        var collapser = new StructureCollapser(List.of(createStructure("lib", "library"), createStructure("vendor", "vendor")));
+
+        var changes = collapser.collapse(new ArrayList<>(List.of(
+                new FileChange("src/a.txt", "src/b.txt"),
+                new FileChange("lib/a.txt", "lib/b.txt"),
+                new FileChange("src/c.txt", "vendor/c.txt"),
+                new FileChange("lib/d.txt", "src/d.txt")
+        )));
+
+        Assertions.assertEquals(List.of(
+                new FileChange("src/a.txt", "src/b.txt"),
+                createCollapsedChange(FileChangeType.M, "lib/library"),
+                new FileChange(FileChangeType.D, "src/c.txt"),
+                createCollapsedChange(FileChangeType.A, "vendor/vendor"),
+                new FileChange(FileChangeType.A, "src/d.txt")
+        ), changes);
+    }
+
+    @Test
+    public void testCollapsingWithoutStructures() {
+        var changes = createChanges("a/1.txt");
+
+        Assertions.assertSame(changes, new StructureCollapser(List.of()).collapse(changes));
+    }
+
+    @Test
+    public void testCollapsingLargeCommit() {
+        List<Structure> structures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            structures.add(createStructure("module" + i, "module"));
+        }
+        var collapser = new StructureCollapser(structures);
+
+        List<FileChange> changes = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            changes.add(new FileChange(FileChangeType.A, "module" + (i % 100) + "/src/File" + i + ".java"));
+        }
+
+        var collapsed = collapser.collapse(changes);
+
+        // 50 collapsed structures along with 25,000 changes outside of any structure
+        Assertions.assertEquals(25_050, collapsed.size());
+    }
+
+}
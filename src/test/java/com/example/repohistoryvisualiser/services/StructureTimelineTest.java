@@ -0,0 +1,70 @@
+package com.example.repohistoryvisualiser.services;
+
+import com.github.mcnair.repohistoryvisualiser.exception.IllegalStructureState;
+import com.github.mcnair.repohistoryvisualiser.repository.Structure;
+import com.github.mcnair.repohistoryvisualiser.services.StructureTimeline;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class StructureTimelineTest {
+
+    private Structure createStructure(Integer startCommitID, Integer endCommitID, boolean collapse) {
+        var structure = new Structure();
+        structure.folder = "src";
+        structure.label = "source";
+        structure.startCommitID = startCommitID;
+        structure.endCommitID = endCommitID;
+        structure.collapse = collapse;
+        return structure;
+    }
+
+    @Test
+    public void testMatchingStructureActivity() {
+        List<Structure> structures = new ArrayList<>();
+        for (Integer start : new Integer[]{null, 1, 3, 6}) {
+            for (Integer end : new Integer[]{null, 2, 5, 8}) {
+                structures.add(createStructure(start, end, true));
+            }
+        }
+        var timeline = new StructureTimeline(structures);
+
+        // walking the timeline must give the same structures as checking every structure at every commit
+        Set<Structure> active = timeline.getActiveStructures(-1);
+        for (int i = 0; i < 10; i++) {
+            timeline.getEndingStructures(i).forEach(active::remove);
+            active.addAll(timeline.getStartingStructures(i));
+
+            for (Structure structure : structures) {
+                Assertions.assertEquals(structure.isActive(i), active.contains(structure), "Commit " + i);
+            }
+            Assertions.assertEquals(active, timeline.getActiveStructures(i));
+        }
+    }
+
+    @Test
+    public void testIgnoringExpandedStructures() {
+        var timeline = new StructureTimeline(List.of(createStructure(2, 4, false)));
+
+        Assertions.assertTrue(timeline.isEmpty());
+        Assertions.assertTrue(timeline.getStartingStructures(1).isEmpty());
+        Assertions.assertTrue(timeline.getActiveStructures(2).isEmpty());
+    }
+
+    @Test
+    public void testCreatingTimelineWithoutStructures() {
+        Assertions.assertTrue(new StructureTimeline(null).isEmpty());
+    }
+
+    @Test
+    public void testValidatingStructures() {
+        var structure = createStructure(null, null, true);
+        structure.startCommitHash = "0000000000000000000000000000000000000000";
+
+        Assertions.assertThrows(IllegalStructureState.class, () -> new StructureTimeline(List.of(structure)));
+    }
+
+}
@@ -2,26 +2,36 @@ package com.example.repohistoryvisualiser.services;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.github.mcnair.repohistoryvisualiser.AppProperties;
 import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
 import com.github.mcnair.repohistoryvisualiser.exception.IllegalURLException;
 import com.github.mcnair.repohistoryvisualiser.services.URLService;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
-import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ContextConfiguration;
 
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.io.TempDir;
+
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SpringBootTest
 @ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
@@ -29,12 +39,18 @@ import java.util.List;
 public class URLServiceTests {
 
     @Autowired
-    @Spy
+    private AppProperties properties;
+
     private URLService urlService;
 
     @Mock
     HttpURLConnection connection;
 
+    @BeforeEach
+    public void beforeEach() {
+        urlService = Mockito.spy(new URLService(properties));
+    }
+
     @Test
     public void testCreatingURLService() {
         assertThat(urlService).isNotNull();
@@ -92,4 +108,42 @@ public class URLServiceTests {
         Mockito.reset(urlService);
     }
 
+    @Test
+    public void testFetchingDocument(@TempDir File folder) throws IOException, IllegalURLException {
+        AtomicInteger transferred = new AtomicInteger();
+        AtomicInteger notModified = new AtomicInteger();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/settings.yaml", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                transferred.incrementAndGet();
+                byte[] body = "structures: []".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/settings.yaml";
+            File copy = new File(folder, "settings.yaml");
+
+            Assertions.assertEquals(copy, urlService.fetchDocument(url, copy));
+            Assertions.assertEquals(copy, urlService.fetchDocument(url, copy));
+
+            Assertions.assertEquals("structures: []", Files.readString(copy.toPath()));
+            Assertions.assertEquals(1, transferred.get());
+            Assertions.assertEquals(1, notModified.get());
+
+            Assertions.assertThrows(IllegalURLException.class, () -> urlService.fetchDocument(url.replace("settings", "missing"), new File(folder, "missing.yaml")));
+        } finally {
+            server.stop(0);
+        }
+    }
+
 }
@@ -1,72 +1,56 @@
 package com.example.repohistoryvisualiser.services;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.mcnair.repohistoryvisualiser.RepoHistoryVisualisorApplication;
+import com.github.mcnair.repohistoryvisualiser.repository.Settings;
 import com.github.mcnair.repohistoryvisualiser.services.YAMLService;
-import lombok.Data;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentMatchers;
-import org.mockito.Mock;
-import org.mockito.Mockito;
-import org.mockito.Spy;
-import org.mockito.junit.jupiter.MockitoExtension;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ContextConfiguration;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.URL;
+import java.nio.file.Files;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 @ContextConfiguration(classes = RepoHistoryVisualisorApplication.class)
-@ExtendWith(MockitoExtension.class)
 public class YAMLServiceTests {
 
     @Autowired
-    @Spy
     private YAMLService yamlService;
 
-    @Mock
-    private ObjectMapper mapper;
-
     @Test
     public void testCreatingYAMLService() {
         assertThat(yamlService).isNotNull();
     }
 
     @Test
-    public void testReadingYAML() throws IOException {
-
-        @Data
-        class TypeClass {
-            public final String name;
-        }
-
-        URL url = new URL("https://github.com");
-        var typeClass = new TypeClass("test");
-
-        Mockito.doReturn(typeClass).when(mapper).readValue((URL) ArgumentMatchers.any(), (Class<Object>) ArgumentMatchers.any());
-        Mockito.doReturn(mapper).when(yamlService).createMapper();
-
-        TypeClass createdClass = yamlService.readYaml(url, TypeClass.class);
-
-        Assertions.assertEquals(createdClass, typeClass);
-
-        Mockito.reset(mapper);
-        Mockito.reset(yamlService);
+    public void testReadingYAML(@TempDir File folder) throws IOException {
+        File file = new File(folder, "settings.yml");
+        Files.writeString(file.toPath(), """
+                structures:
+                  - label: library
+                    folder: src/lib
+                    collapse: true
+                """);
+
+        Settings settings = yamlService.readYaml(file.toURI().toURL(), Settings.class);
+
+        Assertions.assertEquals(1, settings.structures.size());
+        Assertions.assertEquals("library", settings.structures.get(0).label);
+        Assertions.assertEquals("src/lib", settings.structures.get(0).folder);
+        Assertions.assertTrue(settings.structures.get(0).collapse);
     }
 
     @Test
-    public void testCreatingMapper() {
-
-        var mapper = yamlService.createMapper();
-
-        Assertions.assertNotNull(mapper);
+    public void testSharingMapper() {
+        Assertions.assertNotNull(yamlService.getMapper());
+        Assertions.assertSame(yamlService.getMapper(), yamlService.getMapper());
+        Assertions.assertSame(yamlService.getReader(Settings.class), yamlService.getReader(Settings.class));
     }
 
-
 }